@@ -60,7 +60,7 @@ public class EmptyImList<E> implements ImList<E> {
 
     @Override
     public boolean equals(Object o) {
-        return o instanceof EmptyImList;
+        return o instanceof ImList && ((ImList<?>) o).isEmpty();
     }
 
     @Override
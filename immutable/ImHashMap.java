@@ -0,0 +1,247 @@
+package immutable;
+
+/**
+ * Implementation of immutable generic map as a hash array mapped trie. See
+ * Map for specification.
+ *
+ * The trie branches 32 ways on each 5 bits of the hash of a key, low bits
+ * first. A node only has room for the branches in use, found by counting
+ * the bits below theirs in its bitmap, and a branch with a single key holds
+ * it inline rather than in a node of its own. Keys whose hashes are the
+ * same in all 32 bits share a collision node at the bottom.
+ *
+ * put copies only the nodes on the path to the key, at most 7, and shares
+ * all the others with the map it came from, which stays as it was. So get
+ * and put take time logarithmic in the size with base 32, which is
+ * constant in practice.
+ */
+public class ImHashMap<K, V> implements ImMap<K, V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    /*
+     * Rep invariant:
+     *     size >= 0, and root == null iff size == 0
+     *     size is the number of keys in the trie of root
+     *     no key nor value is null, and no key is in the trie twice
+     *     each key sits on the path its hash leads to
+     */
+    private final Node root;
+    private final int size;
+
+    void checkRep() {
+        assert size >= 0 : "ImHashMap, Rep invariant: size";
+        assert (root == null) == (size == 0) : "ImHashMap, Rep invariant: empty root";
+    }
+
+    public ImHashMap() {
+        this(null, 0);
+    }
+
+    private ImHashMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+        checkRep();
+    }
+
+    public boolean containsKey(Object k) {
+        return get(k) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(Object k) {
+        return root == null ? null : (V) root.get(0, hash(k), k);
+    }
+
+    /**
+     * Requires: value is non-null, as well as key
+     */
+    public ImMap<K, V> put(K key, V value) {
+        assert key != null && value != null : "ImHashMap.put(null)";
+        Added added = new Added();
+        Node from = root == null ? BitmapNode.EMPTY : root;
+        Node to = from.put(0, hash(key), key, value, added);
+        if (to == root) return this;
+        return new ImHashMap<K, V>(to, added.value ? size + 1 : size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public String toString() {
+        StringBuilder s = new StringBuilder("[");
+        if (root != null) root.append(s);
+        return s.append("]").toString();
+    }
+
+    // spread the high bits of the hash code down, as HashMap does
+    private static int hash(Object k) {
+        int h = k.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    // whether put added a key rather than replacing the value of one
+    private static final class Added {
+        boolean value;
+    }
+
+    private static abstract class Node {
+        /**
+         * @return the value of key, which hashes to hash, under this node at
+         *         the given shift, or null if there is none
+         */
+        abstract Object get(int shift, int hash, Object key);
+
+        /**
+         * @return this node, or a copy of it, with key bound to value; sets
+         *         added if key wasn't bound under it before
+         */
+        abstract Node put(int shift, int hash, Object key, Object value, Added added);
+
+        /**
+         * Append the bindings under this node to s, as k->v, separated by
+         * commas.
+         */
+        abstract void append(StringBuilder s);
+    }
+
+    /*
+     * A node branching on bits shift to shift+5 of the hash. For each bit
+     * set in bitmap, array holds a key and its value, or null and the node
+     * of the branch, in order of the bits.
+     */
+    private static final class BitmapNode extends Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        final int bitmap;
+        final Object[] array;
+
+        BitmapNode(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        Object get(int shift, int hash, Object key) {
+            Node node = this;
+            while (node instanceof BitmapNode) {
+                BitmapNode b = (BitmapNode) node;
+                int bit = 1 << (hash >>> shift & MASK);
+                if ((b.bitmap & bit) == 0) return null;
+                int i = 2 * Integer.bitCount(b.bitmap & (bit - 1));
+                Object k = b.array[i];
+                if (k != null) return key.equals(k) ? b.array[i + 1] : null;
+                node = (Node) b.array[i + 1];
+                shift += BITS;
+            }
+            return node.get(shift, hash, key);
+        }
+
+        Node put(int shift, int hash, Object key, Object value, Added added) {
+            int bit = 1 << (hash >>> shift & MASK);
+            int i = 2 * Integer.bitCount(bitmap & (bit - 1));
+            if ((bitmap & bit) == 0) {
+                added.value = true;
+                Object[] a = new Object[array.length + 2];
+                System.arraycopy(array, 0, a, 0, i);
+                a[i] = key;
+                a[i + 1] = value;
+                System.arraycopy(array, i, a, i + 2, array.length - i);
+                return new BitmapNode(bitmap | bit, a);
+            }
+            Object k = array[i];
+            Object v = array[i + 1];
+            if (k == null) {
+                Node n = ((Node) v).put(shift + BITS, hash, key, value, added);
+                return n == v ? this : with(i + 1, n);
+            }
+            if (key.equals(k)) return v == value ? this : with(i + 1, value);
+            // two keys on one branch: push both down a level
+            added.value = true;
+            Node n = pair(shift + BITS, hash(k), k, v, hash, key, value);
+            Object[] a = array.clone();
+            a[i] = null;
+            a[i + 1] = n;
+            return new BitmapNode(bitmap, a);
+        }
+
+        private BitmapNode with(int i, Object o) {
+            Object[] a = array.clone();
+            a[i] = o;
+            return new BitmapNode(bitmap, a);
+        }
+
+        void append(StringBuilder s) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i] == null) {
+                    ((Node) array[i + 1]).append(s);
+                } else {
+                    if (s.length() > 1) s.append(", ");
+                    s.append(array[i]).append("->").append(array[i + 1]);
+                }
+            }
+        }
+    }
+
+    // a node at the given shift holding two distinct keys
+    private static Node pair(int shift, int hash1, Object key1, Object value1, int hash2, Object key2,
+            Object value2) {
+        if (hash1 == hash2) return new CollisionNode(hash1, new Object[] { key1, value1, key2, value2 });
+        Added ignored = new Added();
+        return BitmapNode.EMPTY.put(shift, hash1, key1, value1, ignored).put(shift, hash2, key2, value2, ignored);
+    }
+
+    /*
+     * The keys whose hashes are all hash, in no particular order, each
+     * followed by its value in array.
+     */
+    private static final class CollisionNode extends Node {
+        final int hash;
+        final Object[] array;
+
+        CollisionNode(int hash, Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        Object get(int shift, int hash, Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) return array[i + 1];
+            }
+            return null;
+        }
+
+        Node put(int shift, int hash, Object key, Object value, Added added) {
+            if (hash != this.hash) {
+                // a key that only shares some bits: branch off above this node
+                BitmapNode above = new BitmapNode(1 << (this.hash >>> shift & MASK), new Object[] { null, this });
+                return above.put(shift, hash, key, value, added);
+            }
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    if (array[i + 1] == value) return this;
+                    Object[] a = array.clone();
+                    a[i + 1] = value;
+                    return new CollisionNode(hash, a);
+                }
+            }
+            added.value = true;
+            Object[] a = new Object[array.length + 2];
+            System.arraycopy(array, 0, a, 0, array.length);
+            a[array.length] = key;
+            a[array.length + 1] = value;
+            return new CollisionNode(hash, a);
+        }
+
+        void append(StringBuilder s) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (s.length() > 1) s.append(", ");
+                s.append(array[i]).append("->").append(array[i + 1]);
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package immutable;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ImHashMapTest {
+
+    // make sure assertions are turned on!
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false;
+    }
+
+    @Test
+    public void testPutGet() {
+        ImMap<String, Integer> empty = new ImHashMap<String, Integer>();
+        ImMap<String, Integer> m1 = empty.put("a", 1);
+        ImMap<String, Integer> m2 = m1.put("b", 2).put("a", 3);
+        assertTrue(empty.isEmpty());
+        assertNull(empty.get("a"));
+        assertEquals(1, m1.size());
+        assertEquals(Integer.valueOf(1), m1.get("a"));
+        assertFalse(m1.containsKey("b"));
+        assertEquals(2, m2.size());
+        assertEquals(Integer.valueOf(3), m2.get("a"));
+        assertEquals(Integer.valueOf(2), m2.get("b"));
+        assertSame(m2, m2.put("b", m2.get("b")));
+    }
+
+    // a key whose hash code is given, to force collisions
+    private static final class Key {
+        final int hash;
+        final String name;
+
+        Key(int hash, String name) {
+            this.hash = hash;
+            this.name = name;
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).name.equals(name);
+        }
+
+        public String toString() {
+            return name;
+        }
+    }
+
+    @Test
+    public void testCollisions() {
+        ImMap<Key, Integer> m = new ImHashMap<Key, Integer>();
+        // the same hash in all bits, in the low bits only, and in none
+        Key[] keys = { new Key(7, "a"), new Key(7, "b"), new Key(7, "c"), new Key(7 | 1 << 30, "d"),
+                       new Key(7 | 1 << 20, "e"), new Key(8, "f") };
+        for (int i = 0; i < keys.length; i++) {
+            m = m.put(keys[i], i);
+            for (int j = 0; j <= i; j++) assertEquals(Integer.valueOf(j), m.get(keys[j]));
+            assertNull(m.get(new Key(7, "x")));
+        }
+        m = m.put(new Key(7, "b"), 10);
+        assertEquals(keys.length, m.size());
+        assertEquals(Integer.valueOf(10), m.get(keys[1]));
+        assertEquals(Integer.valueOf(0), m.get(keys[0]));
+    }
+
+    @Test
+    public void testAgainstHashMap() {
+        Random random = new Random(1);
+        ImMap<Integer, Integer> m = new ImHashMap<Integer, Integer>();
+        Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+        ImMap<Integer, Integer> half = null;
+        Map<Integer, Integer> halfExpected = null;
+        for (int i = 0; i < 100000; i++) {
+            int k = random.nextInt(50000) * (random.nextBoolean() ? 1 : 65536);
+            m = m.put(k, i);
+            expected.put(k, i);
+            if (i == 50000) {
+                half = m;
+                halfExpected = new HashMap<Integer, Integer>(expected);
+            }
+        }
+        assertEquals(expected.size(), m.size());
+        for (Map.Entry<Integer, Integer> e : expected.entrySet()) assertEquals(e.getValue(), m.get(e.getKey()));
+        // old versions are left as they were
+        assertEquals(halfExpected.size(), half.size());
+        for (Map.Entry<Integer, Integer> e : halfExpected.entrySet())
+            assertEquals(e.getValue(), half.get(e.getKey()));
+    }
+}
@@ -6,6 +6,9 @@
  */
 package immutable;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Implementation of immutable generic map using association list. See Map for
  * specification.
@@ -15,7 +18,7 @@ public class ImListMap<K, V> implements ImMap<K, V> {
      * Rep invariant: bindings != null
      * bindings contains no null elements, keys nor values, and no duplicate keys
      */
-    private ImList<Binding> bindings;
+    private ImList<Binding<K, V>> bindings;
 
     void checkRep() {
         // check whether assertions are turned on.
@@ -28,9 +31,9 @@ public class ImListMap<K, V> implements ImMap<K, V> {
         }
     }
 
-    void checkRep(ImList<Binding> bs) {
+    void checkRep(ImList<Binding<K, V>> bs) {
         if (!bs.isEmpty()) {
-            Binding b = bs.first();
+            Binding<K, V> b = bs.first();
             assert b.key != null : "ListMap, Rep invariant: keys non-null";
             assert b.value != null : "ListMap, Rep invariant: values non-null";
             assert !new ImListMap<K, V>(bs.rest()).containsKey(b.key);
@@ -38,7 +41,7 @@ public class ImListMap<K, V> implements ImMap<K, V> {
         }
     }
 
-    private class Binding {
+    private static class Binding<K, V> {
         K key;
         V value;
 
@@ -53,12 +56,12 @@ public class ImListMap<K, V> implements ImMap<K, V> {
     }
 
     public ImListMap() {
-        this.bindings = new EmptyImList<Binding>();
+        this.bindings = new EmptyImList<Binding<K, V>>();
         checkRep();
     }
 
     // Internal constructor.
-    private ImListMap(ImList<Binding> bindings) {
+    private ImListMap(ImList<Binding<K, V>> bindings) {
         this.bindings = bindings;
         // don't call checkRep() here, because this constructor is used by
         // checkRep!
@@ -69,7 +72,7 @@ public class ImListMap<K, V> implements ImMap<K, V> {
     }
 
     public V get(Object k) {
-        Binding b = get(bindings, k);
+        Binding<K, V> b = get(bindings, k);
         if (b == null)
             return null;
         else
@@ -77,16 +80,15 @@ public class ImListMap<K, V> implements ImMap<K, V> {
     }
 
     /*
-     * search through list recursively to find binding with matching key
+     * search through list to find binding with matching key; iterates rather
+     * than recurses, so that long lists don't overflow the stack
      */
-    private Binding get(ImList<Binding> bindings, Object key) {
-        if (bindings.size() == 0)
-            return null;
-        Binding b = bindings.first();
-        if (b.key.equals(key))
-            return b;
-        else
-            return get(bindings.rest(), key);
+    private Binding<K, V> get(ImList<Binding<K, V>> bindings, Object key) {
+        for (ImList<Binding<K, V>> bs = bindings; !bs.isEmpty(); bs = bs.rest()) {
+            if (bs.first().key.equals(key))
+                return bs.first();
+        }
+        return null;
     }
 
     public ImMap<K, V> put(K key, V value) {
@@ -94,19 +96,21 @@ public class ImListMap<K, V> implements ImMap<K, V> {
     }
 
     /*
-     * recursively construct new list with binding for given key replaced or
-     * added
+     * construct new list with binding for given key replaced or added at the
+     * end: the bindings before it are copied, the ones after it shared
      */
-    private ImList<Binding> put(ImList<Binding> bindings, K key, V value) {
-        if (bindings.size() == 0)
-            return new NonEmptyImList<Binding>(new Binding(key, value));
-        Binding b = bindings.first();
-        if (b.key.equals(key)) {
-            b = new Binding(key, value);
-            return bindings.rest().add(b);
-        } else {
-            return put(bindings.rest(), key, value).add(b);
+    private ImList<Binding<K, V>> put(ImList<Binding<K, V>> bindings, K key, V value) {
+        List<Binding<K, V>> before = new ArrayList<Binding<K, V>>();
+        ImList<Binding<K, V>> bs = bindings;
+        while (!bs.isEmpty() && !bs.first().key.equals(key)) {
+            before.add(bs.first());
+            bs = bs.rest();
         }
+        Binding<K, V> b = new Binding<K, V>(key, value);
+        ImList<Binding<K, V>> result = bs.isEmpty() ? new NonEmptyImList<Binding<K, V>>(b) : bs.rest().add(b);
+        for (int i = before.size() - 1; i >= 0; i--)
+            result = result.add(before.get(i));
+        return result;
     }
 
     public int size() {
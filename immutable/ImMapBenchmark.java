@@ -0,0 +1,81 @@
+package immutable;
+
+import java.util.function.Supplier;
+
+/**
+ * Compares ImListMap and ImHashMap: for maps of 10, 1k and 100k string
+ * keys, the time per put of a new key while building the map, per get of a
+ * key in it, and per put replacing the value of a key in it.
+ *
+ * Each figure is the average over rounds repeated for at least a fifth of a
+ * second, after a warm-up, so take them as rough. Gets and replacing puts
+ * on the list map are linear in its size, so they are sampled over a few
+ * keys spread across it rather than all of them. Every put of a new key
+ * copies the whole list map, so building it at 100k keys takes a minute.
+ */
+public class ImMapBenchmark {
+    private static final long ROUND_NANOS = 200000000L;
+    private static final int SAMPLES = 1000;
+
+    public static void main(String[] args) {
+        // warm up both maps, and throw the figures away
+        for (int i = 0; i < 3; i++) {
+            run(ImListMap::new, 1000);
+            run(ImHashMap::new, 1000);
+        }
+        System.out.println(String.format("%-10s %8s %12s %12s %12s", "map", "size", "put ns", "get ns",
+                                         "replace ns"));
+        for (int n : new int[] { 10, 1000, 100000 }) {
+            print("ImListMap", n, run(ImListMap::new, n));
+            print("ImHashMap", n, run(ImHashMap::new, n));
+        }
+    }
+
+    private static void print(String name, int n, double[] nanos) {
+        System.out.println(String.format("%-10s %8d %12.1f %12.1f %12.1f", name, n, nanos[0], nanos[1], nanos[2]));
+    }
+
+    /*
+     * Returns the nanoseconds per put, get and replacing put on maps of n
+     * keys made by empty.
+     */
+    private static double[] run(Supplier<ImMap<String, Integer>> empty, int n) {
+        String[] keys = new String[n];
+        for (int i = 0; i < n; i++) keys[i] = "v" + i;
+        int[] sample = new int[Math.min(n, SAMPLES)];
+        for (int i = 0; i < sample.length; i++) sample[i] = (int) ((long) i * n / sample.length);
+
+        ImMap<String, Integer> map = null;
+        long rounds = 0;
+        long started = System.nanoTime();
+        do {
+            map = empty.get();
+            for (int i = 0; i < n; i++) map = map.put(keys[i], i);
+            rounds++;
+        } while (System.nanoTime() - started < ROUND_NANOS);
+        double put = (System.nanoTime() - started) / (double) (rounds * n);
+
+        long found = 0;
+        rounds = 0;
+        started = System.nanoTime();
+        do {
+            for (int i : sample) {
+                if (map.get(keys[i]) != null) found++;
+            }
+            rounds++;
+        } while (System.nanoTime() - started < ROUND_NANOS);
+        double get = (System.nanoTime() - started) / (double) (rounds * sample.length);
+        if (found != rounds * sample.length) throw new AssertionError("ImMapBenchmark: key not found");
+
+        rounds = 0;
+        started = System.nanoTime();
+        do {
+            ImMap<String, Integer> m = map;
+            for (int i : sample) m = m.put(keys[i], -i);
+            if (m.size() != n) throw new AssertionError("ImMapBenchmark: size changed");
+            rounds++;
+        } while (System.nanoTime() - started < ROUND_NANOS);
+        double replace = (System.nanoTime() - started) / (double) (rounds * sample.length);
+        return new double[] { put, get, replace };
+    }
+}
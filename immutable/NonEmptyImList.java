@@ -7,7 +7,9 @@
  */
 package immutable;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 public class NonEmptyImList<E> implements ImList<E> {
     private E element;
@@ -53,14 +55,20 @@ public class NonEmptyImList<E> implements ImList<E> {
 
     public ImList<E> remove(E e) {
         assert e != null: "NonEmptyList.remove(null)";
-        if (element.equals(e)) {
-            return rest;
-        }
-        else {
-            ImList<E> l = rest.remove (e);
-            if (l == rest) return this;
-            else return new NonEmptyImList<E> (element, l);
+        // walk to the first match rather than recurse, so that long lists
+        // don't overflow the stack, and keep the elements before it
+        List<E> before = new ArrayList<E>();
+        ImList<E> l = this;
+        while (!l.isEmpty() && !l.first().equals(e)) {
+            before.add(l.first());
+            l = l.rest();
         }
+        if (l.isEmpty()) return this;
+        // the elements before the match go back onto the list after it
+        ImList<E> result = l.rest();
+        for (int i = before.size() - 1; i >= 0; i--)
+            result = new NonEmptyImList<E> (before.get(i), result);
+        return result;
     }
 
     public ImList<E> rest() {
@@ -69,7 +77,9 @@ public class NonEmptyImList<E> implements ImList<E> {
 
     public boolean contains (E e) {
         assert e != null: "NonEmptyList.contains(null)";
-        return element.equals(e) || rest.contains(e);
+        for (E x : this)
+            if (x.equals(e)) return true;
+        return false;
     }
 
     public int size () {
@@ -96,9 +106,13 @@ public class NonEmptyImList<E> implements ImList<E> {
     public boolean equals (Object o) {
         if (o == this) return true;
         if (!(o instanceof ImList)) return false;
-        ImList l = (ImList) o;
+        ImList<?> l = (ImList<?>) o;
         if (l.size() != size()) return false;
-        return first().equals(l.first()) && rest().equals(l.rest());
+        // iterate rather than recurse, so that long lists don't overflow the stack
+        Iterator<?> it = l.iterator();
+        for (E e : this)
+            if (!e.equals(it.next())) return false;
+        return true;
     }
 
     /**
@@ -109,7 +123,10 @@ public class NonEmptyImList<E> implements ImList<E> {
      */
     @Override
     public int hashCode () {
-        return rest.hashCode() + (element == null ? 0 : element.hashCode());
+        int h = 0;
+        for (E e : this)
+            h += e == null ? 0 : e.hashCode();
+        return h;
     }
 
     /**
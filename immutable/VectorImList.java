@@ -0,0 +1,273 @@
+package immutable;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Implementation of immutable list as a persistent vector: the elements sit
+ * in arrays of 32, the leaves of a trie that branches 32 ways, except for
+ * the last few, which sit in a tail array of their own.
+ *
+ * The list is kept back to front, so that add puts its element at the end
+ * of the vector, which only copies the tail, and every 32 adds the path to
+ * a new leaf; rest drops it again the same way. Everything else is shared
+ * with the list it came from. size, first and get(i) take constant time,
+ * and iteration walks each leaf array in turn, without recursion.
+ */
+public class VectorImList<E> implements ImList<E> {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+    private static final Object[] EMPTY_NODE = new Object[WIDTH];
+    private static final Object[] EMPTY_TAIL = new Object[0];
+
+    /*
+     * Rep invariant:
+     *     0 <= count, root != null, tail != null
+     *     tail holds elements tailOffset() to count-1 of the vector, and the
+     *       trie of root, shift levels of BITS bits deep, those before
+     *     no element is null
+     *
+     * Abstraction function:
+     *     The list [v_{count-1}, ..., v_1, v_0] where v_i is element i of
+     *     the vector.
+     */
+    private final int count;
+    private final int shift;
+    private final Object[] root;
+    private final Object[] tail;
+
+    void checkRep() {
+        assert count >= 0 && root != null && tail != null : "VectorImList, Rep invariant: non null";
+        assert tail.length == count - tailOffset() : "VectorImList, Rep invariant: tail length";
+    }
+
+    /**
+     * @return an empty list
+     */
+    public VectorImList() {
+        this(0, BITS, EMPTY_NODE, EMPTY_TAIL);
+    }
+
+    private VectorImList(int count, int shift, Object[] root, Object[] tail) {
+        this.count = count;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+        checkRep();
+    }
+
+    // index in the vector of the first element of the tail
+    private int tailOffset() {
+        return count < WIDTH ? 0 : (count - 1) >>> BITS << BITS;
+    }
+
+    // the leaf array holding element i of the vector
+    private Object[] leafFor(int i) {
+        if (i >= tailOffset()) return tail;
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) node = (Object[]) node[i >>> level & MASK];
+        return node;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E element(int i) {
+        return (E) leafFor(i)[i & MASK];
+    }
+
+    public ImList<E> add(E e) {
+        assert e != null : "VectorImList.add(null)";
+        if (count - tailOffset() < WIDTH) {
+            Object[] newTail = new Object[tail.length + 1];
+            System.arraycopy(tail, 0, newTail, 0, tail.length);
+            newTail[tail.length] = e;
+            return new VectorImList<E>(count + 1, shift, root, newTail);
+        }
+        // the tail is full: it goes into the trie, and e starts a new one
+        Object[] newRoot;
+        int newShift = shift;
+        if ((count >>> BITS) > (1 << shift)) {
+            newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            newRoot[1] = newPath(shift, tail);
+            newShift += BITS;
+        } else {
+            newRoot = pushTail(shift, root, tail);
+        }
+        return new VectorImList<E>(count + 1, newShift, newRoot, new Object[] { e });
+    }
+
+    private Object[] pushTail(int level, Object[] parent, Object[] leaf) {
+        int i = (count - 1) >>> level & MASK;
+        Object[] node = parent.clone();
+        if (level == BITS) {
+            node[i] = leaf;
+        } else {
+            Object[] child = (Object[]) parent[i];
+            node[i] = child != null ? pushTail(level - BITS, child, leaf) : newPath(level - BITS, leaf);
+        }
+        return node;
+    }
+
+    private static Object[] newPath(int level, Object[] leaf) {
+        Object[] node = leaf;
+        for (; level > 0; level -= BITS) {
+            Object[] parent = new Object[WIDTH];
+            parent[0] = node;
+            node = parent;
+        }
+        return node;
+    }
+
+    public E first() {
+        assert count > 0 : "VectorImList.first";
+        return element(count - 1);
+    }
+
+    public ImList<E> rest() {
+        assert count > 0 : "VectorImList.rest";
+        if (count == 1) return new VectorImList<E>();
+        if (count - tailOffset() > 1) {
+            Object[] newTail = new Object[tail.length - 1];
+            System.arraycopy(tail, 0, newTail, 0, newTail.length);
+            return new VectorImList<E>(count - 1, shift, root, newTail);
+        }
+        // the tail empties: the last leaf of the trie becomes the tail
+        Object[] newTail = leafFor(count - 2);
+        Object[] newRoot = popTail(shift, root);
+        int newShift = shift;
+        if (newRoot == null) newRoot = EMPTY_NODE;
+        if (shift > BITS && newRoot[1] == null) {
+            newRoot = (Object[]) newRoot[0];
+            newShift -= BITS;
+        }
+        return new VectorImList<E>(count - 1, newShift, newRoot, newTail);
+    }
+
+    // node without its last leaf, or null if that leaves it empty
+    private Object[] popTail(int level, Object[] node) {
+        int i = (count - 2) >>> level & MASK;
+        if (level > BITS) {
+            Object[] child = popTail(level - BITS, (Object[]) node[i]);
+            if (child == null && i == 0) return null;
+            Object[] copy = node.clone();
+            copy[i] = child;
+            return copy;
+        }
+        if (i == 0) return null;
+        Object[] copy = node.clone();
+        copy[i] = null;
+        return copy;
+    }
+
+    /**
+     * Requires: 0 <= index < size()
+     * @return e_index where this list = [e_0,...,e_n]
+     */
+    public E get(int index) {
+        assert index >= 0 && index < count : "VectorImList.get(" + index + ")";
+        return element(count - 1 - index);
+    }
+
+    public ImList<E> remove(E e) {
+        assert e != null : "VectorImList.remove(null)";
+        int found = -1;
+        for (int i = count - 1; i >= 0 && found < 0; i--) {
+            if (element(i).equals(e)) found = i;
+        }
+        if (found < 0) return this;
+        ImList<E> result = new VectorImList<E>();
+        for (int i = 0; i < count; i++) {
+            if (i != found) result = result.add(element(i));
+        }
+        return result;
+    }
+
+    public boolean contains(E e) {
+        assert e != null : "VectorImList.contains(null)";
+        // leaf by leaf, in the order of the vector, which doesn't matter here
+        for (int i = 0; i < count; i += WIDTH) {
+            Object[] leaf = leafFor(i);
+            for (Object x : leaf) {
+                if (x != null && x.equals(e)) return true;
+            }
+        }
+        return false;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * @return an iterator over e_0,...,e_n where this list = [e_0,...,e_n],
+     *         which goes through each leaf array in turn
+     */
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            // vector index of the next element, and the leaf it is in
+            private int next = count - 1;
+            private Object[] leaf = next >= 0 ? leafFor(next) : null;
+
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if (next < 0) throw new NoSuchElementException();
+                E e = (E) leaf[next & MASK];
+                if ((next & MASK) == 0 && next > 0) leaf = leafFor(next - 1);
+                next--;
+                return e;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Compares the specified object with this list for equality.  Returns
+     * <tt>true</tt> if the specified object is also a list, and the two lists
+     * have the same elements in the same order.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) return true;
+        if (!(o instanceof ImList)) return false;
+        ImList<?> l = (ImList<?>) o;
+        if (l.size() != count) return false;
+        Iterator<?> it = l.iterator();
+        for (E e : this) {
+            if (!e.equals(it.next())) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the sum of the hash codes of the elements, as for the other
+     *         lists
+     */
+    @Override
+    public int hashCode() {
+        int h = 0;
+        for (E e : this) h += e.hashCode();
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder("[");
+        for (E e : this) {
+            if (s.length() > 1) s.append(", ");
+            s.append(e);
+        }
+        return s.append("]").toString();
+    }
+}
@@ -0,0 +1,74 @@
+package immutable;
+
+import static org.junit.Assert.*;
+
+import java.util.Iterator;
+
+import org.junit.Test;
+
+public class VectorImListTest {
+
+    // make sure assertions are turned on!
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false;
+    }
+
+    @Test
+    public void testSmall() {
+        ImList<String> empty = new VectorImList<String>();
+        ImList<String> ab = empty.add("b").add("a");
+        assertTrue(empty.isEmpty());
+        assertEquals(2, ab.size());
+        assertEquals("a", ab.first());
+        assertEquals("b", ab.rest().first());
+        assertTrue(ab.rest().rest().isEmpty());
+        assertTrue(ab.contains("b"));
+        assertFalse(ab.contains("c"));
+        assertEquals("[a, b]", ab.toString());
+        assertEquals("[b]", ab.remove("a").toString());
+        assertSame(ab, ab.remove("c"));
+        assertEquals(new EmptyImList<String>(), empty);
+        assertEquals(empty, new EmptyImList<String>());
+    }
+
+    @Test
+    public void testAgainstConsList() {
+        // past one level of the trie and into the next, both ways
+        int n = 40000;
+        ImList<Integer> cons = new EmptyImList<Integer>();
+        ImList<Integer> vector = new VectorImList<Integer>();
+        ImList<Integer> half = null;
+        for (int i = 0; i < n; i++) {
+            cons = cons.add(i);
+            vector = vector.add(i);
+            if (i == n / 2) half = vector;
+        }
+        assertEquals(n, vector.size());
+        assertEquals(cons, vector);
+        assertEquals(vector, cons);
+        assertEquals(cons.hashCode(), vector.hashCode());
+        assertEquals(Integer.valueOf(n - 1 - 12345), ((VectorImList<Integer>) vector).get(12345));
+        assertTrue(vector.contains(0));
+        assertEquals(n / 2 + 1, half.size());
+        assertEquals(Integer.valueOf(n / 2), half.first());
+
+        Iterator<Integer> it = vector.iterator();
+        for (int i = n - 1; i >= 0; i--) assertEquals(Integer.valueOf(i), it.next());
+        assertFalse(it.hasNext());
+
+        // take it apart again with rest(), checking as it shrinks
+        ImList<Integer> v = vector;
+        ImList<Integer> c = cons;
+        for (int i = n - 1; i >= 0; i--) {
+            assertEquals(c.first(), v.first());
+            assertEquals(i + 1, v.size());
+            v = v.rest();
+            c = c.rest();
+            if (i % 1031 == 0) assertEquals(c, v);
+        }
+        assertTrue(v.isEmpty());
+        assertEquals(n, vector.size());
+        assertEquals(cons.remove(777), vector.remove(777));
+    }
+}
@@ -0,0 +1,19 @@
+package sat;
+
+/**
+ * Search algorithms offered by SATSolver.
+ */
+public enum Algorithm {
+    /**
+     * Davis-Putnam-Logemann-Loveland: chronological backtracking with unit
+     * propagation. Nothing is remembered about why a branch failed.
+     */
+    DPLL,
+
+    /**
+     * Conflict-driven clause learning: every conflict is analysed into a
+     * learned clause, and the search jumps back non-chronologically to the
+     * level where that clause becomes unit.
+     */
+    CDCL
+}
@@ -0,0 +1,23 @@
+package sat;
+
+/**
+ * Read-only view of the solver's current partial assignment, in the int
+ * encoding used inside the solver: variables are numbered 0..numVars()-1,
+ * literal 2v stands for variable v and 2v+1 for its negation.
+ */
+public interface Assignment {
+    /**
+     * @return number of variables
+     */
+    int numVars();
+
+    /**
+     * @return true iff variable v has a value
+     */
+    boolean isAssigned(int v);
+
+    /**
+     * @return true iff literal l is assigned true
+     */
+    boolean isTrue(int l);
+}
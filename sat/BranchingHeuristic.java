@@ -0,0 +1,45 @@
+package sat;
+
+/**
+ * A BranchingHeuristic chooses the decisions of a search. Literals use the
+ * int encoding described in Assignment.
+ * 
+ * A heuristic is stateful and serves a single search: SolverOptions holds a
+ * supplier so that every solve call gets a fresh one. The search calls
+ * init() once, then pickLiteral() for every decision, and tells the
+ * heuristic which variables became unassigned and which ones took part in
+ * conflicts, so that it can keep its own ranking up to date.
+ */
+public interface BranchingHeuristic {
+    /**
+     * Prepare for a search over the given clauses.
+     * 
+     * @param numVars
+     *            number of variables
+     * @param clauses
+     *            clauses of the formula; not to be modified. Unit clauses
+     *            are already assigned and not included.
+     */
+    void init(int numVars, int[][] clauses);
+
+    /**
+     * @return an unassigned literal to decide next, or -1 if the heuristic
+     *         finds nothing left to decide
+     */
+    int pickLiteral(Assignment assignment);
+
+    /**
+     * Variable v lost its value on backtrack, and may be decided again.
+     */
+    void unassigned(int v);
+
+    /**
+     * Variable v took part in a conflict.
+     */
+    void bump(int v);
+
+    /**
+     * A conflict has been handled; all bumps since the last call belong to it.
+     */
+    void decay();
+}
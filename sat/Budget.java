@@ -0,0 +1,109 @@
+package sat;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The limits of one search: numbers of conflicts and decisions, a deadline,
+ * a bound on the heap in use, the interrupt flag of the thread and a
+ * cancellation token. The search reports every conflict and decision, and
+ * stops as soon as a report returns true.
+ *
+ * The counters are checked at every report, which costs a compare; the
+ * clock, the heap, the interrupt flag and the token are only looked at every
+ * CHECK_INTERVAL reports, so the budget costs nothing measurable per step.
+ */
+final class Budget {
+    private static final int CHECK_INTERVAL = 256;
+
+    private final long maxConflicts;
+    private final long maxDecisions;
+    // System.nanoTime() value at which time runs out, if hasDeadline
+    private final long deadline;
+    private final boolean hasDeadline;
+    private final long maxMemory;
+    private final CancellationToken token;
+    private long conflicts;
+    private long decisions;
+    // poll at the first report already, for a token cancelled before the search
+    private int countdown = 1;
+    private SolveResult.Reason reason;
+
+    /**
+     * @param token
+     *            cancels the search, or null for none
+     * @return a budget with the limits of options, starting now
+     */
+    Budget(SolverOptions options, CancellationToken token) {
+        this.maxConflicts = options.getConflictLimit();
+        this.maxDecisions = options.getDecisionLimit();
+        // toNanos saturates, and a limit that saturates is centuries away: no
+        // deadline. Below that, the deadline may wrap around, which poll()
+        // allows for by comparing differences.
+        long nanos = TimeUnit.MILLISECONDS.toNanos(options.getTimeLimit());
+        this.hasDeadline = nanos != Long.MAX_VALUE;
+        this.deadline = hasDeadline ? System.nanoTime() + nanos : 0;
+        this.maxMemory = options.getMemoryLimit();
+        this.token = token;
+    }
+
+    /**
+     * Count a conflict.
+     * @return true iff the search must stop
+     */
+    boolean conflict() {
+        if (++conflicts > maxConflicts) return stop(SolveResult.Reason.CONFLICT_LIMIT);
+        return --countdown == 0 && poll();
+    }
+
+    /**
+     * Count a decision.
+     * @return true iff the search must stop
+     */
+    boolean decision() {
+        if (++decisions > maxDecisions) return stop(SolveResult.Reason.DECISION_LIMIT);
+        return --countdown == 0 && poll();
+    }
+
+    /**
+     * Count a step of work done before the search, such as preprocessing
+     * one clause or variable; only the clock, the heap, the interrupt flag
+     * and the token limit those.
+     * @return true iff the search must stop
+     */
+    boolean step() {
+        if (reason != null) return true;
+        return --countdown == 0 && poll();
+    }
+
+    /**
+     * @return why the search had to stop, or null if it didn't
+     */
+    SolveResult.Reason reason() {
+        return reason;
+    }
+
+    /**
+     * @throws CancellationException if the search had to stop
+     */
+    void check() {
+        if (reason != null) throw new CancellationException("search stopped: " + reason);
+    }
+
+    private boolean poll() {
+        countdown = CHECK_INTERVAL;
+        if (Thread.currentThread().isInterrupted()) return stop(SolveResult.Reason.INTERRUPTED);
+        if (token != null && token.isCancelled()) return stop(SolveResult.Reason.CANCELLED);
+        if (hasDeadline && System.nanoTime() - deadline > 0) return stop(SolveResult.Reason.TIME_LIMIT);
+        if (maxMemory != Long.MAX_VALUE) {
+            Runtime rt = Runtime.getRuntime();
+            if (rt.totalMemory() - rt.freeMemory() > maxMemory) return stop(SolveResult.Reason.MEMORY_LIMIT);
+        }
+        return false;
+    }
+
+    private boolean stop(SolveResult.Reason why) {
+        reason = why;
+        return true;
+    }
+}
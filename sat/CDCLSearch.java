@@ -0,0 +1,332 @@
+package sat;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Conflict-driven clause learning search over a Propagator.
+ *
+ * Every conflict is analysed in the implication graph down to its first
+ * unique implication point (first UIP). The resulting clause is learned,
+ * and the search jumps back to the second-highest decision level in it,
+ * where the clause immediately implies the negation of the UIP literal.
+ * The learned clause database is bounded: when it outgrows its limit, the
+ * least useful half is dropped and the limit grows a little. Every variable
+ * met during analysis is bumped in the branching heuristic.
+ *
+ * An optional RestartPolicy is consulted after every conflict; a restart
+ * cancels all decisions but keeps the learned clauses. With phase saving,
+ * a variable is decided again with the polarity it last had, so the work
+ * done before a restart or backjump is quickly rebuilt. With probing (see
+ * Prober), each solve() call first probes at decision level 0, where what
+ * it finds holds for good; deeper, conflict analysis would need reasons
+ * for the literals found, which probing doesn't give.
+ *
+ * A search can start from assumptions, decided first on levels of their
+ * own; when one turns out false, the assumptions that forced it are
+ * collected as failedAssumptions(). Learned clauses never depend on the
+ * assumptions, so the same search can be run again with other ones.
+ *
+ * In a portfolio, short learned clauses are published to a ClauseExchange,
+ * and the clauses of the other workers are added whenever the search is
+ * back at decision level 0.
+ *
+ * Every conflict and decision is reported to a Budget, and the search gives
+ * up once the budget runs out, or once it notices that its thread was
+ * interrupted, so a portfolio can cancel it.
+ *
+ * See Marques-Silva and Sakallah, "GRASP: A Search Algorithm for
+ * Propositional Satisfiability" and Een and Sorensson, "An Extensible
+ * SAT-solver" (MiniSat).
+ */
+final class CDCLSearch {
+    private static final double CLAUSE_DECAY = 0.999;
+    private static final int MIN_LEARNTS = 2000;
+    private static final double LEARNTS_GROWTH = 1.1;
+    private static final int MAX_SHARED_SIZE = 8;
+
+    private final Propagator propagator;
+    private final BranchingHeuristic heuristic;
+    private final RestartPolicy restarts;
+    private final Decider decider;
+    // seen[v] marks the variables already visited by the current analysis
+    private final boolean[] seen;
+    private final int[] learnt;
+    private double maxLearnts;
+    private ClauseExchange.Port exchange;
+    private ProofWriter proof;
+    private final Prober prober;
+    private int[] failed = new int[0];
+    private final SolverStatistics stats = new SolverStatistics();
+
+    CDCLSearch(Propagator propagator, SolverOptions options) {
+        this.propagator = propagator;
+        this.heuristic = options.newHeuristic();
+        this.restarts = options.newRestartPolicy();
+        this.decider = new Decider(heuristic, options);
+        heuristic.init(propagator.numVars(), propagator.originalClauses());
+        propagator.setHeuristic(heuristic);
+        this.seen = new boolean[propagator.numVars()];
+        this.learnt = new int[propagator.numVars()];
+        this.maxLearnts = MIN_LEARNTS;
+        this.prober = options.getProbing() > 0 ? new Prober(propagator.numVars(), options.getProbing(), stats) : null;
+    }
+
+    /**
+     * Share short learned clauses with the other searches using the same
+     * exchange, which must all search the same clauses.
+     */
+    void share(ClauseExchange.Port exchange) {
+        this.exchange = exchange;
+    }
+
+    /**
+     * Log every learned clause to proof, and every clause dropped, ending
+     * with the empty clause if the clauses are unsatisfiable.
+     */
+    void logProof(ProofWriter proof) {
+        this.proof = proof;
+        propagator.setProof(proof);
+        if (prober != null) prober.logProof(proof);
+    }
+
+    /**
+     * @return the statistics of every solve() call on this search so far;
+     *         the propagations, total time and allocations are left to the caller
+     */
+    SolverStatistics statistics() {
+        return stats;
+    }
+
+    /**
+     * Search for an assignment satisfying every clause.
+     * Requires: the propagator is not inconsistent and is at decision level 0.
+     *
+     * @return true if the propagator now holds a satisfying assignment,
+     *         false if the formula is unsatisfiable
+     * @throws CancellationException if the thread is interrupted
+     */
+    boolean solve() {
+        Budget budget = new Budget(new SolverOptions(), null);
+        SolveResult.Status status = solve(new int[0], budget);
+        budget.check();
+        return status == SolveResult.Status.SATISFIABLE;
+    }
+
+    /**
+     * Search for an assignment satisfying every clause and every assumption,
+     * giving up when the budget does. Assumption i is decided on
+     * level i+1, or that level is left empty if it is already true.
+     * Requires: the propagator is not inconsistent and is at decision level 0.
+     *
+     * @return SATISFIABLE if the propagator now holds a satisfying
+     *         assignment, UNSATISFIABLE if there is none that makes the
+     *         assumptions true, UNKNOWN if the search gave up, for
+     *         budget.reason()
+     */
+    SolveResult.Status solve(int[] assumptions, Budget budget) {
+        Propagator p = propagator;
+        failed = new int[0];
+        boolean probed = prober == null;
+        for (;;) {
+            long started = System.nanoTime();
+            boolean consistent = p.propagate();
+            if (consistent && !probed && p.decisionLevel() == 0) {
+                probed = true;
+                consistent = prober.probe(p);
+            }
+            long propagated = System.nanoTime();
+            stats.propagationNanos += propagated - started;
+            if (!consistent) {
+                stats.conflicts++;
+                if (p.decisionLevel() == 0) {
+                    if (proof != null) proof.add(new int[0]);
+                    return SolveResult.Status.UNSATISFIABLE;
+                }
+                if (budget.conflict()) return SolveResult.Status.UNKNOWN;
+                stats.backtracks++;
+                int size = analyze(p.conflict());
+                int[] lits = Arrays.copyOf(learnt, size);
+                if (proof != null) proof.add(lits);
+                int trailSize = p.trailSize();
+                int glue = 1;
+                if (size == 1) {
+                    p.cancelUntil(0);
+                    p.enqueue(lits[0], Propagator.NO_REASON);
+                } else {
+                    glue = glue(lits);
+                    p.cancelUntil(p.level(lits[1] >> 1));
+                    p.addLearnt(lits, glue);
+                }
+                if (exchange != null && size <= MAX_SHARED_SIZE) exchange.publish(lits.clone());
+                p.decayClauses(CLAUSE_DECAY);
+                heuristic.decay();
+                if (restarts != null && restarts.shouldRestart(glue, trailSize)) {
+                    stats.restarts++;
+                    p.cancelUntil(0);
+                }
+            } else {
+                if (exchange != null && p.decisionLevel() == 0) {
+                    int assigned = p.trailSize();
+                    if (!importShared()) return SolveResult.Status.UNSATISFIABLE;
+                    if (p.trailSize() > assigned) continue;
+                }
+                if (p.numLearnts() - p.trailSize() >= maxLearnts) {
+                    p.reduceLearnts();
+                    maxLearnts *= LEARNTS_GROWTH;
+                }
+                int lit = -1;
+                while (lit < 0 && p.decisionLevel() < assumptions.length) {
+                    int a = assumptions[p.decisionLevel()];
+                    if (p.value(a) == Propagator.TRUE) {
+                        p.newDecisionLevel();
+                    } else if (p.value(a) == Propagator.FALSE) {
+                        analyzeFinal(a);
+                        return SolveResult.Status.UNSATISFIABLE;
+                    } else {
+                        lit = a;
+                    }
+                }
+                if (lit < 0) {
+                    lit = decider.pick(p);
+                    stats.branchingNanos += System.nanoTime() - propagated;
+                    if (lit < 0) return SolveResult.Status.SATISFIABLE;
+                    if (budget.decision()) return SolveResult.Status.UNKNOWN;
+                    stats.decisions++;
+                }
+                p.newDecisionLevel();
+                if (p.decisionLevel() > stats.maxDepth) stats.maxDepth = p.decisionLevel();
+                p.enqueue(lit, Propagator.NO_REASON);
+            }
+        }
+    }
+
+    /**
+     * @return after solve() found the assumptions unsatisfiable, a subset of
+     *         them that cannot all be true together; empty if the clauses
+     *         alone are unsatisfiable
+     */
+    int[] failedAssumptions() {
+        return failed.clone();
+    }
+
+    /*
+     * Collect the assumptions that imply the negation of assumption a, by
+     * walking the implication graph back from it to the decisions, which
+     * are all assumptions at this point.
+     */
+    private void analyzeFinal(int a) {
+        Propagator p = propagator;
+        int[] core = new int[p.decisionLevel() + 1];
+        int size = 0;
+        core[size++] = a;
+        seen[a >> 1] = true;
+        for (int i = p.trailSize() - 1; i >= 0; i--) {
+            int v = p.trail(i) >> 1;
+            if (p.level(v) == 0) break;
+            if (!seen[v]) continue;
+            seen[v] = false;
+            int r = p.reason(v);
+            if (r == Propagator.NO_REASON) {
+                core[size++] = p.trail(i);
+            } else {
+                for (int k = 1, n = p.clauseSize(r); k < n; k++) {
+                    int u = p.clauseLiteral(r, k) >> 1;
+                    if (p.level(u) > 0) seen[u] = true;
+                }
+            }
+        }
+        seen[a >> 1] = false;
+        failed = Arrays.copyOf(core, size);
+    }
+
+    // Add the clauses the other workers published since last time; false if one is falsified.
+    private boolean importShared() {
+        for (int[] lits : exchange.collect()) {
+            if (!propagator.addShared(lits)) return false;
+        }
+        return true;
+    }
+
+    /*
+     * First-UIP conflict analysis. Walks the trail backwards from the
+     * conflict, resolving away every literal of the current decision level
+     * until only one remains. Leaves the learned clause in learnt[0..size),
+     * with the negated UIP first and the literal of the highest remaining
+     * level second, and returns its size.
+     */
+    private int analyze(int confl) {
+        Propagator p = propagator;
+        int current = p.decisionLevel();
+        int size = 1;
+        int pathCount = 0;
+        int lit = -1;
+        int index = p.trailSize() - 1;
+        do {
+            assert confl != Propagator.NO_REASON : "CDCLSearch.analyze: decision reached before UIP";
+            p.bumpClause(confl);
+            for (int k = lit < 0 ? 0 : 1, n = p.clauseSize(confl); k < n; k++) {
+                int q = p.clauseLiteral(confl, k);
+                int v = q >> 1;
+                if (!seen[v] && p.level(v) > 0) {
+                    seen[v] = true;
+                    heuristic.bump(v);
+                    if (p.level(v) >= current) pathCount++;
+                    else learnt[size++] = q;
+                }
+            }
+            while (!seen[p.trail(index) >> 1]) index--;
+            lit = p.trail(index--);
+            confl = p.reason(lit >> 1);
+            seen[lit >> 1] = false;
+            pathCount--;
+        } while (pathCount > 0);
+        learnt[0] = lit ^ 1;
+
+        // Drop literals implied by the rest of the clause (local minimization).
+        int[] marked = Arrays.copyOf(learnt, size);
+        int kept = 1;
+        for (int i = 1; i < size; i++) {
+            if (!isRedundant(marked[i])) learnt[kept++] = marked[i];
+        }
+        for (int i = 1; i < size; i++) seen[marked[i] >> 1] = false;
+        size = kept;
+
+        // Move the literal of the highest level into the second watch.
+        if (size > 1) {
+            int max = 1;
+            for (int i = 2; i < size; i++) {
+                if (p.level(learnt[i] >> 1) > p.level(learnt[max] >> 1)) max = i;
+            }
+            int t = learnt[1];
+            learnt[1] = learnt[max];
+            learnt[max] = t;
+        }
+        return size;
+    }
+
+    // A literal is redundant if its reason only has literals already in the clause.
+    private boolean isRedundant(int q) {
+        int r = propagator.reason(q >> 1);
+        if (r == Propagator.NO_REASON) return false;
+        for (int k = 1, n = propagator.clauseSize(r); k < n; k++) {
+            int v = propagator.clauseLiteral(r, k) >> 1;
+            if (!seen[v] && propagator.level(v) > 0) return false;
+        }
+        return true;
+    }
+
+    // Literal block distance: the number of distinct decision levels in lits.
+    private int glue(int[] lits) {
+        int count = 0;
+        boolean[] levels = new boolean[propagator.decisionLevel() + 1];
+        for (int l : lits) {
+            int lvl = propagator.level(l >> 1);
+            if (!levels[lvl]) {
+                levels[lvl] = true;
+                count++;
+            }
+        }
+        return count;
+    }
+}
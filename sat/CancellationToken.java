@@ -0,0 +1,25 @@
+package sat;
+
+/**
+ * A CancellationToken lets one thread ask a solve call running on another
+ * to give up. The search polls the token every few hundred steps and then
+ * returns a SolveResult with status UNKNOWN. A token can be shared by any
+ * number of calls, and once cancelled it stays cancelled.
+ */
+public final class CancellationToken {
+    private volatile boolean cancelled;
+
+    /**
+     * Ask every solve call using this token to stop.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return true iff cancel() has been called
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
@@ -0,0 +1,207 @@
+package sat;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * Clauses stored off the heap, one after the other in a direct buffer of
+ * ints: each clause is a header int holding its number of literals,
+ * followed by the literals, in the encoding of Propagator. A clause is
+ * known by the index of its header, its reference.
+ *
+ * A clause on the heap is an int array of its own, with an object header
+ * of 16 bytes and the pointer that holds it, and a formula of millions of
+ * them is that many objects for the collector to trace; here it is its
+ * literals and one int, and the collector sees a single object however many
+ * clauses there are.
+ *
+ * Clauses are appended at the end and freed one by one only by marking
+ * them, so freeing leaves holes until compact() closes them. release()
+ * frees the whole buffer at once, without waiting for the collector to
+ * find it unreachable.
+ */
+final class ClauseArena {
+    // header bit of a freed clause
+    private static final int FREED = 1 << 31;
+    // a direct buffer holds at most Integer.MAX_VALUE bytes
+    private static final int MAX_INTS = Integer.MAX_VALUE / 4;
+    // sun.misc.Unsafe.invokeCleaner, to free a direct buffer straight away
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> c = Class.forName("sun.misc.Unsafe");
+            Field f = c.getDeclaredField("theUnsafe");
+            f.setAccessible(true);
+            unsafe = f.get(null);
+            invokeCleaner = c.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // before Java 9, or not allowed: buffers wait for the collector
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    /*
+     * Rep invariant:
+     *   bytes == null iff released, and then ints == null and top == 0
+     *   ints is a view of bytes in native order, of capacity at least top
+     *   ints[0..top) is a sequence of clauses, each a header and that many
+     *     literals, and wasted is the number of ints of the freed ones
+     */
+    private ByteBuffer bytes;
+    private IntBuffer ints;
+    private int top;
+    private int wasted;
+
+    /**
+     * @return an empty arena with room for capacity ints before it grows
+     */
+    ClauseArena(int capacity) {
+        allocate(Math.max(capacity, 16));
+    }
+
+    private void allocate(int capacity) {
+        bytes = ByteBuffer.allocateDirect(4 * capacity).order(ByteOrder.nativeOrder());
+        ints = bytes.asIntBuffer();
+    }
+
+    /**
+     * Append the clause of lits.
+     * Requires: not released
+     *
+     * @return the reference of the new clause
+     */
+    int add(int[] lits) {
+        int needed = top + 1 + lits.length;
+        if (needed > ints.capacity()) grow(needed);
+        int ref = top;
+        ints.put(ref, lits.length);
+        for (int k = 0; k < lits.length; k++) ints.put(ref + 1 + k, lits[k]);
+        top = needed;
+        return ref;
+    }
+
+    // Move the clauses to a buffer of at least the given number of ints.
+    private void grow(int needed) {
+        if (needed > MAX_INTS) throw new OutOfMemoryError("ClauseArena: more than " + MAX_INTS + " ints");
+        ByteBuffer old = bytes;
+        IntBuffer from = ints.duplicate();
+        from.position(0).limit(top);
+        allocate((int) Math.min(Math.max(2L * ints.capacity(), needed), MAX_INTS));
+        ints.put(from);
+        free(old);
+    }
+
+    /**
+     * @return number of literals of clause ref
+     */
+    int size(int ref) {
+        return ints.get(ref) & ~FREED;
+    }
+
+    /**
+     * @return literal k of clause ref, 0 <= k < size(ref)
+     */
+    int get(int ref, int k) {
+        return ints.get(ref + 1 + k);
+    }
+
+    /**
+     * Make literal k of clause ref l, 0 <= k < size(ref).
+     */
+    void set(int ref, int k, int l) {
+        ints.put(ref + 1 + k, l);
+    }
+
+    /**
+     * @return the literals of clause ref, in a new array
+     */
+    int[] literals(int ref) {
+        int[] lits = new int[size(ref)];
+        for (int k = 0; k < lits.length; k++) lits[k] = ints.get(ref + 1 + k);
+        return lits;
+    }
+
+    /**
+     * Free clause ref. Its room is only reused after compact().
+     */
+    void free(int ref) {
+        assert (ints.get(ref) & FREED) == 0 : "ClauseArena: clause " + ref + " freed twice";
+        wasted += 1 + size(ref);
+        ints.put(ref, ints.get(ref) | FREED);
+    }
+
+    /**
+     * @return number of ints the clauses take up, freed ones included
+     */
+    int used() {
+        return top;
+    }
+
+    /**
+     * @return number of ints of the freed clauses
+     */
+    int wasted() {
+        return wasted;
+    }
+
+    /**
+     * @return bytes of memory the arena holds off the heap
+     */
+    long bytes() {
+        return bytes == null ? 0 : bytes.capacity();
+    }
+
+    /**
+     * Move the clauses refs[0..n) down over the room of the freed ones,
+     * keeping their order, and change refs to their new references.
+     * Requires: refs[0..n) are ascending, and are every clause not freed
+     */
+    void compact(int[] refs, int n) {
+        int to = 0;
+        for (int i = 0; i < n; i++) {
+            int from = refs[i];
+            int length = 1 + size(from);
+            assert from >= to : "ClauseArena.compact: references out of order";
+            for (int k = 0; k < length; k++) ints.put(to + k, ints.get(from + k));
+            refs[i] = to;
+            to += length;
+        }
+        top = to;
+        wasted = 0;
+    }
+
+    /**
+     * Free every clause and the memory that holds them. The arena cannot be
+     * used any more.
+     */
+    void release() {
+        ByteBuffer old = bytes;
+        bytes = null;
+        ints = null;
+        top = 0;
+        wasted = 0;
+        if (old != null) free(old);
+    }
+
+    /*
+     * Free the memory of a direct buffer that is no longer used, straight
+     * away if the JVM lets us and otherwise once it is collected.
+     * Requires: nothing reads or writes buffer or a view of it afterwards
+     */
+    private static void free(ByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) return;
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException e) {
+            // left to the collector
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package sat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lock-free buffer through which the workers of a portfolio share short
+ * learned clauses. All workers must search the same clauses, in the same
+ * encoding, for a clause learned by one to be valid for the others.
+ *
+ * Clauses go into a fixed ring of slots: publishing claims the next slot
+ * with a single atomic increment and fills it, so no worker ever waits for
+ * another. Each worker reads from its own cursor; a worker that falls more
+ * than a ring behind simply misses the clauses that were overwritten, which
+ * only costs it some learning.
+ */
+final class ClauseExchange {
+    private static final int CAPACITY = 1 << 12;
+    private static final int MASK = CAPACITY - 1;
+
+    /*
+     * Rep invariant:
+     *   next is the number of clauses published so far
+     *   ring[i] is null or the clause published with some seq
+     *     such that (seq & MASK) == i
+     */
+    private final AtomicReferenceArray<Shared> ring = new AtomicReferenceArray<Shared>(CAPACITY);
+    private final AtomicLong next = new AtomicLong();
+
+    private static final class Shared {
+        final long seq;
+        final int worker;
+        final int[] lits;
+
+        Shared(long seq, int worker, int[] lits) {
+            this.seq = seq;
+            this.worker = worker;
+            this.lits = lits;
+        }
+    }
+
+    /**
+     * @return the access point of one worker; each worker must use its own
+     */
+    Port port(int worker) {
+        return new Port(worker);
+    }
+
+    /**
+     * One worker's view of the exchange. Not safe to share between threads.
+     */
+    final class Port {
+        private final int worker;
+        private long cursor;
+
+        private Port(int worker) {
+            this.worker = worker;
+        }
+
+        /**
+         * Offer a clause to the other workers.
+         * Requires: lits is never modified afterwards
+         */
+        void publish(int[] lits) {
+            long seq = next.getAndIncrement();
+            ring.set((int) (seq & MASK), new Shared(seq, worker, lits));
+        }
+
+        /**
+         * @return the clauses published by other workers since the last
+         *         call, except those already overwritten; the arrays must
+         *         not be modified
+         */
+        List<int[]> collect() {
+            List<int[]> result = new ArrayList<int[]>();
+            long end = next.get();
+            if (end - cursor > CAPACITY) cursor = end - CAPACITY;
+            for (; cursor < end; cursor++) {
+                Shared s = ring.get((int) (cursor & MASK));
+                // A slot claimed but not filled yet is read again next time.
+                if (s == null || s.seq < cursor) break;
+                if (s.seq == cursor && s.worker != worker) result.add(s.lits);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,491 @@
+package sat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Simplifies a set of clauses, in the solver's int encoding, before search.
+ * Each method is one simplification; Preprocessor decides which ones to run
+ * and in what order. Every simplification starts by propagating the units
+ * found so far, so they can run in any order.
+ *
+ * Clauses that are satisfied, subsumed or resolved away are deleted, and
+ * literals are removed from clauses they can be dropped from. Whenever a
+ * variable is fixed or eliminated, the clauses needed to give it a value
+ * again are pushed on a reconstruction stack, and extend() replays that
+ * stack on a model of the simplified clauses to get a model of the original
+ * ones.
+ *
+ * With a ProofWriter, every step is also logged as DRAT: clauses are added
+ * before the clauses they replace are deleted, so each addition follows by
+ * unit propagation from what is left, except pure literals, which are
+ * resolution asymmetric tautologies on themselves.
+ */
+final class ClauseSimplifier {
+    // Bounds on bounded variable elimination, to keep its cost low.
+    private static final int MAX_OCCURRENCES = 16;
+    private static final int MAX_RESOLVENT = 24;
+
+    /*
+     * Rep invariant:
+     *   every live clause (clauses.get(c) != null) is sorted, has at least two
+     *     literals, no duplicates, no complementary pair, and no literal
+     *     that is fixed or of an eliminated variable
+     *   no frozen variable is eliminated, or fixed for being pure
+     *   occurs[l][0..occursSize[l]) contains every live clause holding l;
+     *     it may also hold deleted clauses, which are skipped
+     *   value[l] == -value[l^1]; value[l] == TRUE iff l is fixed true
+     *   units holds fixed literals whose clauses haven't been cleaned yet
+     *   reconstruction is a list of clauses, each with its pivot literal first
+     *
+     * Abstraction function:
+     *   the original clauses are equisatisfiable with the live clauses plus
+     *   the fixed literals as units; a model of those extends to a model of
+     *   the original clauses through the reconstruction stack
+     */
+    private final int numVars;
+    private final List<int[]> clauses = new ArrayList<int[]>();
+    private int[][] occurs;
+    private int[] occursSize;
+    private final byte[] value;
+    private final boolean[] eliminated;
+    private final boolean[] frozen;
+    private final int[] units;
+    private int numUnits;
+    private final List<int[]> reconstruction = new ArrayList<int[]>();
+    private boolean unsatisfiable;
+    private int liveClauses;
+    // scratch marks, indexed by literal; a literal is marked if mark[l] == stamp
+    private final int[] mark;
+    private int stamp;
+    private final ProofWriter proof;
+    private final Budget budget;
+
+    ClauseSimplifier(int numVars, int[][] formula) {
+        this(numVars, formula, null);
+    }
+
+    /**
+     * @param proof
+     *            logs every simplification, or null
+     */
+    ClauseSimplifier(int numVars, int[][] formula, ProofWriter proof) {
+        this(numVars, formula, proof, new Budget(new SolverOptions(), null));
+    }
+
+    /**
+     * @param proof
+     *            logs every simplification, or null
+     * @param budget
+     *            polled by subsume, selfSubsume and eliminateVariables, which
+     *            stop early, leaving the clauses simplified as far as they
+     *            got, once it runs out
+     */
+    ClauseSimplifier(int numVars, int[][] formula, ProofWriter proof, Budget budget) {
+        this.numVars = numVars;
+        this.proof = proof;
+        this.budget = budget;
+        this.occurs = new int[2 * numVars][];
+        this.occursSize = new int[2 * numVars];
+        for (int l = 0; l < 2 * numVars; l++) occurs[l] = new int[4];
+        this.value = new byte[2 * numVars];
+        this.eliminated = new boolean[numVars];
+        this.frozen = new boolean[numVars];
+        this.units = new int[numVars];
+        this.mark = new int[2 * numVars];
+        for (int[] lits : formula) add(normalize(lits));
+    }
+
+    /**
+     * Keep variable v from being fixed as a pure literal or eliminated, for
+     * a variable that also occurs in constraints the simplifier doesn't see,
+     * such as at-most-one constraints: its clauses alone don't tell what
+     * value it can take.
+     */
+    void freeze(int v) {
+        frozen[v] = true;
+    }
+
+    /**
+     * @return true if the clauses were found unsatisfiable
+     */
+    boolean isUnsatisfiable() {
+        return unsatisfiable;
+    }
+
+    /**
+     * @return the number of clauses left, not counting fixed literals
+     */
+    int numClauses() {
+        return liveClauses;
+    }
+
+    /**
+     * @return the number of variables neither fixed nor eliminated
+     */
+    int numFreeVars() {
+        int free = 0;
+        for (int v = 0; v < numVars; v++) {
+            if (!eliminated[v] && value[2 * v] == Propagator.UNDEFINED) free++;
+        }
+        return free;
+    }
+
+    /**
+     * @return the simplified clauses: the live clauses plus a unit clause
+     *         for each fixed literal
+     */
+    int[][] clauses() {
+        List<int[]> result = new ArrayList<int[]>(liveClauses + numVars);
+        for (int l = 0; l < 2 * numVars; l++) {
+            if (value[l] == Propagator.TRUE) result.add(new int[] { l });
+        }
+        for (int[] c : clauses) {
+            if (c != null) result.add(c);
+        }
+        return result.toArray(new int[result.size()][]);
+    }
+
+    /**
+     * Turn a model of the simplified clauses into a model of the original
+     * ones. Variables left UNDEFINED are first set to FALSE, since the
+     * stack needs a complete assignment; then it is replayed from the top,
+     * and whenever a clause there is not satisfied, its pivot literal is
+     * made true.
+     *
+     * @param model
+     *            TRUE, FALSE or UNDEFINED value of every variable; updated
+     */
+    void extend(byte[] model) {
+        for (int v = 0; v < model.length; v++) {
+            if (model[v] == Propagator.UNDEFINED) model[v] = Propagator.FALSE;
+        }
+        for (int i = reconstruction.size() - 1; i >= 0; i--) {
+            int[] c = reconstruction.get(i);
+            boolean satisfied = false;
+            for (int l : c) {
+                if (model[l >> 1] == ((l & 1) == 0 ? Propagator.TRUE : Propagator.FALSE)) {
+                    satisfied = true;
+                    break;
+                }
+            }
+            if (!satisfied) model[c[0] >> 1] = (c[0] & 1) == 0 ? Propagator.TRUE : Propagator.FALSE;
+        }
+    }
+
+    /**
+     * Fix the literals of all unit clauses, and clean the clauses they
+     * satisfy or shorten, until no unit is left.
+     */
+    void propagateUnits() {
+        for (int i = 0; i < numUnits && !unsatisfiable; i++) {
+            int l = units[i];
+            for (int k = 0; k < occursSize[l]; k++) delete(occurs[l][k]);
+            occursSize[l] = 0;
+            int nl = l ^ 1;
+            int[] shortened = Arrays.copyOf(occurs[nl], occursSize[nl]);
+            occursSize[nl] = 0;
+            for (int c : shortened) {
+                if (clauses.get(c) != null) strengthen(c, nl);
+            }
+        }
+        numUnits = 0;
+    }
+
+    /**
+     * Fix every pure literal (one whose negation occurs in no clause) to
+     * true, removing the clauses it satisfies, until none is left.
+     */
+    void eliminatePureLiterals() {
+        propagateUnits();
+        boolean changed = true;
+        while (changed && !unsatisfiable) {
+            changed = false;
+            for (int v = 0; v < numVars; v++) {
+                if (eliminated[v] || frozen[v] || value[2 * v] != Propagator.UNDEFINED) continue;
+                int pos = countLive(2 * v), neg = countLive(2 * v + 1);
+                if (pos > 0 && neg == 0) {
+                    fixPure(2 * v);
+                    changed = true;
+                } else if (neg > 0 && pos == 0) {
+                    fixPure(2 * v + 1);
+                    changed = true;
+                }
+            }
+            propagateUnits();
+        }
+    }
+
+    /**
+     * Delete every clause that is a superset of another clause. Each clause
+     * deletes the supersets among the clauses of its rarest literal (backward
+     * subsumption); resolvents added later are checked against the existing
+     * clauses before they are added (forward subsumption).
+     */
+    void subsume() {
+        propagateUnits();
+        for (int c = 0; c < clauses.size() && !unsatisfiable; c++) {
+            if (budget.step()) return;
+            int[] lits = clauses.get(c);
+            if (lits == null) continue;
+            markAll(lits);
+            int rarest = lits[0];
+            for (int l : lits) {
+                if (occursSize[l] < occursSize[rarest]) rarest = l;
+            }
+            for (int k = 0; k < occursSize[rarest]; k++) {
+                int d = occurs[rarest][k];
+                int[] other = clauses.get(d);
+                if (d != c && other != null && other.length >= lits.length && countMarked(other) == lits.length)
+                    delete(d);
+            }
+        }
+    }
+
+    /**
+     * Self-subsuming resolution: if clause C = C' | l and clause D contains
+     * C' | ~l, then the resolvent of C and D on l subsumes D, so ~l can be
+     * removed from D. Repeats until no clause can be shortened.
+     */
+    void selfSubsume() {
+        propagateUnits();
+        List<Integer> queue = new ArrayList<Integer>();
+        for (int c = 0; c < clauses.size(); c++) queue.add(c);
+        while (!queue.isEmpty() && !unsatisfiable) {
+            if (budget.step()) return;
+            int c = queue.remove(queue.size() - 1);
+            int[] lits = clauses.get(c);
+            if (lits == null) continue;
+            markAll(lits);
+            for (int l : lits) {
+                int nl = l ^ 1;
+                for (int k = 0; k < occursSize[nl]; k++) {
+                    int d = occurs[nl][k];
+                    int[] other = clauses.get(d);
+                    if (other == null || other.length < lits.length) continue;
+                    // Every literal of C but l must be in D; l can't be, since ~l is.
+                    if (countMarked(other) == lits.length - 1) {
+                        strengthen(d, nl);
+                        k--;
+                        if (clauses.get(d) != null) queue.add(d);
+                    }
+                }
+                if (clauses.get(c) != lits) break;
+            }
+            propagateUnits();
+        }
+    }
+
+    /**
+     * Bounded variable elimination: replace all clauses containing a
+     * variable by all their non-tautological resolvents on it, whenever that
+     * does not increase the number of clauses. Variables with many
+     * occurrences, and long resolvents, are not tried.
+     */
+    void eliminateVariables() {
+        propagateUnits();
+        Integer[] order = new Integer[numVars];
+        for (int v = 0; v < numVars; v++) order[v] = v;
+        Arrays.sort(order, (x, y) -> Long.compare((long) occursSize[2 * x] * occursSize[2 * x + 1],
+                                                  (long) occursSize[2 * y] * occursSize[2 * y + 1]));
+        for (int v : order) {
+            if (unsatisfiable || budget.step()) return;
+            if (eliminated[v] || frozen[v] || value[2 * v] != Propagator.UNDEFINED) continue;
+            int[] pos = live(2 * v), neg = live(2 * v + 1);
+            if (pos.length + neg.length > MAX_OCCURRENCES) continue;
+            List<int[]> resolvents = new ArrayList<int[]>();
+            boolean bounded = true;
+            for (int p : pos) {
+                for (int n : neg) {
+                    int[] r = resolve(clauses.get(p), clauses.get(n), v);
+                    if (r == null) continue;
+                    if (r.length > MAX_RESOLVENT || resolvents.size() == pos.length + neg.length) {
+                        bounded = false;
+                        break;
+                    }
+                    resolvents.add(r);
+                }
+                if (!bounded) break;
+            }
+            if (!bounded) continue;
+
+            // Keep the clauses of the smaller side for reconstruction, pivot first,
+            // and above them a unit that gives v the other value by default.
+            int[] side = pos.length <= neg.length ? pos : neg;
+            int pivot = pos.length <= neg.length ? 2 * v : 2 * v + 1;
+            for (int c : side) reconstruction.add(pivotFirst(clauses.get(c), pivot));
+            reconstruction.add(new int[] { pivot ^ 1 });
+            eliminated[v] = true;
+            if (proof != null) {
+                for (int[] r : resolvents) proof.add(r);
+            }
+            for (int c : pos) delete(c);
+            for (int c : neg) delete(c);
+            for (int[] r : resolvents) {
+                if (!isSubsumed(r)) add(r);
+                else if (proof != null) proof.delete(r);
+            }
+            propagateUnits();
+        }
+    }
+
+    // Sort the literals of a clause and drop duplicates; null for a tautology.
+    private int[] normalize(int[] lits) {
+        int[] sorted = lits.clone();
+        Arrays.sort(sorted);
+        int n = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (n > 0 && sorted[n - 1] == sorted[i]) continue;
+            if (n > 0 && sorted[n - 1] == (sorted[i] ^ 1)) return null;
+            sorted[n++] = sorted[i];
+        }
+        return Arrays.copyOf(sorted, n);
+    }
+
+    // Add a normalized clause (or nothing, for null), fixing its literal if it is a unit.
+    // If literals are dropped because they are false, the shorter clause is logged.
+    private void add(int[] lits) {
+        if (lits == null || unsatisfiable) return;
+        int n = 0;
+        int[] kept = new int[lits.length];
+        for (int l : lits) {
+            if (value[l] == Propagator.TRUE) return;
+            if (value[l] == Propagator.UNDEFINED) kept[n++] = l;
+        }
+        if (proof != null && n < lits.length) proof.add(kept, n);
+        if (n == 0) {
+            unsatisfiable = true;
+        } else if (n == 1) {
+            fix(kept[0]);
+        } else {
+            int c = clauses.size();
+            clauses.add(Arrays.copyOf(kept, n));
+            liveClauses++;
+            for (int i = 0; i < n; i++) occur(kept[i], c);
+        }
+    }
+
+    private void fixPure(int l) {
+        if (proof != null) proof.add(new int[] { l });
+        fix(l);
+    }
+
+    private void fix(int l) {
+        if (value[l] == Propagator.TRUE) return;
+        if (value[l] == Propagator.FALSE) {
+            if (proof != null) proof.add(new int[0]);
+            unsatisfiable = true;
+            return;
+        }
+        value[l] = Propagator.TRUE;
+        value[l ^ 1] = Propagator.FALSE;
+        units[numUnits++] = l;
+        reconstruction.add(new int[] { l });
+    }
+
+    private void delete(int c) {
+        if (clauses.get(c) == null) return;
+        if (proof != null) proof.delete(clauses.get(c));
+        clauses.set(c, null);
+        liveClauses--;
+    }
+
+    // Remove literal l from clause c; it becomes a unit if only one literal is left.
+    private void strengthen(int c, int l) {
+        int[] lits = clauses.get(c);
+        int[] shorter = new int[lits.length - 1];
+        int n = 0;
+        for (int x : lits) {
+            if (x != l) shorter[n++] = x;
+        }
+        if (proof != null) proof.add(shorter);
+        for (int k = 0; k < occursSize[l]; k++) {
+            if (occurs[l][k] == c) {
+                occurs[l][k] = occurs[l][--occursSize[l]];
+                break;
+            }
+        }
+        if (shorter.length == 1) {
+            delete(c);
+            fix(shorter[0]);
+        } else {
+            if (proof != null) proof.delete(lits);
+            clauses.set(c, shorter);
+        }
+    }
+
+    private void occur(int l, int c) {
+        if (occursSize[l] == occurs[l].length) occurs[l] = Arrays.copyOf(occurs[l], 2 * occursSize[l]);
+        occurs[l][occursSize[l]++] = c;
+    }
+
+    // The live clauses containing l; also purges deleted ones from its list.
+    private int[] live(int l) {
+        int n = 0;
+        for (int k = 0; k < occursSize[l]; k++) {
+            int c = occurs[l][k];
+            if (clauses.get(c) != null) occurs[l][n++] = c;
+        }
+        occursSize[l] = n;
+        return Arrays.copyOf(occurs[l], n);
+    }
+
+    private int countLive(int l) {
+        return live(l).length;
+    }
+
+    // Resolve p (containing v) and n (containing ~v) on v; null if tautological.
+    private int[] resolve(int[] p, int[] n, int v) {
+        markAll(p);
+        int[] r = new int[p.length + n.length - 2];
+        int size = 0;
+        for (int l : p) {
+            if (l >> 1 != v) r[size++] = l;
+        }
+        for (int l : n) {
+            if (l >> 1 == v) continue;
+            if (mark[l ^ 1] == stamp) return null;
+            if (mark[l] != stamp) r[size++] = l;
+        }
+        r = Arrays.copyOf(r, size);
+        Arrays.sort(r);
+        return r;
+    }
+
+    // Forward subsumption: true if some live clause is a subset of lits.
+    private boolean isSubsumed(int[] lits) {
+        markAll(lits);
+        for (int l : lits) {
+            for (int k = 0; k < occursSize[l]; k++) {
+                int[] other = clauses.get(occurs[l][k]);
+                if (other != null && other.length <= lits.length && countMarked(other) == other.length)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private static int[] pivotFirst(int[] lits, int pivot) {
+        int[] c = new int[lits.length];
+        c[0] = pivot;
+        int n = 1;
+        for (int l : lits) {
+            if (l != pivot) c[n++] = l;
+        }
+        return c;
+    }
+
+    private void markAll(int[] lits) {
+        stamp++;
+        for (int l : lits) mark[l] = stamp;
+    }
+
+    private int countMarked(int[] lits) {
+        int n = 0;
+        for (int l : lits) {
+            if (mark[l] == stamp) n++;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,251 @@
+package sat;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+import sat.env.Environment;
+import sat.formula.Formula;
+import sat.formula.IntFormula;
+
+/**
+ * CubeAndConquer solves one hard formula on many cores, through
+ * SATSolver.solve(Formula, CubeAndConquer). It is immutable.
+ *
+ * The search space is split into cubes: partial assignments to a few split
+ * variables, which together cover every assignment. Each cube is a task on
+ * a work-stealing ForkJoinPool, which runs the DPLL search with the cube as
+ * its assumptions. The first cube to find a solution stops all the others.
+ *
+ * Cubes are rarely equally hard, so the split depth adapts: the formula is
+ * split to a modest initial depth, and a cube whose search hits its conflict
+ * budget is split again on one more variable, with each half a new task that
+ * idle workers can steal. Easy regions are solved at the initial depth, and
+ * hard ones keep splitting until every core has work.
+ *
+ * Split variables are the free variables, under the cube, that occur most in
+ * short clauses of both polarities (the product of the two Jeroslow-Wang
+ * weights), so both halves of a split are about equally constrained.
+ */
+public class CubeAndConquer {
+    /*
+     * Rep invariant
+     *     parallelism > 0, initialDepth >= 0, conflictBudget > 0
+     *     options != null
+     */
+    private final int parallelism;
+    private final int initialDepth;
+    private final long conflictBudget;
+    private final SolverOptions options;
+
+    /**
+     * @return cube-and-conquer on every available processor
+     */
+    public CubeAndConquer() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parallelism
+     *            number of worker threads, at least 1
+     * @return cube-and-conquer on the given number of threads, splitting
+     *         into about 4 cubes per thread at first, and splitting a cube
+     *         further after 10000 conflicts
+     */
+    public CubeAndConquer(int parallelism) {
+        this(parallelism, 32 - Integer.numberOfLeadingZeros(4 * parallelism - 1), 10000, new SolverOptions());
+    }
+
+    private CubeAndConquer(int parallelism, int initialDepth, long conflictBudget, SolverOptions options) {
+        assert parallelism > 0 : "CubeAndConquer: parallelism " + parallelism;
+        assert initialDepth >= 0 : "CubeAndConquer: depth " + initialDepth;
+        assert conflictBudget > 0 : "CubeAndConquer: budget " + conflictBudget;
+        this.parallelism = parallelism;
+        this.initialDepth = initialDepth;
+        this.conflictBudget = conflictBudget;
+        this.options = options;
+    }
+
+    /**
+     * @return the same cube-and-conquer, but splitting the formula into
+     *         2^depth cubes before any search
+     */
+    public CubeAndConquer withInitialDepth(int depth) {
+        return new CubeAndConquer(parallelism, depth, conflictBudget, options);
+    }
+
+    /**
+     * @return the same cube-and-conquer, but splitting a cube again when
+     *         its search has had the given number of conflicts
+     */
+    public CubeAndConquer withConflictBudget(long conflicts) {
+        return new CubeAndConquer(parallelism, initialDepth, conflicts, options);
+    }
+
+    /**
+     * @param options
+     *            the heuristic, polarity and phase saving of the DPLL search
+     *            of each cube, and the preprocessor run once before splitting;
+     *            the algorithm, restart policy and limits are ignored
+     * @return the same cube-and-conquer, but with the given options
+     */
+    public CubeAndConquer withOptions(SolverOptions options) {
+        assert options != null : "CubeAndConquer.withOptions(null)";
+        return new CubeAndConquer(parallelism, initialDepth, conflictBudget, options);
+    }
+
+    /**
+     * Split formula into cubes and search them in parallel.
+     *
+     * @return an environment satisfying formula, or null if there is none
+     * @throws CancellationException if the thread is interrupted while waiting
+     */
+    Environment run(Formula formula) {
+        IntFormula encoding = IntFormula.fromFormula(formula);
+        int numVars = encoding.numVariables();
+        int[][] clauses = encoding.clauses();
+        int[][] atMostOnes = encoding.atMostOnes();
+        ClauseSimplifier simplifier = null;
+        if (options.getPreprocessor() != null) {
+            // no limits but the interrupt flag, which the budget polls
+            Budget budget = new Budget(new SolverOptions(), null);
+            simplifier = options.getPreprocessor().run(numVars, clauses, atMostOnes, null, budget);
+            if (simplifier.isUnsatisfiable()) return null;
+            if (budget.reason() != null) throw new CancellationException("CubeAndConquer interrupted");
+            clauses = simplifier.clauses();
+        }
+
+        Conquest conquest = new Conquest(numVars, clauses, atMostOnes);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.submit(conquest.new Cube(new int[0], initialDepth)).get();
+        } catch (InterruptedException e) {
+            conquest.stop.cancel();
+            Thread.currentThread().interrupt();
+            throw new CancellationException("CubeAndConquer interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new RuntimeException(cause);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        byte[] model = conquest.model.get();
+        if (model == null) return null;
+        if (simplifier != null) simplifier.extend(model);
+        return encoding.toEnvironment(Propagator.trueLiterals(model));
+    }
+
+    /*
+     * The state shared by the cubes of one run.
+     */
+    private final class Conquest {
+        final int numVars;
+        final int[][] clauses;
+        final int[][] atMostOnes;
+        final double[] splitScore;
+        final AtomicReference<byte[]> model = new AtomicReference<byte[]>();
+        final CancellationToken stop = new CancellationToken();
+        final SolverOptions limits = new SolverOptions().withConflictLimit(conflictBudget);
+
+        Conquest(int numVars, int[][] clauses, int[][] atMostOnes) {
+            this.numVars = numVars;
+            this.clauses = clauses;
+            this.atMostOnes = atMostOnes;
+            double[] weight = new double[2 * numVars];
+            for (int[] c : clauses) {
+                double w = Math.scalb(1.0, -c.length);
+                for (int l : c) weight[l] += w;
+            }
+            splitScore = new double[numVars];
+            for (int v = 0; v < numVars; v++) splitScore[v] = weight[2 * v] * weight[2 * v + 1];
+        }
+
+        void found(byte[] m) {
+            model.compareAndSet(null, m);
+            stop.cancel();
+        }
+
+        /*
+         * A cube to search, or to split depth more times first.
+         */
+        final class Cube extends RecursiveAction {
+            private static final long serialVersionUID = 1L;
+            private final int[] assumptions;
+            private final int depth;
+
+            Cube(int[] assumptions, int depth) {
+                this.assumptions = assumptions;
+                this.depth = depth;
+            }
+
+            @Override
+            protected void compute() {
+                if (stop.isCancelled()) return;
+                Propagator p = new Propagator(numVars, clauses, atMostOnes, options.isOffHeapClauses());
+                try {
+                    if (p.isInconsistent()) return;
+                    if (depth > 0) {
+                        split(p, depth);
+                        return;
+                    }
+                    DPLLSearch search = new DPLLSearch(p, options);
+                    Budget budget = new Budget(limits, stop);
+                    switch (search.solve(assumptions, budget)) {
+                    case SATISFIABLE: found(p.model()); break;
+                    case UNSATISFIABLE: break;
+                    case UNKNOWN:
+                        if (budget.reason() == SolveResult.Reason.CONFLICT_LIMIT) {
+                            p.cancelUntil(0);
+                            split(p, 1);
+                        }
+                        break;
+                    }
+                } finally {
+                    // the halves of a split have propagators of their own
+                    p.release();
+                }
+            }
+
+            /*
+             * Assume the cube, and fork the two halves of a split on the best
+             * free variable left, each to be split depth-1 more times. Needs
+             * no halves if the cube is refuted or satisfied by propagation alone.
+             */
+            private void split(Propagator p, int depth) {
+                for (int a : assumptions) {
+                    if (!p.propagate() || p.value(a) == Propagator.FALSE) return;
+                    if (p.value(a) == Propagator.UNDEFINED) {
+                        p.newDecisionLevel();
+                        p.enqueue(a, Propagator.NO_REASON);
+                    }
+                }
+                if (!p.propagate()) return;
+                int best = -1;
+                for (int v = 0; v < numVars; v++) {
+                    if (!p.isAssigned(v) && (best < 0 || splitScore[v] > splitScore[best])) best = v;
+                }
+                if (best < 0) {
+                    found(p.model());
+                    return;
+                }
+                int[] left = Arrays.copyOf(assumptions, assumptions.length + 1);
+                int[] right = left.clone();
+                left[assumptions.length] = 2 * best;
+                right[assumptions.length] = 2 * best + 1;
+                invokeAll(new Cube(left, depth - 1), new Cube(right, depth - 1));
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CubeAndConquer[" + parallelism + " threads, depth " + initialDepth + ", "
+               + conflictBudget + " conflicts, " + options + "]";
+    }
+}
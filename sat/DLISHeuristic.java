@@ -0,0 +1,17 @@
+package sat;
+
+/**
+ * Dynamic Largest Individual Sum: decide the literal that occurs in the most
+ * clauses. This version counts the occurrences once, in the clauses of the
+ * formula, rather than in the clauses still unsatisfied at each decision.
+ */
+public class DLISHeuristic extends RankedHeuristic {
+    @Override
+    protected void rank(int numVars, int[][] clauses) {
+        int[] count = occurrences(numVars, clauses);
+        for (int v = 0; v < numVars; v++) {
+            positive[v] = count[2 * v] >= count[2 * v + 1];
+            score[v] = Math.max(count[2 * v], count[2 * v + 1]);
+        }
+    }
+}
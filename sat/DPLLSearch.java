@@ -0,0 +1,185 @@
+package sat;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Chronological DPLL search over a Propagator, without recursion.
+ *
+ * The only search state is the propagator's assignment trail, split into
+ * decision levels. Each level opens with a decision literal; when a branch
+ * fails, the search undoes the levels above the deepest decision that has
+ * not been flipped yet and flips it. Memory therefore stays linear in the
+ * size of the formula, and the call stack stays constant, no matter how many
+ * variables are assigned.
+ *
+ * A search can start from assumptions: literals decided before any other,
+ * which are never flipped, so the search only covers the assignments that
+ * extend them. It reports every conflict and decision to a Budget, and gives
+ * up once the budget runs out or is cancelled; cube-and-conquer relies on
+ * both. With probing (see Prober), the search probes on every decision
+ * level up to the probing level before deciding, and decides the literal the
+ * lookahead suggests. After a model is found, skipModel() moves on to the
+ * next branch of the search tree, so that all models can be enumerated
+ * without storing any of them.
+ */
+final class DPLLSearch {
+    private final Propagator propagator;
+    private final BranchingHeuristic heuristic;
+    private final Decider decider;
+    // flipped[d] is true once the decision of level d has been replaced by its negation
+    private final boolean[] flipped;
+    private final SolverStatistics stats = new SolverStatistics();
+    private ProofWriter proof;
+    private final Prober prober;
+    private final int probingLevel;
+
+    DPLLSearch(Propagator propagator, SolverOptions options) {
+        this.propagator = propagator;
+        this.prober = options.getProbing() > 0 ? new Prober(propagator.numVars(), options.getProbing(), stats) : null;
+        this.probingLevel = options.getProbingLevel();
+        this.heuristic = options.newHeuristic();
+        this.decider = new Decider(heuristic, options);
+        heuristic.init(propagator.numVars(), propagator.originalClauses());
+        propagator.setHeuristic(heuristic);
+        this.flipped = new boolean[propagator.numVars() + 1];
+    }
+
+    /**
+     * Log a proof of every dead end to proof: on backtracking past decision
+     * level d, the clause made of the negations of the literals that opened
+     * levels 1 to d. For the deepest level that follows from the conflict,
+     * and for a flipped level from the two clauses logged for its decision
+     * and its negation, so each clause has a proof by unit propagation and
+     * the last one is empty. Only for searches without assumptions.
+     */
+    void logProof(ProofWriter proof) {
+        this.proof = proof;
+        if (prober != null) prober.logProof(proof);
+    }
+
+    /**
+     * @return the statistics of every solve() call on this search so far;
+     *         the propagations, total time and allocations are left to the caller
+     */
+    SolverStatistics statistics() {
+        return stats;
+    }
+
+    /**
+     * Search for an assignment satisfying every clause. Each decision comes
+     * from the Decider, or from the lookahead of probing, and is tried as
+     * given before its negation. DPLL never restarts.
+     * Requires: the propagator is not inconsistent and is at decision level 0.
+     *
+     * @return true if the propagator now holds a satisfying assignment,
+     *         false if the formula is unsatisfiable
+     * @throws CancellationException if the thread is interrupted
+     */
+    boolean solve() {
+        Budget budget = new Budget(new SolverOptions(), null);
+        SolveResult.Status status = solve(new int[0], budget);
+        budget.check();
+        return status == SolveResult.Status.SATISFIABLE;
+    }
+
+    /**
+     * Search for an assignment satisfying every clause and every assumption,
+     * giving up when the budget does. The assumptions are decided first, in
+     * order, and are never flipped.
+     * Requires: the propagator is not inconsistent, and is at decision level
+     * 0 or was left by skipModel(), in which case the search goes on from
+     * there and assumptions must be empty.
+     *
+     * @return SATISFIABLE if the propagator now holds a satisfying
+     *         assignment, UNSATISFIABLE if there is none that makes the
+     *         assumptions true, UNKNOWN if the search gave up, for
+     *         budget.reason()
+     */
+    SolveResult.Status solve(int[] assumptions, Budget budget) {
+        Propagator p = propagator;
+        for (int a : assumptions) {
+            if (!p.propagate() || p.value(a) == Propagator.FALSE) return SolveResult.Status.UNSATISFIABLE;
+            if (p.value(a) == Propagator.TRUE) continue;
+            p.newDecisionLevel();
+            flipped[p.decisionLevel()] = true;
+            p.enqueue(a, Propagator.NO_REASON);
+        }
+        for (;;) {
+            long started = System.nanoTime();
+            boolean consistent = p.propagate();
+            boolean probing = prober != null && p.decisionLevel() <= probingLevel;
+            if (consistent && probing) consistent = prober.probe(p);
+            long propagated = System.nanoTime();
+            stats.propagationNanos += propagated - started;
+            if (!consistent) {
+                stats.conflicts++;
+                for (int l : p.clause(p.conflict())) heuristic.bump(l >> 1);
+                heuristic.decay();
+                if (budget.conflict()) return SolveResult.Status.UNKNOWN;
+
+                if (proof != null) logDeadEnd();
+                if (!flipDeepest(null)) return SolveResult.Status.UNSATISFIABLE;
+            } else {
+                int lit = probing ? prober.lookahead(p) : -1;
+                if (lit < 0) lit = decider.pick(p);
+                stats.branchingNanos += System.nanoTime() - propagated;
+                if (lit < 0) return SolveResult.Status.SATISFIABLE;
+                if (budget.decision()) return SolveResult.Status.UNKNOWN;
+                stats.decisions++;
+                p.newDecisionLevel();
+                if (p.decisionLevel() > stats.maxDepth) stats.maxDepth = p.decisionLevel();
+                flipped[p.decisionLevel()] = false;
+                p.enqueue(lit, Propagator.NO_REASON);
+            }
+        }
+    }
+
+    /**
+     * Rule out the model found by the last solve(), and every other model
+     * that agrees with it on the relevant variables, by flipping the
+     * deepest decision on a relevant variable not yet tried both ways.
+     * Requires: solve() just returned SATISFIABLE, and every decision on a
+     * relevant variable came before the decisions on the others.
+     *
+     * @return false if the search tree has no branch left
+     */
+    boolean skipModel(boolean[] relevant) {
+        return flipDeepest(relevant);
+    }
+
+    /*
+     * Log the clauses for the levels that flipDeepest(null) is about to
+     * undo: every flipped level at the top of the trail, and the level below
+     * them, or the empty clause if there is none.
+     */
+    private void logDeadEnd() {
+        Propagator p = propagator;
+        int lvl = p.decisionLevel();
+        int[] negated = new int[lvl];
+        for (int d = 1; d <= lvl; d++) negated[d - 1] = p.decision(d) ^ 1;
+        for (;;) {
+            proof.add(negated, lvl);
+            if (lvl == 0 || !flipped[lvl]) break;
+            lvl--;
+        }
+    }
+
+    /*
+     * Dead end: back up to the deepest decision not yet tried both ways,
+     * among the decisions on relevant variables (on any, if relevant is null),
+     * and try its negation. Returns false if there is none.
+     */
+    private boolean flipDeepest(boolean[] relevant) {
+        Propagator p = propagator;
+        int lvl = p.decisionLevel();
+        while (lvl > 0 && (flipped[lvl] || relevant != null && !relevant[p.decision(lvl) >> 1])) lvl--;
+        if (lvl == 0) return false;
+        stats.backtracks++;
+        int decision = p.decision(lvl);
+        p.cancelUntil(lvl - 1);
+        p.newDecisionLevel();
+        flipped[lvl] = true;
+        p.enqueue(decision ^ 1, Propagator.NO_REASON);
+        return true;
+    }
+}
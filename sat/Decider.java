@@ -0,0 +1,51 @@
+package sat;
+
+import java.util.Random;
+
+/**
+ * Picks the decision literals of a search. The branching heuristic picks
+ * the variable, except for an occasional random one when the options ask
+ * for random decisions; the polarity comes from the saved phase, with phase
+ * saving, or else from the polarity setting of the options.
+ *
+ * A heuristic that only looks at clauses may be done while variables of
+ * at-most-one constraints are still free; those are then decided false
+ * until no completion of the assignment can break a constraint.
+ */
+final class Decider {
+    private final BranchingHeuristic heuristic;
+    private final boolean phaseSaving;
+    private final Polarity polarity;
+    private final double randomFrequency;
+    private final Random random;
+
+    Decider(BranchingHeuristic heuristic, SolverOptions options) {
+        this.heuristic = heuristic;
+        this.phaseSaving = options.isPhaseSaving();
+        this.polarity = options.getPolarity();
+        this.randomFrequency = options.getRandomFrequency();
+        this.random = new Random(options.getSeed());
+    }
+
+    /**
+     * @return the literal to decide next, or -1 if the heuristic has nothing
+     *         left to decide and every at-most-one constraint is settled
+     */
+    int pick(Propagator p) {
+        int lit = -1;
+        if (randomFrequency > 0 && random.nextDouble() < randomFrequency) {
+            int v = random.nextInt(p.numVars());
+            if (!p.isAssigned(v)) lit = 2 * v;
+        }
+        if (lit < 0) lit = heuristic.pickLiteral(p);
+        if (lit < 0) return p.unsettledAtMostOne();
+        int v = lit >> 1;
+        if (phaseSaving && p.savedPhase(v) >= 0) return p.savedPhase(v);
+        switch (polarity) {
+        case POSITIVE: return 2 * v;
+        case NEGATIVE: return 2 * v + 1;
+        case RANDOM: return 2 * v + (random.nextBoolean() ? 1 : 0);
+        default: return lit;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package sat;
+
+/**
+ * Restarts after a number of conflicts that starts at first and is
+ * multiplied by factor after every restart.
+ */
+public class GeometricRestarts implements RestartPolicy {
+    private final double factor;
+    private double limit;
+    private int conflicts;
+
+    /**
+     * @return geometric restarts after 100 conflicts, growing by 1.5
+     */
+    public GeometricRestarts() {
+        this(100, 1.5);
+    }
+
+    /**
+     * Requires: first > 0, factor >= 1
+     */
+    public GeometricRestarts(int first, double factor) {
+        assert first > 0 && factor >= 1 : "GeometricRestarts: bad schedule";
+        this.limit = first;
+        this.factor = factor;
+    }
+
+    public boolean shouldRestart(int lbd, int trailSize) {
+        if (++conflicts < limit) return false;
+        limit *= factor;
+        conflicts = 0;
+        return true;
+    }
+}
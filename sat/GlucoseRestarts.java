@@ -0,0 +1,72 @@
+package sat;
+
+/**
+ * Adaptive restarts as in Glucose (Audemard and Simon, "Refining Restarts
+ * Strategies for SAT and UNSAT"). The search restarts when the learned
+ * clauses of the last few conflicts have a clearly worse LBD than the
+ * average so far, i.e. when it is producing poor clauses. A restart is
+ * blocked when the trail is much longer than usual, since the search is
+ * then likely close to a model.
+ */
+public class GlucoseRestarts implements RestartPolicy {
+    private static final int LBD_WINDOW = 50;
+    private static final double K = 0.8;
+    private static final int TRAIL_WINDOW = 5000;
+    private static final double R = 1.4;
+    private static final int BLOCKING_AFTER = 10000;
+
+    private final Window recentLbd = new Window(LBD_WINDOW);
+    private final Window recentTrail = new Window(TRAIL_WINDOW);
+    private long conflicts;
+    private long lbdSum;
+
+    public boolean shouldRestart(int lbd, int trailSize) {
+        conflicts++;
+        lbdSum += lbd;
+        recentTrail.add(trailSize);
+        if (conflicts > BLOCKING_AFTER && recentLbd.isFull() && recentTrail.isFull()
+                && trailSize > R * recentTrail.average()) {
+            recentLbd.clear();
+        }
+        recentLbd.add(lbd);
+        if (!recentLbd.isFull() || recentLbd.average() * K <= (double) lbdSum / conflicts) return false;
+        recentLbd.clear();
+        return true;
+    }
+
+    /*
+     * Sliding window over the last size values added, with their sum.
+     */
+    private static class Window {
+        private final int[] values;
+        private int count;
+        private int next;
+        private long sum;
+
+        Window(int size) {
+            values = new int[size];
+        }
+
+        void add(int x) {
+            if (count == values.length) sum -= values[next];
+            else count++;
+            values[next] = x;
+            sum += x;
+            next = (next + 1) % values.length;
+        }
+
+        boolean isFull() {
+            return count == values.length;
+        }
+
+        double average() {
+            return (double) sum / count;
+        }
+
+        void clear() {
+            count = 0;
+            next = 0;
+            sum = 0;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package sat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+import sat.env.Environment;
+import sat.env.Variable;
+import sat.formula.*;
+
+/**
+ * IncrementalSolver is a mutable CDCL solver that keeps its state between
+ * calls. Clauses are added once, and solve() can then be called any number
+ * of times, each time under different assumptions: literals that must hold
+ * for that call only. The clauses learned by one call, the variable
+ * activities and the saved phases all carry over to the next, so a series of
+ * similar problems (a fixed base formula plus a few givens) costs little
+ * more than propagation once the solver has warmed up.
+ *
+ * When solve() finds the assumptions unsatisfiable, getFailedAssumptions()
+ * tells which of them are to blame.
+ *
+ * The algorithm and preprocessor of the options are ignored: the search is
+ * always CDCL over the clauses as added. Adding clauses over new variables
+ * restarts the branching heuristic, since it is sized for the old ones.
+ * Not safe for use by several threads at once.
+ */
+public class IncrementalSolver {
+    /*
+     * Rep invariant:
+     *   index maps the positive literal of each variable seen so far to its
+     *     number v < variables.size(), and variables.get(v) is its variable
+     *   propagator has variables.size() variables and is at decision level 0
+     *     between calls
+     *   search == null or search runs on propagator with every variable
+     *   unsatisfiable implies the added clauses have no model
+     */
+    private final SolverOptions options;
+    private final Map<Literal, Integer> index = new HashMap<Literal, Integer>();
+    private final List<Variable> variables = new ArrayList<Variable>();
+    private final Propagator propagator;
+    private CDCLSearch search;
+    private boolean unsatisfiable;
+    private List<Literal> failed = new ArrayList<Literal>();
+
+    /**
+     * @return a solver with no clauses, with the default CDCL settings
+     */
+    public IncrementalSolver() {
+        this(new SolverOptions());
+    }
+
+    /**
+     * @param options
+     *            heuristic, restart policy, polarity and phase saving of the
+     *            search, whether it keeps its clauses off the heap, and the
+     *            limits of each solve() call
+     * @return a solver with no clauses
+     */
+    public IncrementalSolver(SolverOptions options) {
+        this.options = options.withAlgorithm(Algorithm.CDCL);
+        this.propagator = new Propagator(0, new int[0][], new int[0][], options.isOffHeapClauses());
+    }
+
+    /**
+     * Add every clause and at-most-one constraint of formula to the solver,
+     * for all later calls.
+     */
+    public void add(Formula formula) {
+        for (Clause c : formula.getClauses()) add(c);
+        for (AtMostOne a : formula.getAtMostOnes()) add(a);
+    }
+
+    /**
+     * Add an at-most-one constraint to the solver, for all later calls.
+     */
+    public void add(AtMostOne constraint) {
+        int[] lits = new int[constraint.size()];
+        int k = 0;
+        for (Literal l : constraint) lits[k++] = literal(l);
+        if (propagator.numVars() < variables.size()) {
+            propagator.addVariables(variables.size());
+            search = null;
+        }
+        if (!unsatisfiable && !propagator.addAtMostOne(lits)) unsatisfiable = true;
+    }
+
+    /**
+     * Add an exactly-one constraint to the solver, for all later calls.
+     */
+    public void add(ExactlyOne constraint) {
+        add(constraint.getAtLeastOne());
+        add(constraint.getAtMostOne());
+    }
+
+    /**
+     * Add a clause to the solver, for all later calls.
+     */
+    public void add(Clause clause) {
+        int[] lits = new int[clause.size()];
+        int k = 0;
+        for (Literal l : clause) lits[k++] = literal(l);
+        if (propagator.numVars() < variables.size()) {
+            propagator.addVariables(variables.size());
+            search = null;
+        }
+        if (!unsatisfiable && !propagator.addClause(lits)) unsatisfiable = true;
+    }
+
+    /**
+     * Solve the clauses added so far, with the given literals assumed true.
+     *
+     * @return an environment satisfying every clause and every assumption,
+     *         or null if there is none
+     * @throws CancellationException if the thread is interrupted while
+     *         solving, or a limit of the options runs out first
+     */
+    public Environment solve(Literal... assumptions) {
+        int[] assumed = new int[assumptions.length];
+        for (int i = 0; i < assumptions.length; i++) assumed[i] = literal(assumptions[i]);
+        if (propagator.numVars() < variables.size()) {
+            propagator.addVariables(variables.size());
+            search = null;
+        }
+        failed = new ArrayList<Literal>();
+        if (unsatisfiable) return null;
+        if (search == null) search = new CDCLSearch(propagator, options);
+        try {
+            Budget budget = new Budget(options, null);
+            SolveResult.Status status = search.solve(assumed, budget);
+            budget.check();
+            if (status != SolveResult.Status.SATISFIABLE) {
+                int[] core = search.failedAssumptions();
+                // Without assumptions to blame, the clauses themselves are unsatisfiable.
+                if (core.length == 0) unsatisfiable = true;
+                for (int l : core) failed.add(literalOf(l));
+                return null;
+            }
+            Environment env = new Environment();
+            for (int v = 0; v < variables.size(); v++) {
+                if (propagator.isTrue(2 * v)) env = env.putTrue(variables.get(v));
+                else if (propagator.isTrue(2 * v + 1)) env = env.putFalse(variables.get(v));
+            }
+            return env;
+        } finally {
+            propagator.cancelUntil(0);
+        }
+    }
+
+    /**
+     * @return after solve() returned null, the assumptions of that call that
+     *         cannot all hold together with the clauses; empty if the clauses
+     *         alone are unsatisfiable, or if the last call found a solution
+     */
+    public List<Literal> getFailedAssumptions() {
+        return new ArrayList<Literal>(failed);
+    }
+
+    /**
+     * @return number of variables in the clauses and assumptions so far
+     */
+    public int numVariables() {
+        return variables.size();
+    }
+
+    // The number of literal l, numbering its variable if it is new.
+    private int literal(Literal l) {
+        Literal pos = l instanceof NegLiteral ? l.getNegation() : l;
+        Integer v = index.get(pos);
+        if (v == null) {
+            v = variables.size();
+            index.put(pos, v);
+            variables.add(pos.getVariable());
+        }
+        return 2 * v + (pos == l ? 0 : 1);
+    }
+
+    private Literal literalOf(int l) {
+        Literal pos = PosLiteral.make(variables.get(l >> 1));
+        return (l & 1) == 0 ? pos : pos.getNegation();
+    }
+}
@@ -0,0 +1,22 @@
+package sat;
+
+/**
+ * Two-sided Jeroslow-Wang: every clause c gives each of its literals a
+ * weight of 2^-|c|, so short clauses count most. A variable scores the sum
+ * of the weights of both of its literals, and is decided in the polarity
+ * with the larger weight.
+ */
+public class JeroslowWangHeuristic extends RankedHeuristic {
+    @Override
+    protected void rank(int numVars, int[][] clauses) {
+        double[] weight = new double[2 * numVars];
+        for (int[] c : clauses) {
+            double w = Math.scalb(1.0, -c.length);
+            for (int l : c) weight[l] += w;
+        }
+        for (int v = 0; v < numVars; v++) {
+            positive[v] = weight[2 * v] >= weight[2 * v + 1];
+            score[v] = weight[2 * v] + weight[2 * v + 1];
+        }
+    }
+}
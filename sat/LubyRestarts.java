@@ -0,0 +1,55 @@
+package sat;
+
+/**
+ * Restarts after unit * luby(i) conflicts, where luby is the sequence
+ * 1, 1, 2, 1, 1, 2, 4, 1, 1, 2, 1, 1, 2, 4, 8, ... of Luby, Sinclair and
+ * Zuckerman, which is within a log factor of the optimal schedule when
+ * nothing is known about the run-time distribution.
+ */
+public class LubyRestarts implements RestartPolicy {
+    private final int unit;
+    private int restarts;
+    private int conflicts;
+
+    /**
+     * @return Luby restarts with a unit of 100 conflicts
+     */
+    public LubyRestarts() {
+        this(100);
+    }
+
+    /**
+     * Requires: unit > 0
+     * @return Luby restarts with the given number of conflicts as unit
+     */
+    public LubyRestarts(int unit) {
+        assert unit > 0 : "LubyRestarts: unit must be positive";
+        this.unit = unit;
+    }
+
+    public boolean shouldRestart(int lbd, int trailSize) {
+        if (++conflicts < unit * luby(restarts)) return false;
+        restarts++;
+        conflicts = 0;
+        return true;
+    }
+
+    /**
+     * @return the ith element of the Luby sequence, counting from 0
+     */
+    static long luby(int i) {
+        // Find the finite subsequence that contains index i, and its size.
+        int size = 1;
+        int seq = 0;
+        while (size < i + 1) {
+            seq++;
+            size = 2 * size + 1;
+        }
+        while (size - 1 != i) {
+            size = (size - 1) >> 1;
+            seq--;
+            i = i % size;
+        }
+        return 1L << seq;
+    }
+}
@@ -0,0 +1,28 @@
+package sat;
+
+/**
+ * Maximum Occurrences in clauses of Minimum Size: decide the variable that
+ * occurs most often in the shortest clauses, favouring variables that occur
+ * in both polarities. With f(l) the number of shortest clauses containing
+ * l, a variable v scores (f(v) + f(~v)) * 2^K + f(v) * f(~v).
+ * The shortest clauses are those of the formula, measured once.
+ */
+public class MOMSHeuristic extends RankedHeuristic {
+    private static final int K = 10;
+
+    @Override
+    protected void rank(int numVars, int[][] clauses) {
+        int min = Integer.MAX_VALUE;
+        for (int[] c : clauses) min = Math.min(min, c.length);
+        int[] f = new int[2 * numVars];
+        for (int[] c : clauses) {
+            if (c.length == min)
+                for (int l : c) f[l]++;
+        }
+        for (int v = 0; v < numVars; v++) {
+            int p = f[2 * v], n = f[2 * v + 1];
+            positive[v] = p >= n;
+            score[v] = (double) (p + n) * (1 << K) + (double) p * n;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package sat;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import sat.env.Environment;
+import sat.formula.IntFormula;
+
+/**
+ * Iterates over the models of encoded clauses, projected onto some of their
+ * variables: every assignment to those variables that extends to a model is
+ * produced exactly once, in no particular order.
+ *
+ * The models are enumerated by one DPLL search that never starts over. The
+ * projected variables are decided first; after each model, the search
+ * resumes from the deepest projected decision it has not flipped yet, which
+ * rules out that model just like a blocking clause over the decisions would,
+ * but without adding a clause. So memory stays the same however many models
+ * go by.
+ */
+final class ModelIterator implements Iterator<Environment> {
+    private final IntFormula encoding;
+    private final boolean[] projected;
+    private final Propagator propagator;
+    private final DPLLSearch search;
+    // the next model to return, or null if it hasn't been searched for yet
+    private Environment next;
+    private boolean exhausted;
+    private boolean started;
+
+    /**
+     * @param projected
+     *            projected[v] is true iff variable v of encoding is in the
+     *            projection
+     */
+    ModelIterator(IntFormula encoding, boolean[] projected) {
+        this.encoding = encoding;
+        this.projected = projected;
+        this.propagator = new Propagator(encoding.numVariables(), encoding.clauses(), encoding.atMostOnes());
+        SolverOptions defaults = new SolverOptions();
+        SolverOptions options = defaults.withHeuristic(() -> new ProjectionHeuristic(projected, defaults.newHeuristic()));
+        this.search = new DPLLSearch(propagator, options);
+        this.exhausted = propagator.isInconsistent();
+    }
+
+    public boolean hasNext() {
+        if (next == null && !exhausted) {
+            if (started && !search.skipModel(projected)) {
+                exhausted = true;
+                return false;
+            }
+            started = true;
+            Budget budget = new Budget(new SolverOptions(), null);
+            SolveResult.Status status = search.solve(new int[0], budget);
+            budget.check();
+            if (status != SolveResult.Status.SATISFIABLE) {
+                exhausted = true;
+                return false;
+            }
+            Environment env = new Environment();
+            for (int v = 0; v < projected.length; v++) {
+                if (!projected[v]) continue;
+                if (propagator.isTrue(2 * v)) env = env.putTrue(encoding.getVariable(v));
+                else env = env.putFalse(encoding.getVariable(v));
+            }
+            next = env;
+        }
+        return next != null;
+    }
+
+    public Environment next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        Environment env = next;
+        next = null;
+        return env;
+    }
+}
@@ -0,0 +1,19 @@
+package sat;
+
+/**
+ * The value a decision gives its variable, when phase saving doesn't
+ * already provide one.
+ */
+public enum Polarity {
+    /** whatever the branching heuristic suggests */
+    HEURISTIC,
+
+    /** always true */
+    POSITIVE,
+
+    /** always false */
+    NEGATIVE,
+
+    /** true or false at random, drawn from the seed of the options */
+    RANDOM
+}
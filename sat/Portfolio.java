@@ -0,0 +1,165 @@
+package sat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import sat.env.Environment;
+import sat.formula.Formula;
+import sat.formula.IntFormula;
+
+/**
+ * A Portfolio is an immutable list of solver configurations to run in
+ * parallel on the same formula, through SATSolver.solve(Formula, Portfolio).
+ * The configurations race each other: the first one to find an answer wins,
+ * and the others are cancelled by interrupting their threads, which their
+ * searches notice within a few hundred steps. Since no single configuration
+ * is fastest on every formula, this mostly cuts the long tail of hard
+ * instances.
+ *
+ * With clause sharing, the CDCL configurations without a preprocessor also
+ * exchange short learned clauses through a lock-free buffer, so each can
+ * benefit from what the others learned.
+ */
+public class Portfolio {
+    /*
+     * Rep invariant
+     *     configs.length > 0, and contains no nulls
+     */
+    private final SolverOptions[] configs;
+    private final boolean sharing;
+
+    /**
+     * @return a portfolio with one configuration per available processor,
+     *         as in Portfolio(int)
+     */
+    public Portfolio() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param workers
+     *            number of configurations, at least 1
+     * @return a portfolio of the given number of CDCL configurations, which
+     *         differ in heuristic, restart policy, polarity, preprocessing and
+     *         random seed
+     */
+    public Portfolio(int workers) {
+        this(diverse(workers), false);
+    }
+
+    /**
+     * @return a portfolio running the given configurations, at least one
+     */
+    public Portfolio(SolverOptions... configs) {
+        this(configs.clone(), false);
+    }
+
+    private Portfolio(SolverOptions[] configs, boolean sharing) {
+        assert configs.length > 0 : "Portfolio: no configuration";
+        for (SolverOptions o : configs) assert o != null : "Portfolio: null configuration";
+        this.configs = configs;
+        this.sharing = sharing;
+    }
+
+    /**
+     * @return a portfolio running the same configurations as this, which
+     *         share short learned clauses iff sharing is true
+     */
+    public Portfolio withClauseSharing(boolean sharing) {
+        return new Portfolio(configs, sharing);
+    }
+
+    /**
+     * @return the configurations of this portfolio
+     */
+    public List<SolverOptions> getConfigurations() {
+        return Arrays.asList(configs.clone());
+    }
+
+    /**
+     * @return true iff the configurations share learned clauses
+     */
+    public boolean isClauseSharing() {
+        return sharing;
+    }
+
+    /*
+     * Cycle through a few configurations that do well on different formulas;
+     * from the second round on, they also make random decisions, with a
+     * different seed for each worker.
+     */
+    private static SolverOptions[] diverse(int workers) {
+        assert workers > 0 : "Portfolio: " + workers + " workers";
+        SolverOptions cdcl = new SolverOptions().withAlgorithm(Algorithm.CDCL).withPhaseSaving(true);
+        SolverOptions[] base = {
+            cdcl.withRestarts(GlucoseRestarts::new),
+            cdcl.withRestarts(LubyRestarts::new).withPolarity(Polarity.NEGATIVE),
+            cdcl.withHeuristic(JeroslowWangHeuristic::new).withRestarts(GeometricRestarts::new),
+            cdcl.withRestarts(LubyRestarts::new).withPreprocessor(new Preprocessor()),
+        };
+        SolverOptions[] configs = new SolverOptions[workers];
+        for (int i = 0; i < workers; i++) {
+            configs[i] = base[i % base.length];
+            if (i >= base.length) {
+                configs[i] = configs[i].withSeed(i).withRandomFrequency(0.02).withPolarity(Polarity.RANDOM);
+            }
+        }
+        return configs;
+    }
+
+    /**
+     * Run every configuration on formula, each on a thread of its own.
+     * 
+     * @return the answer of the first configuration to finish: a satisfying
+     *         environment, or null if formula is unsatisfiable
+     * @throws CancellationException if the thread is interrupted while
+     *         waiting, or every configuration runs out of its limits
+     */
+    Environment run(Formula formula) {
+        IntFormula encoding = IntFormula.fromFormula(formula);
+        ClauseExchange exchange = sharing ? new ClauseExchange() : null;
+        List<Callable<Environment>> tasks = new ArrayList<Callable<Environment>>();
+        for (int i = 0; i < configs.length; i++) {
+            SolverOptions options = configs[i].withProof(null);
+            ClauseExchange.Port port = exchange == null ? null : exchange.port(i);
+            tasks.add(() -> {
+                SolveResult result = SATSolver.solve(encoding, options, port, null);
+                // A configuration that gave up has no answer; let the others finish.
+                if (result.getStatus() == SolveResult.Status.UNKNOWN) {
+                    throw new CancellationException("search stopped: " + result.getReason());
+                }
+                return result.getEnvironment();
+            });
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(configs.length, r -> {
+            Thread t = new Thread(r, "portfolio worker");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            // invokeAny interrupts the losers once one task has returned.
+            return pool.invokeAny(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Portfolio interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new RuntimeException(cause);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Portfolio" + Arrays.toString(configs) + (sharing ? " sharing clauses" : "");
+    }
+}
@@ -0,0 +1,192 @@
+package sat;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A Preprocessor simplifies the clauses of a formula before the search
+ * starts, through a sequence of passes. It is immutable, so one instance can
+ * be given to any number of solve calls through SolverOptions.withPreprocessor.
+ * 
+ * Passes may be listed in any order and more than once. Each one reports, to
+ * an optional reporter, how many clauses and variables it removed and how
+ * long it took. Variables that are fixed or eliminated are given a value
+ * again after the search, so the solution still covers every variable of
+ * the original formula.
+ */
+public class Preprocessor {
+    /**
+     * The simplifications a Preprocessor can run.
+     */
+    public enum Pass {
+        /** fix the literals of unit clauses and clean the clauses they touch */
+        UNIT_PROPAGATION,
+        /** fix literals whose negation occurs in no clause */
+        PURE_LITERALS,
+        /** delete clauses that contain another clause */
+        SUBSUMPTION,
+        /** shorten clauses with self-subsuming resolution */
+        SELF_SUBSUMPTION,
+        /** resolve away variables whose elimination doesn't add clauses */
+        VARIABLE_ELIMINATION
+    }
+
+    /**
+     * What one pass of a preprocessor achieved.
+     */
+    public static class PassReport {
+        private final Pass pass;
+        private final int clausesRemoved;
+        private final int variablesRemoved;
+        private final long nanos;
+
+        PassReport(Pass pass, int clausesRemoved, int variablesRemoved, long nanos) {
+            this.pass = pass;
+            this.clausesRemoved = clausesRemoved;
+            this.variablesRemoved = variablesRemoved;
+            this.nanos = nanos;
+        }
+
+        public Pass getPass() {
+            return pass;
+        }
+
+        /**
+         * @return number of clauses removed, net of clauses added
+         */
+        public int getClausesRemoved() {
+            return clausesRemoved;
+        }
+
+        /**
+         * @return number of variables fixed or eliminated
+         */
+        public int getVariablesRemoved() {
+            return variablesRemoved;
+        }
+
+        /**
+         * @return time the pass took, in nanoseconds
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        @Override
+        public String toString() {
+            return pass + ": -" + clausesRemoved + " clauses, -" + variablesRemoved + " variables, "
+                   + nanos / 1000000 + " ms";
+        }
+    }
+
+    /*
+     * Rep invariant
+     *     passes != null and contains no nulls
+     *     reporter == null means no reporting
+     */
+    private final Pass[] passes;
+    private final Consumer<? super PassReport> reporter;
+
+    /**
+     * @return a preprocessor running every pass once, in the order they are
+     *         declared in Pass
+     */
+    public Preprocessor() {
+        this(Pass.values());
+    }
+
+    /**
+     * @return a preprocessor running the given passes in the given order
+     */
+    public Preprocessor(Pass... passes) {
+        this(passes.clone(), null);
+    }
+
+    private Preprocessor(Pass[] passes, Consumer<? super PassReport> reporter) {
+        for (Pass p : passes) assert p != null : "Preprocessor: null pass";
+        this.passes = passes;
+        this.reporter = reporter;
+    }
+
+    /**
+     * @return a preprocessor running the same passes as this, which hands
+     *         the report of each pass to reporter
+     */
+    public Preprocessor withReporter(Consumer<? super PassReport> reporter) {
+        return new Preprocessor(passes, reporter);
+    }
+
+    /**
+     * Run the passes over clauses in the solver's int encoding.
+     * 
+     * @return the simplifier holding the simplified clauses and the
+     *         reconstruction stack
+     */
+    ClauseSimplifier run(int numVars, int[][] clauses) {
+        return run(numVars, clauses, null);
+    }
+
+    /**
+     * Run the passes over clauses in the solver's int encoding, logging
+     * every step to proof unless it is null.
+     * 
+     * @return the simplifier holding the simplified clauses and the
+     *         reconstruction stack
+     */
+    ClauseSimplifier run(int numVars, int[][] clauses, ProofWriter proof) {
+        return run(numVars, clauses, new int[0][], proof);
+    }
+
+    /**
+     * Run the passes over clauses in the solver's int encoding, which come
+     * with the given at-most-one constraints, logging every step to proof
+     * unless it is null. The variables of the constraints are frozen (see
+     * ClauseSimplifier.freeze), and the constraints are to be solved as
+     * they are along with the simplified clauses.
+     * 
+     * @return the simplifier holding the simplified clauses and the
+     *         reconstruction stack
+     */
+    ClauseSimplifier run(int numVars, int[][] clauses, int[][] atMostOnes, ProofWriter proof) {
+        return run(numVars, clauses, atMostOnes, proof, new Budget(new SolverOptions(), null));
+    }
+
+    /**
+     * Run the passes as above, until budget runs out: then the pass under
+     * way stops early and the passes after it are skipped, and the caller
+     * finds out from budget.reason().
+     * 
+     * @return the simplifier holding the clauses simplified so far and the
+     *         reconstruction stack
+     */
+    ClauseSimplifier run(int numVars, int[][] clauses, int[][] atMostOnes, ProofWriter proof, Budget budget) {
+        ClauseSimplifier simplifier = new ClauseSimplifier(numVars, clauses, proof, budget);
+        for (int[] amo : atMostOnes) {
+            for (int l : amo) simplifier.freeze(l >> 1);
+        }
+        for (Pass pass : passes) {
+            if (simplifier.isUnsatisfiable() || budget.reason() != null) break;
+            int clausesBefore = simplifier.numClauses();
+            int varsBefore = simplifier.numFreeVars();
+            long started = System.nanoTime();
+            switch (pass) {
+            case UNIT_PROPAGATION: simplifier.propagateUnits(); break;
+            case PURE_LITERALS: simplifier.eliminatePureLiterals(); break;
+            case SUBSUMPTION: simplifier.subsume(); break;
+            case SELF_SUBSUMPTION: simplifier.selfSubsume(); break;
+            case VARIABLE_ELIMINATION: simplifier.eliminateVariables(); break;
+            }
+            long nanos = System.nanoTime() - started;
+            if (reporter != null) {
+                reporter.accept(new PassReport(pass, clausesBefore - simplifier.numClauses(),
+                                               varsBefore - simplifier.numFreeVars(), nanos));
+            }
+        }
+        return simplifier;
+    }
+
+    @Override
+    public String toString() {
+        return "Preprocessor" + Arrays.toString(passes);
+    }
+}
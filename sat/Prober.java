@@ -0,0 +1,173 @@
+package sat;
+
+/**
+ * Failed-literal probing and lookahead over a Propagator.
+ *
+ * Probing a free variable tries out each of its literals on a level of its
+ * own and propagates. If one literal runs into a conflict, it has failed,
+ * and its negation holds at the current decision level; if both fail, the
+ * current level is in conflict. Otherwise, the literals implied by both
+ * tries hold as well. Each literal found this way is assigned, without a
+ * reason clause, and propagated before probing goes on, so one find can
+ * lead to the next; rounds repeat until one finds nothing new or the budget
+ * of propagations runs out.
+ *
+ * A round that probes every free variable also serves as a lookahead: the
+ * variable whose two literals imply the most (the product of the two
+ * counts) splits the search best, and lookahead() suggests its literal with
+ * the fewer implications, which leaves the more freedom.
+ *
+ * At decision level 0 every find is permanent. Above it, a find only holds
+ * under the decisions, and goes when they are undone; with a proof, each is
+ * logged as the clause of the negated decisions and the literal found,
+ * which follows from the probes by unit propagation.
+ */
+final class Prober {
+    private final long budget;
+    private final SolverStatistics stats;
+    // probed[l] == stamp iff l was implied by the first literal probed
+    private final int[] probed;
+    private int stamp;
+    private final int[] implied;
+    private int shared;
+    // variable to start the next round at, so that short budgets take turns
+    private int cursor;
+    private int lookahead = -1;
+    private ProofWriter proof;
+
+    /**
+     * @param budget
+     *            propagations one call of probe() may spend, at least 1
+     * @param stats
+     *            counts the literals probing finds
+     */
+    Prober(int numVars, long budget, SolverStatistics stats) {
+        assert budget > 0 : "Prober: budget " + budget;
+        this.budget = budget;
+        this.stats = stats;
+        this.probed = new int[2 * numVars];
+        this.implied = new int[numVars];
+    }
+
+    /**
+     * Log every literal found to proof, as above.
+     */
+    void logProof(ProofWriter proof) {
+        this.proof = proof;
+    }
+
+    /**
+     * Probe the free variables under the current assignment, and assign
+     * what follows at the current decision level.
+     * Requires: the propagator has been propagated without conflict.
+     *
+     * @return false if the current level is in conflict, with the
+     *         propagator in the state propagate() leaves on a conflict
+     */
+    boolean probe(Propagator p) {
+        int n = p.numVars();
+        long limit = p.propagations() + budget;
+        boolean found = true;
+        while (found) {
+            found = false;
+            lookahead = -1;
+            long best = -1;
+            int v = cursor;
+            for (int i = 0; i < n; i++, v = v + 1 == n ? 0 : v + 1) {
+                if (p.propagations() >= limit) {
+                    cursor = v;
+                    lookahead = -1;
+                    return true;
+                }
+                if (p.isAssigned(v)) continue;
+                stamp++;
+                int pos = trial(p, 2 * v, true);
+                if (pos < 0) {
+                    stats.failedLiterals++;
+                    found = true;
+                    if (!assign(p, 2 * v + 1, -1)) return false;
+                    continue;
+                }
+                int neg = trial(p, 2 * v + 1, false);
+                if (neg < 0) {
+                    stats.failedLiterals++;
+                    found = true;
+                    if (!assign(p, 2 * v, -1)) return false;
+                    continue;
+                }
+                long score = (long) (pos + 1) * (neg + 1);
+                if (score > best) {
+                    best = score;
+                    lookahead = pos <= neg ? 2 * v : 2 * v + 1;
+                }
+                // trial(p, 2v+1) left the literals implied by both sides in implied[0..shared)
+                for (int k = 0; k < shared; k++) {
+                    int l = implied[k];
+                    if (p.value(l) == Propagator.FALSE) continue;
+                    if (p.value(l) == Propagator.UNDEFINED) {
+                        stats.impliedLiterals++;
+                        found = true;
+                        if (!assign(p, l, 2 * v)) return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the literal the last call of probe() suggests deciding next,
+     *         or -1 if it ran out of budget or found its variable assigned
+     */
+    int lookahead(Propagator p) {
+        return lookahead >= 0 && !p.isAssigned(lookahead >> 1) ? lookahead : -1;
+    }
+
+    /*
+     * Try out literal l on a new level. Returns -1 if it fails, and otherwise
+     * the number of literals it implies. If first, those are marked with the
+     * stamp; if not, the marked ones are left in implied[0..shared).
+     */
+    private int trial(Propagator p, int l, boolean first) {
+        int lvl = p.decisionLevel();
+        int start = p.trailSize();
+        p.newDecisionLevel();
+        p.enqueue(l, Propagator.NO_REASON);
+        boolean consistent = p.propagate();
+        int count = p.trailSize() - start - 1;
+        if (consistent) {
+            shared = 0;
+            for (int i = start + 1; i < p.trailSize(); i++) {
+                int q = p.trail(i);
+                if (first) probed[q] = stamp;
+                else if (probed[q] == stamp) implied[shared++] = q;
+            }
+        }
+        p.cancelTrial(lvl);
+        return consistent ? count : -1;
+    }
+
+    /*
+     * Assign literal l, found by probing literal probe and its negation
+     * (both sides implied l), or by a failed probe of ~l if probe < 0, and
+     * propagate it. Returns false on conflict.
+     */
+    private boolean assign(Propagator p, int l, int probe) {
+        if (proof != null) {
+            int lvl = p.decisionLevel();
+            int[] clause = new int[lvl + 2];
+            for (int d = 1; d <= lvl; d++) clause[d - 1] = p.decision(d) ^ 1;
+            clause[lvl] = l;
+            if (probe >= 0) {
+                // l follows from both sides of the probe, so it holds either way
+                clause[lvl + 1] = probe ^ 1;
+                proof.add(clause, lvl + 2);
+                clause[lvl + 1] = probe;
+                proof.add(clause, lvl + 2);
+            }
+            proof.add(clause, lvl + 1);
+        }
+        p.enqueue(l, Propagator.NO_REASON);
+        return p.propagate();
+    }
+}
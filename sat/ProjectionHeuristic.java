@@ -0,0 +1,65 @@
+package sat;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Decides the variables of a projection before any other, so that the
+ * first decision levels of a search always hold the projected variables.
+ * They are decided in a fixed order, most frequent in short clauses first
+ * (as in Jeroslow-Wang), and true before false; once they are all assigned,
+ * another heuristic decides the rest.
+ */
+final class ProjectionHeuristic implements BranchingHeuristic {
+    private final boolean[] projected;
+    private final BranchingHeuristic rest;
+    private int[] order;
+
+    /**
+     * @param projected
+     *            projected[v] is true iff variable v is to be decided first
+     * @param rest
+     *            decides the other variables
+     */
+    ProjectionHeuristic(boolean[] projected, BranchingHeuristic rest) {
+        this.projected = projected;
+        this.rest = rest;
+    }
+
+    public void init(int numVars, int[][] clauses) {
+        double[] weight = new double[numVars];
+        for (int[] c : clauses) {
+            double w = Math.scalb(1.0, -c.length);
+            for (int l : c) weight[l >> 1] += w;
+        }
+        Integer[] vars = new Integer[numVars];
+        int n = 0;
+        for (int v = 0; v < numVars; v++) {
+            if (projected[v]) vars[n++] = v;
+        }
+        vars = Arrays.copyOf(vars, n);
+        Arrays.sort(vars, Comparator.comparingDouble((Integer v) -> -weight[v]));
+        order = new int[n];
+        for (int i = 0; i < n; i++) order[i] = vars[i];
+        rest.init(numVars, clauses);
+    }
+
+    public int pickLiteral(Assignment assignment) {
+        for (int v : order) {
+            if (!assignment.isAssigned(v)) return 2 * v;
+        }
+        return rest.pickLiteral(assignment);
+    }
+
+    public void unassigned(int v) {
+        rest.unassigned(v);
+    }
+
+    public void bump(int v) {
+        rest.bump(v);
+    }
+
+    public void decay() {
+        rest.decay();
+    }
+}
@@ -0,0 +1,184 @@
+package sat;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writes a clausal proof in the binary DRAT format, which checkers such as
+ * drat-trim accept with the original clauses in DIMACS form: a clause added
+ * is the byte 'a', a clause deleted the byte 'd', each followed by its
+ * literals and a 0. DIMACS literal x is written as the unsigned number
+ * 2|x| + (x < 0 ? 1 : 0), seven bits per byte, low bits first, with the high
+ * bit set on every byte but the last. Solver literal l (see IntFormula)
+ * is DIMACS variable (l>>1)+1, so it is written as l+2.
+ *
+ * The solving thread only fills buffers; a writer thread of its own drains
+ * them into the channel. There are a few buffers, which go back and forth
+ * between the two threads, so the proof never takes more memory than they
+ * do however long it gets, and the solver only waits when the disk can't
+ * keep up.
+ */
+final class ProofWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int BUFFERS = 4;
+    // a literal takes at most 5 bytes, and a clause adds a tag and a 0
+    private static final int MAX_LITERAL_SIZE = 5;
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    private final WritableByteChannel channel;
+    private final BlockingQueue<ByteBuffer> full = new ArrayBlockingQueue<ByteBuffer>(BUFFERS + 1);
+    private final BlockingQueue<ByteBuffer> empty = new ArrayBlockingQueue<ByteBuffer>(BUFFERS);
+    private final Thread writer;
+    private ByteBuffer current;
+    private volatile IOException failure;
+    private boolean closed;
+
+    /**
+     * @return a writer of a proof into file, which is created or emptied
+     * @throws IOException if the file can't be opened for writing
+     */
+    ProofWriter(Path file) throws IOException {
+        this(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                              StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    /**
+     * @return a writer of a proof into channel, which it closes when closed
+     */
+    ProofWriter(WritableByteChannel channel) {
+        this.channel = channel;
+        for (int i = 1; i < BUFFERS; i++) empty.add(ByteBuffer.allocateDirect(BUFFER_SIZE));
+        current = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        writer = new Thread(this::drain, "proof writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Log the addition of clause lits[0..size).
+     */
+    void add(int[] lits, int size) {
+        clause('a', lits, size);
+    }
+
+    void add(int[] lits) {
+        clause('a', lits, lits.length);
+    }
+
+    /**
+     * Log the deletion of clause lits.
+     */
+    void delete(int[] lits) {
+        clause('d', lits, lits.length);
+    }
+
+    private void clause(char tag, int[] lits, int size) {
+        ByteBuffer b = room(2);
+        b.put((byte) tag);
+        for (int i = 0; i < size; i++) {
+            b = room(MAX_LITERAL_SIZE + 1);
+            int u = lits[i] + 2;
+            while ((u & ~0x7f) != 0) {
+                b.put((byte) (u & 0x7f | 0x80));
+                u >>>= 7;
+            }
+            b.put((byte) u);
+        }
+        b.put((byte) 0);
+    }
+
+    // The current buffer, handed over for writing first if it has less than n bytes left.
+    private ByteBuffer room(int n) {
+        if (current.remaining() < n) {
+            current.flip();
+            put(full, current);
+            current = take(empty);
+        }
+        return current;
+    }
+
+    /**
+     * Write out the rest of the proof, wait for the writer thread to finish
+     * and close the channel.
+     *
+     * @throws IOException if the proof could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        current.flip();
+        if (current.hasRemaining()) put(full, current);
+        put(full, END);
+        boolean interrupted = false;
+        for (;;) {
+            try {
+                writer.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        channel.close();
+        if (failure != null) throw failure;
+    }
+
+    // The writer thread: write every full buffer, and hand it back empty.
+    private void drain() {
+        for (;;) {
+            ByteBuffer b = take(full);
+            if (b == END) return;
+            try {
+                if (failure == null) {
+                    while (b.hasRemaining()) channel.write(b);
+                }
+            } catch (IOException e) {
+                // Keep taking buffers, so the solver doesn't block; close() reports it.
+                failure = e;
+            }
+            b.clear();
+            put(empty, b);
+        }
+    }
+
+    /*
+     * Blocking queue operations that don't give up when interrupted: a proof
+     * with a hole in it is worthless. The interrupt is kept for the search to
+     * notice.
+     */
+    private static void put(BlockingQueue<ByteBuffer> queue, ByteBuffer b) {
+        boolean interrupted = false;
+        for (;;) {
+            try {
+                queue.put(b);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private static ByteBuffer take(BlockingQueue<ByteBuffer> queue) {
+        boolean interrupted = false;
+        ByteBuffer b;
+        for (;;) {
+            try {
+                b = queue.take();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        return b;
+    }
+}
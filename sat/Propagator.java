@@ -0,0 +1,905 @@
+package sat;
+
+import java.util.Arrays;
+
+/**
+ * Unit propagation engine based on two watched literals per clause.
+ *
+ * Variables are numbered densely from 0, and a literal is encoded as a
+ * single int: 2v for the variable v and 2v+1 for its negation, so the
+ * negation of literal l is always l^1 (see IntFormula).
+ *
+ * Every clause watches its first two literals. Assigning a literal only
+ * visits the clauses that watch its negation, and since a watch stays valid
+ * when assignments are undone, backtracking never touches the clauses.
+ *
+ * At-most-one constraints are propagated whole rather than as their pairwise
+ * clauses: each keeps a count of its true literals, kept up to date as
+ * literals are assigned and unassigned, and when one of its literals is
+ * propagated, a count above one is a conflict and otherwise every other
+ * literal is made false. The binary clause (~q | ~p) that makes q false when
+ * p is true serves as the reason, and is only written down when the
+ * implication happens, in a pair kept for each variable.
+ *
+ * The binary clauses of the formula, of which a pairwise encoding has a
+ * great many, are not stored as clauses at all: each literal has an array
+ * of the literals implied when it becomes false, and propagating it walks
+ * that array before its watches. A binary clause (a | b) thus costs an
+ * int in the arrays of a and b, and two more to remember it in the order of
+ * the formula for originalClauses(), rather than an array, two watches and
+ * its bookkeeping. Its implications are written down in the same pairs as
+ * those of the at-most-one constraints. Learned binary clauses stay with
+ * the others.
+ *
+ * The clauses of more than two literals live on the heap, an int array
+ * each, or with an off-heap store, in a ClauseArena, where propagate()
+ * reads and moves their literals in place. That spares the collector the
+ * millions of small arrays of a big formula, or of a long search that
+ * learns as many clauses; release() then frees them all at once.
+ *
+ * Each assignment records its decision level and the clause that implied it
+ * (its reason), which together form the implication graph used by conflict
+ * analysis. Learned clauses are kept after the clauses of the formula and
+ * can be dropped again with reduceLearnts(). Clauses and variables can be
+ * added at decision level 0, so one propagator can serve many searches.
+ */
+final class Propagator implements Assignment {
+    static final byte TRUE = 1;
+    static final byte FALSE = -1;
+    static final byte UNDEFINED = 0;
+    /** reason of a decision, or of a literal assigned without a clause */
+    static final int NO_REASON = -1;
+    // conflict() after two true literals of an at-most-one constraint, or
+    // both literals of a binary clause false
+    private static final int CONFLICT_PAIR = Integer.MIN_VALUE;
+
+    /*
+     * Rep invariant:
+     *   clauses[0..numClauses) have at least two literals each, and clause c
+     *     is in the watch lists of clauses[c][0] and clauses[c][1]
+     *     (units are put on the trail instead); with an arena, clauses is
+     *     null, and clause c is clause refs[c] of the arena instead, the
+     *     refs ascending
+     *   for each of the numBinaries binary clauses (a | b) of the formula,
+     *     b is in binaries[a][0..binarySizes[a]) and a in
+     *     binaries[b][0..binarySizes[b]) (just once if a == b), and the
+     *     binary clause i is (binaryLits[2i] | binaryLits[2i+1])
+     *   binariesBefore[c] binary clauses were added before clause c
+     *   clause c is learned iff lbd[c] > 0, and numLearnts of them are
+     *   value[l] == -value[l^1] for every literal l
+     *   trail[0..trailSize) are exactly the literals l with value[l] == TRUE,
+     *     in the order they were assigned
+     *   trailLim[d] is the trail size when decision level d+1 was opened,
+     *     for 0 <= d < decisionLevel
+     *   phase[v] is -1 or the literal of v last removed from the trail
+     *   atMostOnes[0..numAtMostOnes) hold no literal twice, and constraint a
+     *     is in amoOccurs[l][0..amoOccursSize[l]) for each of its literals l
+     *   trueCount[a] is the number of true literals of atMostOnes[a]
+     *   if reason[v] != NO_REASON, then clause(reason[v])[0] is the assigned
+     *     literal of v and all other literals of that clause are false;
+     *     a reason below NO_REASON is -2 - v, for the pair implication[v]
+     *     written when an at-most-one constraint or binary clause implied v
+     *   0 <= head <= trailSize; the binaries and watches of trail[0..head)
+     *     have been visited
+     *
+     * Abstraction function:
+     *   the binary clauses and the clauses with lbd 0 represent the
+     *   formula, together with the at-most-one constraints, and the learned
+     *   clauses are consequences of it; trail[0..trailSize) represents the
+     *   current partial assignment
+     */
+    private int[][] clauses;
+    private final ClauseArena arena;
+    private int[] refs;
+    private int numClauses;
+    private int numLearnts;
+    private int[] lbd;
+    private double[] activity;
+    private double activityIncrement = 1;
+    private int[][] watches;
+    private int[] watchSizes;
+    private int[][] binaries;
+    private int[] binarySizes;
+    private int[] binaryLits;
+    private int numBinaries;
+    private int[] binariesBefore;
+    private byte[] value;
+    private int[] level;
+    private int[] reason;
+    private int[] trail;
+    private int[] phase;
+    private int[][] atMostOnes;
+    private int numAtMostOnes;
+    private int[] trueCount;
+    private int[][] amoOccurs;
+    private int[] amoOccursSize;
+    private int[][] implication;
+    private final int[] conflictPair = new int[2];
+    private int trailSize;
+    private int head;
+    private int[] trailLim = new int[16];
+    private int decisionLevel;
+    private int conflict = NO_REASON;
+    private boolean inconsistent;
+    private BranchingHeuristic heuristic;
+    private long propagations;
+    private ProofWriter proof;
+
+    /**
+     * Load clauses over variables 0..numVars-1, in the encoding above, into
+     * a fresh propagator. The clause arrays are copied. Unit clauses are
+     * assigned and propagated straight away.
+     */
+    Propagator(int numVars, int[][] formula) {
+        this(numVars, formula, new int[0][], false);
+    }
+
+    /**
+     * Load clauses and at-most-one constraints over variables
+     * 0..numVars-1, in the encoding above, into a fresh propagator. The
+     * arrays are copied. Unit clauses are assigned and propagated straight
+     * away.
+     * Requires: no constraint holds a literal twice
+     */
+    Propagator(int numVars, int[][] formula, int[][] constraints) {
+        this(numVars, formula, constraints, false);
+    }
+
+    /**
+     * Like Propagator(numVars, formula, constraints), but with offHeap, the
+     * clauses of more than two literals, and those learned later, are kept
+     * in a ClauseArena until release().
+     */
+    Propagator(int numVars, int[][] formula, int[][] constraints, boolean offHeap) {
+        int n = numVars;
+        int numLong = 0;
+        int longLiterals = 0;
+        for (int[] lits : formula) {
+            if (lits.length > 2) {
+                numLong++;
+                longLiterals += lits.length;
+            }
+        }
+        int capacity = Math.max(numLong, 16);
+        if (offHeap) {
+            // room for the formula and as much again for learned clauses
+            arena = new ClauseArena(2 * (numLong + longLiterals));
+            refs = new int[capacity];
+        } else {
+            arena = null;
+            clauses = new int[capacity][];
+        }
+        binaries = new int[2 * n][];
+        binarySizes = new int[2 * n];
+        binaryLits = new int[2 * Math.max(formula.length - numLong, 4)];
+        binariesBefore = new int[capacity];
+        int[] units = new int[formula.length];
+        int numUnits = 0;
+        for (int[] lits : formula) {
+            if (lits.length == 0) inconsistent = true;
+            else if (lits.length == 1) units[numUnits++] = lits[0];
+            else if (lits.length == 2) storeBinary(lits[0], lits[1]);
+            else {
+                binariesBefore[numClauses] = numBinaries;
+                if (offHeap) refs[numClauses++] = arena.add(lits);
+                else clauses[numClauses++] = lits.clone();
+            }
+        }
+        lbd = new int[capacity];
+        activity = new double[capacity];
+        watches = new int[2 * n][];
+        watchSizes = new int[2 * n];
+        for (int l = 0; l < 2 * n; l++) watches[l] = new int[4];
+        value = new byte[2 * n];
+        level = new int[n];
+        reason = new int[n];
+        trail = new int[n];
+        phase = new int[n];
+        Arrays.fill(phase, -1);
+        for (int c = 0; c < numClauses; c++) {
+            watch(literal(c, 0), c);
+            watch(literal(c, 1), c);
+        }
+        atMostOnes = new int[Math.max(constraints.length, 4)][];
+        trueCount = new int[atMostOnes.length];
+        amoOccurs = new int[2 * n][];
+        amoOccursSize = new int[2 * n];
+        implication = new int[n][];
+        for (int[] lits : constraints) storeAtMostOne(lits.clone());
+        for (int i = 0; i < numUnits && !inconsistent; i++) {
+            if (value[units[i]] == FALSE) inconsistent = true;
+            else if (value[units[i]] == UNDEFINED) enqueue(units[i], NO_REASON);
+        }
+        if (!inconsistent && !propagate()) inconsistent = true;
+    }
+
+    /**
+     * @return true if the formula was found unsatisfiable while loading it,
+     *         because it has an empty clause or its units conflict
+     */
+    boolean isInconsistent() {
+        return inconsistent;
+    }
+
+    public int numVars() {
+        return level.length;
+    }
+
+    public boolean isAssigned(int v) {
+        return value[2 * v] != UNDEFINED;
+    }
+
+    public boolean isTrue(int l) {
+        return value[l] == TRUE;
+    }
+
+    /**
+     * @return the clauses that came from the formula, except its units, in
+     *         the order they were added; those off the heap as copies
+     */
+    int[][] originalClauses() {
+        int[][] result = new int[numBinaries + numClauses - numLearnts][];
+        int n = 0;
+        int b = 0;
+        for (int c = 0; c < numClauses; c++) {
+            if (lbd[c] > 0) continue;
+            for (; b < binariesBefore[c]; b++) result[n++] = new int[] { binaryLits[2 * b], binaryLits[2 * b + 1] };
+            result[n++] = arena == null ? clauses[c] : arena.literals(refs[c]);
+        }
+        for (; b < numBinaries; b++) result[n++] = new int[] { binaryLits[2 * b], binaryLits[2 * b + 1] };
+        return result;
+    }
+
+    /**
+     * @return the negation of a free literal of an at-most-one constraint
+     *         with no true literal and more than one free literal, or -1 if
+     *         every constraint is settled: a constraint like that is broken
+     *         by some ways of assigning the rest
+     */
+    int unsettledAtMostOne() {
+        for (int a = 0; a < numAtMostOnes; a++) {
+            if (trueCount[a] > 0) continue;
+            int free = -1;
+            for (int q : atMostOnes[a]) {
+                if (value[q] != UNDEFINED) continue;
+                if (free >= 0) return free ^ 1;
+                free = q;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the literal of v that was true when v was last unassigned,
+     *         or -1 if v has never been unassigned
+     */
+    int savedPhase(int v) {
+        return phase[v];
+    }
+
+    /**
+     * Tell the given heuristic about every variable unassigned from now on.
+     */
+    void setHeuristic(BranchingHeuristic heuristic) {
+        this.heuristic = heuristic;
+    }
+
+    /**
+     * Log the deletion of every learned clause dropped from now on to proof.
+     */
+    void setProof(ProofWriter proof) {
+        this.proof = proof;
+    }
+
+    /**
+     * @return TRUE, FALSE or UNDEFINED value of literal l
+     */
+    byte value(int l) {
+        return value[l];
+    }
+
+    /**
+     * Requires: v is assigned
+     * @return decision level at which variable v was assigned
+     */
+    int level(int v) {
+        return level[v];
+    }
+
+    /**
+     * Requires: v is assigned
+     * @return the clause that implied v, to be looked up with clause(), or
+     *         NO_REASON
+     */
+    int reason(int v) {
+        return reason[v];
+    }
+
+    /**
+     * @return the literals of clause c, which is a reason or a conflict; the
+     *         array must not be modified. The binary clause of an at-most-one
+     *         or binary reason is valid while its variable stays assigned,
+     *         and that of an at-most-one or binary conflict until the next
+     *         propagate(). A clause off the heap comes as a copy.
+     */
+    int[] clause(int c) {
+        if (c >= 0) return arena == null ? clauses[c] : arena.literals(refs[c]);
+        return c == CONFLICT_PAIR ? conflictPair : implication[-2 - c];
+    }
+
+    /**
+     * @return number of literals of clause c, which is a reason or a conflict
+     */
+    int clauseSize(int c) {
+        if (c < 0) return 2;
+        return arena == null ? clauses[c].length : arena.size(refs[c]);
+    }
+
+    /**
+     * @return clause(c)[k], without copying a clause off the heap, under the
+     *         same conditions as clause()
+     */
+    int clauseLiteral(int c, int k) {
+        if (c >= 0) return literal(c, k);
+        return c == CONFLICT_PAIR ? conflictPair[k] : implication[-2 - c][k];
+    }
+
+    /**
+     * @return the clause found falsified by the last failed propagate(), to
+     *         be looked up with clause()
+     */
+    int conflict() {
+        return conflict;
+    }
+
+    /**
+     * @return number of literals assigned so far
+     */
+    int trailSize() {
+        return trailSize;
+    }
+
+    /**
+     * @return the ith assigned literal, 0 <= i < trailSize()
+     */
+    int trail(int i) {
+        return trail[i];
+    }
+
+    /**
+     * @return number of decision levels currently open
+     */
+    int decisionLevel() {
+        return decisionLevel;
+    }
+
+    /**
+     * Requires: 1 <= lvl <= decisionLevel()
+     * @return the literal decided when level lvl was opened
+     */
+    int decision(int lvl) {
+        return trail[trailLim[lvl - 1]];
+    }
+
+    /**
+     * Open a new decision level; the next assignment is its decision.
+     */
+    void newDecisionLevel() {
+        if (decisionLevel == trailLim.length) trailLim = Arrays.copyOf(trailLim, 2 * decisionLevel);
+        trailLim[decisionLevel++] = trailSize;
+    }
+
+    /**
+     * Unassign every literal of the decision levels above the given one.
+     */
+    void cancelUntil(int lvl) {
+        if (decisionLevel > lvl) {
+            undo(trailLim[lvl], true);
+            decisionLevel = lvl;
+        }
+    }
+
+    /**
+     * Like cancelUntil, but the unassigned variables keep their saved
+     * phases, for assignments that were only tried out.
+     */
+    void cancelTrial(int lvl) {
+        if (decisionLevel > lvl) {
+            undo(trailLim[lvl], false);
+            decisionLevel = lvl;
+        }
+    }
+
+    /*
+     * Unassign every literal assigned after the trail had the given size.
+     */
+    private void undo(int mark, boolean savePhases) {
+        while (trailSize > mark) {
+            int l = trail[--trailSize];
+            for (int i = 0; i < amoOccursSize[l]; i++) trueCount[amoOccurs[l][i]]--;
+            value[l] = UNDEFINED;
+            value[l ^ 1] = UNDEFINED;
+            if (savePhases) phase[l >> 1] = l;
+            if (heuristic != null) heuristic.unassigned(l >> 1);
+        }
+        head = trailSize;
+    }
+
+    /**
+     * Assign literal l at the current decision level, without propagating.
+     * Requires: l is unassigned, and if r != NO_REASON, clause r is
+     * [l, ...] with all other literals false.
+     */
+    void enqueue(int l, int r) {
+        for (int i = 0; i < amoOccursSize[l]; i++) trueCount[amoOccurs[l][i]]++;
+        value[l] = TRUE;
+        value[l ^ 1] = FALSE;
+        level[l >> 1] = decisionLevel;
+        reason[l >> 1] = r;
+        trail[trailSize++] = l;
+    }
+
+    /**
+     * Visit the at-most-one constraints of every literal made true since the
+     * last call, and the binary clauses and watches of every literal made
+     * false. A watched clause whose other watch is true is skipped;
+     * otherwise it moves its watch to a non-false literal, or, failing that,
+     * its other watch is either implied or in conflict.
+     *
+     * @return false on conflict, with the falsified clause in conflict()
+     */
+    boolean propagate() {
+        while (head < trailSize) {
+            int trueLit = trail[head++];
+            int falseLit = trueLit ^ 1;
+            propagations++;
+            if (amoOccursSize[trueLit] > 0 && !propagateAtMostOnes(trueLit)) {
+                head = trailSize;
+                return false;
+            }
+            int[] bs = binaries[falseLit];
+            for (int i = 0, n = binarySizes[falseLit]; i < n; i++) {
+                int m = bs[i];
+                if (value[m] == TRUE) continue;
+                if (value[m] == FALSE) {
+                    conflictPair[0] = m;
+                    conflictPair[1] = falseLit;
+                    conflict = CONFLICT_PAIR;
+                    head = trailSize;
+                    return false;
+                }
+                imply(m, falseLit);
+            }
+            if (arena != null) {
+                if (!propagateArenaWatches(falseLit)) {
+                    head = trailSize;
+                    return false;
+                }
+                continue;
+            }
+            int[] ws = watches[falseLit];
+            int n = watchSizes[falseLit];
+            int i = 0, j = 0;
+            while (i < n) {
+                int c = ws[i++];
+                int[] lits = clauses[c];
+                if (lits[0] == falseLit) {
+                    lits[0] = lits[1];
+                    lits[1] = falseLit;
+                }
+                int other = lits[0];
+                if (value[other] == TRUE) {
+                    ws[j++] = c;
+                    continue;
+                }
+                boolean moved = false;
+                for (int k = 2; k < lits.length; k++) {
+                    if (value[lits[k]] != FALSE) {
+                        lits[1] = lits[k];
+                        lits[k] = falseLit;
+                        watch(lits[1], c);
+                        moved = true;
+                        break;
+                    }
+                }
+                if (moved) continue;
+                ws[j++] = c;
+                if (value[other] == FALSE) {
+                    while (i < n) ws[j++] = ws[i++];
+                    watchSizes[falseLit] = j;
+                    head = trailSize;
+                    conflict = c;
+                    return false;
+                }
+                enqueue(other, c);
+            }
+            watchSizes[falseLit] = j;
+        }
+        return true;
+    }
+
+    /*
+     * Visit the watches of falseLit as propagate() does, with the clauses in
+     * the arena; returns false, with the conflict set, if a clause is
+     * falsified.
+     */
+    private boolean propagateArenaWatches(int falseLit) {
+        ClauseArena a = arena;
+        int[] ws = watches[falseLit];
+        int n = watchSizes[falseLit];
+        int i = 0, j = 0;
+        while (i < n) {
+            int c = ws[i++];
+            int ref = refs[c];
+            int other = a.get(ref, 0);
+            if (other == falseLit) {
+                other = a.get(ref, 1);
+                a.set(ref, 0, other);
+                a.set(ref, 1, falseLit);
+            }
+            if (value[other] == TRUE) {
+                ws[j++] = c;
+                continue;
+            }
+            boolean moved = false;
+            for (int k = 2, size = a.size(ref); k < size; k++) {
+                int l = a.get(ref, k);
+                if (value[l] != FALSE) {
+                    a.set(ref, 1, l);
+                    a.set(ref, k, falseLit);
+                    watch(l, c);
+                    moved = true;
+                    break;
+                }
+            }
+            if (moved) continue;
+            ws[j++] = c;
+            if (value[other] == FALSE) {
+                while (i < n) ws[j++] = ws[i++];
+                watchSizes[falseLit] = j;
+                conflict = c;
+                return false;
+            }
+            enqueue(other, c);
+        }
+        watchSizes[falseLit] = j;
+        return true;
+    }
+
+    /*
+     * Make every other literal of the at-most-one constraints of p false, p
+     * being true; returns false, with the conflict set, if one is true.
+     */
+    private boolean propagateAtMostOnes(int p) {
+        int[] occurs = amoOccurs[p];
+        for (int i = 0; i < amoOccursSize[p]; i++) {
+            int a = occurs[i];
+            int[] lits = atMostOnes[a];
+            if (trueCount[a] > 1) {
+                for (int q : lits) {
+                    if (q != p && value[q] == TRUE) {
+                        conflictPair[0] = p ^ 1;
+                        conflictPair[1] = q ^ 1;
+                        conflict = CONFLICT_PAIR;
+                        return false;
+                    }
+                }
+            }
+            for (int q : lits) {
+                if (value[q] == UNDEFINED) imply(q ^ 1, p ^ 1);
+            }
+        }
+        return true;
+    }
+
+    // Assign l, with the binary clause (l | falseLit) as its reason.
+    private void imply(int l, int falseLit) {
+        int v = l >> 1;
+        if (implication[v] == null) implication[v] = new int[2];
+        implication[v][0] = l;
+        implication[v][1] = falseLit;
+        enqueue(l, -2 - v);
+    }
+
+    /**
+     * @return number of assigned literals whose watches propagate() has
+     *         visited so far
+     */
+    long propagations() {
+        return propagations;
+    }
+
+    /**
+     * Add a learned clause and assign its first literal, with the clause as
+     * its reason.
+     * Requires: lits.length >= 2, lits[0] is unassigned, every other literal
+     * is false and lits[1] has the highest decision level among them.
+     *
+     * @return index of the new clause
+     */
+    int addLearnt(int[] lits, int glue) {
+        int c = store(lits, glue);
+        enqueue(lits[0], c);
+        return c;
+    }
+
+    /**
+     * Add a clause to the formula. Literals already false are left out, and
+     * a clause already satisfied is not added at all; a unit is assigned
+     * instead of added.
+     * Requires: decisionLevel() == 0, and every literal is of a variable
+     * below numVars()
+     *
+     * @return false iff every literal of the clause is false
+     */
+    boolean addClause(int[] lits) {
+        return addAtLevelZero(lits, false);
+    }
+
+    /**
+     * Add a clause implied by the formula, such as one learned by another
+     * search over the same clauses, as a learned clause. Otherwise like
+     * addClause.
+     *
+     * @return false iff every literal of the clause is false
+     */
+    boolean addShared(int[] lits) {
+        return addAtLevelZero(lits, true);
+    }
+
+    /**
+     * Add an at-most-one constraint to the formula. If one of its literals
+     * is already true, the others are assigned false straight away.
+     * Requires: decisionLevel() == 0, no literal occurs twice, and every
+     * literal is of a variable below numVars()
+     *
+     * @return false iff two literals of the constraint are true
+     */
+    boolean addAtMostOne(int[] lits) {
+        assert decisionLevel == 0 : "Propagator: constraint added at level " + decisionLevel;
+        int a = storeAtMostOne(lits.clone());
+        if (trueCount[a] > 1) return false;
+        if (trueCount[a] == 1) {
+            for (int q : lits) {
+                if (value[q] == UNDEFINED) enqueue(q ^ 1, NO_REASON);
+            }
+        }
+        return true;
+    }
+
+    // Append an at-most-one constraint and count its true literals.
+    private int storeAtMostOne(int[] lits) {
+        if (numAtMostOnes == atMostOnes.length) {
+            atMostOnes = Arrays.copyOf(atMostOnes, 2 * numAtMostOnes);
+            trueCount = Arrays.copyOf(trueCount, 2 * numAtMostOnes);
+        }
+        int a = numAtMostOnes++;
+        atMostOnes[a] = lits;
+        for (int l : lits) {
+            if (amoOccurs[l] == null) amoOccurs[l] = new int[4];
+            else if (amoOccursSize[l] == amoOccurs[l].length)
+                amoOccurs[l] = Arrays.copyOf(amoOccurs[l], 2 * amoOccursSize[l]);
+            amoOccurs[l][amoOccursSize[l]++] = a;
+            if (value[l] == TRUE) trueCount[a]++;
+        }
+        return a;
+    }
+
+    private boolean addAtLevelZero(int[] lits, boolean learnt) {
+        assert decisionLevel == 0 : "Propagator: clause added at level " + decisionLevel;
+        int[] kept = new int[lits.length];
+        int n = 0;
+        for (int l : lits) {
+            if (value[l] == TRUE) return true;
+            if (value[l] == UNDEFINED) kept[n++] = l;
+        }
+        if (n == 0) return false;
+        if (n == 1) enqueue(kept[0], NO_REASON);
+        else if (n == 2 && !learnt) storeBinary(kept[0], kept[1]);
+        else store(Arrays.copyOf(kept, n), learnt ? n : 0);
+        return true;
+    }
+
+    // Add the binary clause (a | b) of the formula to the implication lists.
+    private void storeBinary(int a, int b) {
+        if (2 * numBinaries == binaryLits.length) binaryLits = Arrays.copyOf(binaryLits, 2 * binaryLits.length);
+        binaryLits[2 * numBinaries] = a;
+        binaryLits[2 * numBinaries + 1] = b;
+        numBinaries++;
+        implies(a, b);
+        if (a != b) implies(b, a);
+    }
+
+    // l is implied when falseLit becomes false
+    private void implies(int falseLit, int l) {
+        int[] bs = binaries[falseLit];
+        if (bs == null) binaries[falseLit] = bs = new int[4];
+        else if (binarySizes[falseLit] == bs.length) binaries[falseLit] = bs = Arrays.copyOf(bs, 2 * bs.length);
+        bs[binarySizes[falseLit]++] = l;
+    }
+
+    // Append a clause, learned iff glue > 0, and watch its first two literals.
+    private int store(int[] lits, int glue) {
+        if (numClauses == lbd.length) {
+            if (arena == null) clauses = Arrays.copyOf(clauses, 2 * numClauses);
+            else refs = Arrays.copyOf(refs, 2 * numClauses);
+            lbd = Arrays.copyOf(lbd, 2 * numClauses);
+            binariesBefore = Arrays.copyOf(binariesBefore, 2 * numClauses);
+            activity = Arrays.copyOf(activity, 2 * numClauses);
+        }
+        int c = numClauses++;
+        if (arena == null) clauses[c] = lits;
+        else refs[c] = arena.add(lits);
+        lbd[c] = glue;
+        binariesBefore[c] = numBinaries;
+        activity[c] = glue > 0 ? activityIncrement : 0;
+        if (glue > 0) numLearnts++;
+        watch(lits[0], c);
+        watch(lits[1], c);
+        return c;
+    }
+
+    /**
+     * Make room for variables up to numVars-1, all unassigned.
+     * Requires: numVars >= numVars()
+     */
+    void addVariables(int numVars) {
+        int old = level.length;
+        if (numVars <= old) return;
+        watches = Arrays.copyOf(watches, 2 * numVars);
+        for (int l = 2 * old; l < 2 * numVars; l++) watches[l] = new int[4];
+        watchSizes = Arrays.copyOf(watchSizes, 2 * numVars);
+        binaries = Arrays.copyOf(binaries, 2 * numVars);
+        binarySizes = Arrays.copyOf(binarySizes, 2 * numVars);
+        value = Arrays.copyOf(value, 2 * numVars);
+        level = Arrays.copyOf(level, numVars);
+        reason = Arrays.copyOf(reason, numVars);
+        trail = Arrays.copyOf(trail, numVars);
+        phase = Arrays.copyOf(phase, numVars);
+        Arrays.fill(phase, old, numVars, -1);
+        amoOccurs = Arrays.copyOf(amoOccurs, 2 * numVars);
+        amoOccursSize = Arrays.copyOf(amoOccursSize, 2 * numVars);
+        implication = Arrays.copyOf(implication, numVars);
+    }
+
+    /**
+     * @return number of learned clauses currently kept
+     */
+    int numLearnts() {
+        return numLearnts;
+    }
+
+    /**
+     * Make clause c more likely to survive the next reduceLearnts(), because
+     * it took part in a conflict. Only learned clauses carry an activity.
+     */
+    void bumpClause(int c) {
+        if (c < 0 || lbd[c] == 0) return;
+        if ((activity[c] += activityIncrement) > 1e20) {
+            for (int i = 0; i < numClauses; i++) activity[i] *= 1e-20;
+            activityIncrement *= 1e-20;
+        }
+    }
+
+    /**
+     * Age the activity of all learned clauses relative to future bumps.
+     */
+    void decayClauses(double factor) {
+        activityIncrement /= factor;
+    }
+
+    /**
+     * Drop about half of the learned clauses: those with the highest literal
+     * block distance (LBD), ties broken by lowest activity. Clauses with an LBD
+     * of at most 2 and clauses that are the reason for a current assignment
+     * are always kept. The clauses dropped are logged to the proof, if any.
+     */
+    void reduceLearnts() {
+        Integer[] order = new Integer[numLearnts];
+        int n = 0;
+        for (int c = 0; c < numClauses; c++) {
+            if (lbd[c] > 0) order[n++] = c;
+        }
+        Arrays.sort(order, (x, y) -> lbd[x] != lbd[y] ? lbd[y] - lbd[x]
+                                                       : Double.compare(activity[x], activity[y]));
+        boolean[] drop = new boolean[numClauses];
+        for (int i = 0; i < order.length / 2; i++) {
+            int c = order[i];
+            if (lbd[c] > 2 && !isLocked(c)) {
+                drop[c] = true;
+                numLearnts--;
+                if (proof != null) proof.delete(clause(c));
+                if (arena != null) arena.free(refs[c]);
+            }
+        }
+
+        // Compact the clauses and renumber the reasons that refer to them.
+        int[] renumber = new int[numClauses];
+        int kept = 0;
+        for (int c = 0; c < numClauses; c++) {
+            if (drop[c]) continue;
+            renumber[c] = kept;
+            if (arena == null) clauses[kept] = clauses[c];
+            else refs[kept] = refs[c];
+            lbd[kept] = lbd[c];
+            binariesBefore[kept] = binariesBefore[c];
+            activity[kept] = activity[c];
+            kept++;
+        }
+        if (arena == null) {
+            for (int c = kept; c < numClauses; c++) clauses[c] = null;
+        } else if (2 * arena.wasted() > arena.used()) {
+            // the literals don't move within their clauses, so the watches hold
+            arena.compact(refs, kept);
+        }
+        numClauses = kept;
+        for (int i = 0; i < trailSize; i++) {
+            int v = trail[i] >> 1;
+            if (reason[v] >= 0) reason[v] = renumber[reason[v]];
+        }
+
+        // Rebuild the watches. The watched positions are unchanged, so the
+        // watch invariant still holds for the current assignment.
+        Arrays.fill(watchSizes, 0);
+        for (int c = 0; c < numClauses; c++) {
+            watch(literal(c, 0), c);
+            watch(literal(c, 1), c);
+        }
+    }
+
+    /**
+     * @return the value of every variable: TRUE, FALSE or UNDEFINED
+     */
+    byte[] model() {
+        byte[] model = new byte[numVars()];
+        for (int v = 0; v < model.length; v++) model[v] = value[2 * v];
+        return model;
+    }
+
+    /**
+     * @return the literals model makes true, one for every variable it
+     *         gives a value, in order of variable
+     */
+    static int[] trueLiterals(byte[] model) {
+        int[] lits = new int[model.length];
+        int n = 0;
+        for (int v = 0; v < model.length; v++) {
+            if (model[v] == TRUE) lits[n++] = 2 * v;
+            else if (model[v] == FALSE) lits[n++] = 2 * v + 1;
+        }
+        return Arrays.copyOf(lits, n);
+    }
+
+    /**
+     * @return bytes of memory held off the heap for clauses, 0 without an
+     *         arena
+     */
+    long offHeapBytes() {
+        return arena == null ? 0 : arena.bytes();
+    }
+
+    /**
+     * Free the clauses kept off the heap all at once, if any. The
+     * propagator cannot be used any more afterwards, except for its model
+     * and counts.
+     */
+    void release() {
+        if (arena != null) arena.release();
+    }
+
+    private boolean isLocked(int c) {
+        int l = literal(c, 0);
+        return value[l] == TRUE && reason[l >> 1] == c;
+    }
+
+    // literal k of clause c
+    private int literal(int c, int k) {
+        return arena == null ? clauses[c][k] : arena.get(refs[c], k);
+    }
+
+    private void watch(int l, int c) {
+        if (watchSizes[l] == watches[l].length)
+            watches[l] = Arrays.copyOf(watches[l], 2 * watches[l].length);
+        watches[l][watchSizes[l]++] = c;
+    }
+}
@@ -0,0 +1,56 @@
+package sat;
+
+/**
+ * Base for heuristics that rank the variables once, from the clauses of the
+ * formula, and then always decide the best-ranked free variable. The ranking
+ * lives in a VariableHeap, so a decision costs O(log n) instead of a scan
+ * over the clauses.
+ */
+abstract class RankedHeuristic implements BranchingHeuristic {
+    /** score[v] ranks variable v; higher is decided first */
+    protected double[] score;
+    /** positive[v] is true if v should be decided true rather than false */
+    protected boolean[] positive;
+    private VariableHeap heap;
+
+    /**
+     * Fill in score and positive for the given clauses.
+     */
+    protected abstract void rank(int numVars, int[][] clauses);
+
+    public void init(int numVars, int[][] clauses) {
+        score = new double[numVars];
+        positive = new boolean[numVars];
+        rank(numVars, clauses);
+        heap = new VariableHeap(score);
+        for (int v = 0; v < numVars; v++) heap.insert(v);
+    }
+
+    public int pickLiteral(Assignment assignment) {
+        while (!heap.isEmpty()) {
+            int v = heap.removeMax();
+            if (!assignment.isAssigned(v)) return positive[v] ? 2 * v : 2 * v + 1;
+        }
+        return -1;
+    }
+
+    public void unassigned(int v) {
+        heap.insert(v);
+    }
+
+    public void bump(int v) {
+    }
+
+    public void decay() {
+    }
+
+    /**
+     * @return for every literal, the number of clauses it occurs in
+     */
+    static int[] occurrences(int numVars, int[][] clauses) {
+        int[] count = new int[2 * numVars];
+        for (int[] c : clauses)
+            for (int l : c) count[l]++;
+        return count;
+    }
+}
@@ -0,0 +1,23 @@
+package sat;
+
+/**
+ * A RestartPolicy decides when a CDCL search gives up its current decisions
+ * and starts again from decision level 0. Learned clauses, variable
+ * activities and saved phases survive a restart, so the search resumes with
+ * everything it learned but without the early decisions that led it astray.
+ * 
+ * A policy is stateful and serves a single search: SolverOptions holds a
+ * supplier so that every solve call gets a fresh one.
+ */
+public interface RestartPolicy {
+    /**
+     * Called after every conflict, once its clause has been learned.
+     * 
+     * @param lbd
+     *            literal block distance of the learned clause
+     * @param trailSize
+     *            number of assigned variables when the conflict happened
+     * @return true if the search should restart now
+     */
+    boolean shouldRestart(int lbd, int trailSize);
+}
@@ -1,12 +1,29 @@
 package sat;
 
-import immutable.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 import sat.env.*;
 import sat.formula.*;
-import java.util.Iterator;
 
 /**
  * A simple DPLL SAT solver. See http://en.wikipedia.org/wiki/DPLL_algorithm
+ * A CDCL search can be selected instead through SolverOptions, and a
+ * Portfolio runs several configurations side by side on multiple cores,
+ * while CubeAndConquer splits one search across them.
  */
 public class SATSolver {
     /**
@@ -14,242 +31,269 @@ public class SATSolver {
      * unit propagation. The returned environment uses a map of Variable->Bool
      * rather than PosLiteral/NegLiteral->Bool, so that clients can more readily use it.
      * 
+     * Unit propagation is done by a Propagator, which watches two literals of
+     * every clause, so an assignment only visits the clauses watching its negation.
+     * The search is iterative: it keeps a single assignment trail and undoes it
+     * on backtrack, so neither memory nor stack depth grow with each assignment.
+     * 
      * @return an environment for which the problem evaluates to Bool.TRUE, or
      *         null if no such environment exists.
      */
     public static Environment solve(Formula formula) {
-    	// Verify size > 0.
-    	// If there are NO clauses, the formula is trivially solvable.
-    	// Stop and return an empty Environment.
-    	ImList<Clause> clauseList = formula.getClauses();
-    	if(clauseList.size() == 0) return new Environment();
-
-    	// Verify no empty clauses.
-    	// If size>0 and there is an empty clause, the list is unsatisfiable.
-    	// Fail and backtrack (return null).
-    	Iterator<Clause> emptyCheck = clauseList.iterator();
-    	while(emptyCheck.hasNext())
-    	{
-    		Clause ec = emptyCheck.next();
-    		if(ec.isEmpty()) return null;
-    	}
+    	return solve(formula, new SolverOptions());
+    }
+
+    /**
+     * Solve the problem with the preprocessing, search algorithm, branching
+     * heuristic and restart policy chosen in the options, so that they can be
+     * compared on the same formula.
+     * 
+     * @return an environment for which the problem evaluates to Bool.TRUE, or
+     *         null if no such environment exists.
+     * @throws CancellationException if the thread is interrupted while
+     *         solving, or a limit of the options runs out first
+     */
+    public static Environment solve(Formula formula, SolverOptions options) {
+    	SolveResult result = check(formula, options);
+    	if(result.getStatus() == SolveResult.Status.UNKNOWN)
+    		throw new CancellationException("search stopped: " + result.getReason());
+    	return result.getEnvironment();
+    }
+
+    /**
+     * Solve the problem like solve(Formula, SolverOptions), but within the
+     * time, decision, conflict and memory limits of the options, and stop
+     * with an UNKNOWN result instead of an exception when one runs out or
+     * the thread is interrupted.
+     * 
+     * @return whether the problem is satisfiable, with an environment for
+     *         which it evaluates to Bool.TRUE if so, or why the search
+     *         stopped before it could tell, and the statistics of the search
+     */
+    public static SolveResult check(Formula formula, SolverOptions options) {
+    	return check(formula, options, null);
+    }
+
+    /**
+     * Like check(Formula, SolverOptions), but the search also stops with an
+     * UNKNOWN result once token is cancelled, from any thread.
+     * 
+     * @param token
+     *            cancels the search, or null for none
+     */
+    public static SolveResult check(Formula formula, SolverOptions options, CancellationToken token) {
+    	return check(IntFormula.fromFormula(formula), options, token);
+    }
 
-    	// There are clauses and they are not empty
-    	// Find the smallest clause
-    	Environment solution = new Environment();
-    	Iterator<Clause> clauseItor = clauseList.iterator();
-    	Clause smallest = clauseItor.next();
-    	int smallestSize = smallest.size();
-    	while(clauseItor.hasNext())
+    /**
+     * Like check(Formula, SolverOptions), but on a formula already in compact
+     * form, which is searched as it is. The model of the result is in the
+     * int encoding of formula.
+     */
+    public static SolveResult check(IntFormula formula, SolverOptions options) {
+    	return check(formula, options, null);
+    }
+
+    /**
+     * Like check(IntFormula, SolverOptions), but the search also stops with
+     * an UNKNOWN result once token is cancelled, from any thread.
+     * 
+     * @param token
+     *            cancels the search, or null for none
+     */
+    public static SolveResult check(IntFormula formula, SolverOptions options, CancellationToken token) {
+    	return solve(formula, options, null, token);
+    }
+
+    /**
+     * Solve the problem with every configuration of the portfolio at once,
+     * each on its own thread, and return the first answer found. The other
+     * configurations are then cancelled.
+     * 
+     * @return an environment for which the problem evaluates to Bool.TRUE, or
+     *         null if no such environment exists.
+     * @throws CancellationException if the thread is interrupted while solving
+     */
+    public static Environment solve(Formula formula, Portfolio portfolio) {
+    	return portfolio.run(formula);
+    }
+
+    /**
+     * Solve the problem by splitting it into cubes, which are searched in
+     * parallel on a work-stealing pool until one of them has a solution.
+     * 
+     * @return an environment for which the problem evaluates to Bool.TRUE, or
+     *         null if no such environment exists.
+     * @throws CancellationException if the thread is interrupted while solving
+     */
+    public static Environment solve(Formula formula, CubeAndConquer cubeAndConquer) {
+    	return cubeAndConquer.run(formula);
+    }
+
+    /**
+     * Write the problem to file in DIMACS CNF, the input format of most SAT
+     * solvers and proof checkers, numbering its variables like the proofs
+     * of SolverOptions.withProof do.
+     * 
+     * @throws IOException if the file can't be written
+     */
+    public static void writeDimacs(Formula formula, Path file) throws IOException {
+    	try(Writer out = Files.newBufferedWriter(file, StandardCharsets.US_ASCII))
     	{
-        	Clause current = clauseItor.next();
-    		if(current.size() < smallestSize)
-    		{
-    			smallest = current;
-    			smallestSize = smallest.size();
-    		}
+    		IntFormula.fromFormula(formula).writeDimacs(out);
     	}
-    	// smallest is now the smallest Clause, with size smallestSize (int)
-    	if(smallest.isUnit())
+    }
+
+    /**
+     * Enumerate every solution of the problem. Solutions are found lazily, as
+     * the stream is consumed, and none of them is kept, so use limit() for
+     * only the first few, and the stream can be as long as needed.
+     * 
+     * @return a stream of environments binding every variable of the
+     *         problem, one for each assignment to them that makes the problem
+     *         evaluate to Bool.TRUE
+     */
+    public static Stream<Environment> solutions(Formula formula) {
+    	IntFormula encoding = IntFormula.fromFormula(formula);
+    	boolean[] projected = new boolean[encoding.numVariables()];
+    	Arrays.fill(projected, true);
+    	return solutions(encoding, projected);
+    }
+
+    /**
+     * Enumerate the solutions of the problem, projected onto some of its
+     * variables: two solutions that only differ outside the projection count
+     * as one. Otherwise like solutions(Formula).
+     * 
+     * @param projection
+     *            the variables to enumerate; those not in the problem are
+     *            ignored
+     * @return a stream of environments binding the variables of the
+     *         projection that occur in the problem, one for each assignment
+     *         to them that extends to a solution
+     */
+    public static Stream<Environment> solutions(Formula formula, Collection<Variable> projection) {
+    	IntFormula encoding = IntFormula.fromFormula(formula);
+    	Map<Variable, Integer> index = new HashMap<Variable, Integer>();
+    	for(int v = 0; v < encoding.numVariables(); v++)
+    		index.put(encoding.getVariable(v), v);
+    	boolean[] projected = new boolean[encoding.numVariables()];
+    	for(Variable var : projection)
     	{
-    		// Bind its variable in the environment so the clause is satisfied.
-    		// Call substitute() in all of the other clauses.
-    		// Recursively call solve().
-    		Literal lit = smallest.chooseLiteral();
-    		Variable var = lit.getVariable();
-
-    		// Add literal's var to solution
-    		if(lit instanceof NegLiteral) 
-    			solution = solution.putFalse(var);
-    		else
-        		solution = solution.putTrue(var);
-    		ImList<Clause> cList = substitute(clauseList, lit);
-    		solution = solve(cList, solution);
+    		Integer v = index.get(var);
+    		if(v != null) projected[v] = true;
     	}
-    	else
-    	{
-    		// No unit Clause
-    		// Take the smallest one, try setting it to True and recurse
-    		Environment tempSolution;
-    		Literal arbLit = smallest.chooseLiteral();
-    		Variable var = arbLit.getVariable();
-
-    		// Add arbLit's var to solution
-    		if(arbLit instanceof NegLiteral) 
-    			tempSolution = solution.putFalse(var);
-    		else
-        		tempSolution = solution.putTrue(var);
+    	return solutions(encoding, projected);
+    }
 
-    		ImList<Clause> cList = substitute(clauseList, arbLit);
-    		tempSolution = solve(cList, solution);
-    		if(tempSolution == null)
-    		{
-    			// Dead end when setting to True
-    			// Try setting it to False!
-
-    			// Add arbLit's var to solution (this time putTrue and putFalse are swapped!)
-    			if(arbLit instanceof NegLiteral) 
-					tempSolution = solution.putTrue(var);
-				else
-					tempSolution = solution.putFalse(var);
-
-    			cList = substitute(clauseList, arbLit.getNegation());
-    			tempSolution = solve(cList, solution);
-    			if(tempSolution == null)
-    			{
-    				// False didn't work either
-    				// Formula is unsolvable!!
-    				return null;
-    			}
-    		}
-    		// Finalize solution; it checks out
-    		solution = tempSolution;
-    	}
-    	return solution;
+    private static Stream<Environment> solutions(IntFormula encoding, boolean[] projected) {
+    	Spliterator<Environment> models = Spliterators.spliteratorUnknownSize(new ModelIterator(encoding, projected),
+    	        Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL);
+    	return StreamSupport.stream(models, false);
     }
 
     /**
-     * Takes a partial assignment of variables to values, and recursively
-     * searches for a complete satisfying assignment.
+     * Solve already encoded clauses with the given options and token, which
+     * may be null. If exchange is not null and the options allow it, learned
+     * clauses are shared through it. The statistics of the call are added
+     * to SolverMetrics.
      * 
-     * @param clauses
-     *            formula in conjunctive normal form
-     * @param env
-     *            assignment of some or all variables in clauses to true or
-     *            false values.
-     * @return an environment for which all the clauses evaluate to Bool.TRUE,
-     *         or null if no such environment exists.
+     * @throws UncheckedIOException if the options ask for a proof and it
+     *         can't be written
      */
-    private static Environment solve(ImList<Clause> clauseList, Environment solution) {
-    	// Verify size > 0.
-    	// If there are NO clauses, we are DONE.
-    	// Stop and return the solution!
-    	if(clauseList.size() == 0) return solution;
-
-    	// Verify no empty clauses.
-    	// If size>0 and there is an empty clause, the list is unsatisfiable.
-    	// Fail and backtrack (return null).
-    	Iterator<Clause> emptyCheck = clauseList.iterator();
-    	while(emptyCheck.hasNext())
+    static SolveResult solve(IntFormula encoding, SolverOptions options, ClauseExchange.Port exchange,
+    		CancellationToken token) {
+    	if(options.getProof() == null) return solve(encoding, options, exchange, token, null);
+    	try(ProofWriter proof = new ProofWriter(options.getProof()))
     	{
-    		Clause ec = emptyCheck.next();
-    		if(ec.isEmpty()) return null;
+    		return solve(encoding, options, exchange, token, proof);
     	}
-
-    	// There are clauses and they are not empty
-    	// Find the smallest clause
-    	Iterator<Clause> clauseItor = clauseList.iterator();
-    	Clause smallest = clauseItor.next();
-    	int smallestSize = smallest.size();
-    	while(clauseItor.hasNext())
+    	catch(IOException e)
     	{
-        	Clause current = clauseItor.next();
-    		if(current.size() < smallestSize)
-    		{
-    			smallest = current;
-    			smallestSize = smallest.size();
-    			if(smallestSize == 1) break;
-    		}
+    		throw new UncheckedIOException("cannot write proof to " + options.getProof(), e);
     	}
-    	// smallest is now the smallest Clause, with size smallestSize (int)
-    	if(smallest.isUnit())
+    }
+
+    private static SolveResult solve(IntFormula encoding, SolverOptions options, ClauseExchange.Port exchange,
+    		CancellationToken token, ProofWriter proof) {
+    	long started = System.nanoTime();
+    	long allocated = SolverStatistics.threadAllocatedBytes();
+    	long collected = SolverStatistics.collectionMillis();
+    	SolverStatistics stats = new SolverStatistics();
+    	int numVars = encoding.numVariables();
+    	int[][] clauses = encoding.clauses();
+    	int[][] atMostOnes = encoding.atMostOnes();
+
+    	// Simplify the clauses first, if asked to. The simplifier remembers how to
+    	// give the variables it removes a value again once we have a solution.
+    	// The budget starts now, so the limits cover preprocessing too.
+    	Budget budget = new Budget(options, token);
+    	ClauseSimplifier simplifier = null;
+    	if(options.getPreprocessor() != null)
     	{
-    		// Bind its variable in the environment so the clause is satisfied.
-    		// Call substitute() in all of the other clauses.
-    		// Recursively call solve().
-    		Literal lit = smallest.chooseLiteral();
-    		Variable var = lit.getVariable();
-    		
-    		// Add literal's var to solution
-    		if(lit instanceof NegLiteral) 
-    			solution = solution.putFalse(var);
-    		else
-    			solution = solution.putTrue(var);
-    		
-    		ImList<Clause> cList = substitute(clauseList, lit);
-    		solution = solve(cList, solution);
+    		simplifier = options.getPreprocessor().run(numVars, clauses, atMostOnes, proof, budget);
+    		if(simplifier.isUnsatisfiable())
+    			return finish(SolveResult.unsatisfiable(stats), started, allocated, collected);
+    		if(budget.reason() != null)
+    			return finish(SolveResult.unknown(budget.reason(), stats), started, allocated, collected);
+    		clauses = simplifier.clauses();
     	}
-    	else
+
+    	// If there is an empty clause, or the unit clauses contradict each other,
+    	// the formula is unsatisfiable before we even start.
+    	Propagator propagator = new Propagator(numVars, clauses, atMostOnes, options.isOffHeapClauses());
+    	try
     	{
-    		// No unit Clause
-    		// Take the smallest one, try setting it to True and recurse
-    		Environment tempSolution;
-    		Literal arbLit = smallest.chooseLiteral();
-    		Variable var = arbLit.getVariable();
-    		
-    		// Add arbLit's var to solution
-    		if(arbLit instanceof NegLiteral) 
-    			tempSolution = solution.putFalse(var);
+    		if(propagator.isInconsistent())
+    		{
+    			if(proof != null) proof.add(new int[0]);
+    			return finish(SolveResult.unsatisfiable(stats), started, allocated, collected);
+    		}
+
+    		SolveResult.Status status;
+    		if(options.getAlgorithm() == Algorithm.CDCL)
+    		{
+    			CDCLSearch search = new CDCLSearch(propagator, options);
+    			// Clauses learned after preprocessing may not hold for the original clauses.
+    			if(exchange != null && simplifier == null) search.share(exchange);
+    			if(proof != null) search.logProof(proof);
+    			status = search.solve(new int[0], budget);
+    			stats = search.statistics();
+    		}
     		else
-        		tempSolution = solution.putTrue(var);
-    		ImList<Clause> cList = substitute(clauseList, arbLit);
-    		tempSolution = solve(cList, tempSolution);
-    		if(tempSolution == null)
     		{
-    			// Dead end when setting to True
-    			// Try setting it to False!
-
-    			// Add arbLit's var to solution (this time putTrue and putFalse are swapped!)
-    			if(arbLit instanceof NegLiteral) 
-					tempSolution = solution.putTrue(var);
-				else
-					tempSolution = solution.putFalse(var);
-    			cList = substitute(clauseList, arbLit.getNegation());
-    			tempSolution = solve(cList, tempSolution);
-    			if(tempSolution == null)
-    			{
-    				// False didn't work either
-    				// Formula is unsolvable!!
-    				return null;
-    			}
+    			DPLLSearch search = new DPLLSearch(propagator, options);
+    			if(proof != null) search.logProof(proof);
+    			status = search.solve(new int[0], budget);
+    			stats = search.statistics();
     		}
-    		// Finalize solution; it checks out
-    		solution = tempSolution;
+    		stats.propagations = propagator.propagations();
+    		stats.offHeapBytes = propagator.offHeapBytes();
+    		if(status == SolveResult.Status.UNSATISFIABLE)
+    			return finish(SolveResult.unsatisfiable(stats), started, allocated, collected);
+    		if(status == SolveResult.Status.UNKNOWN)
+    			return finish(SolveResult.unknown(budget.reason(), stats), started, allocated, collected);
+    		byte[] model = propagator.model();
+    		if(simplifier != null) simplifier.extend(model);
+    		return finish(SolveResult.satisfiable(encoding, Propagator.trueLiterals(model), stats), started, allocated, collected);
+    	}
+    	finally
+    	{
+    		// free the clauses kept off the heap now, not when the collector gets to them
+    		propagator.release();
     	}
-    	return solution;
     }
 
-    /**
-     * given a clause list and literal, produce a new list resulting from
-     * setting that literal to true
-     * 
-     * @param clauses
-     *            , a list of clauses
-     * @param l
-     *            , a literal to set to true
-     * @return a new list of clauses resulting from setting l to true
-     */
-    private static ImList<Clause> substitute(ImList<Clause> clauses, Literal l) {
-    	// We use the following two boolean identities:
-    	// A OR TRUE  = TRUE
-    	// A OR FALSE = A
-    	// Clauses are a list of "ORed" literals.
-    	//  So if Literal l is positive (i.e. v331), substituting makes it TRUE which makes the whole clause TRUE.
-    	// And if Literal l is negative (i.e. ~v331),substituting makes it FALSE and it is simply removed from the clause.
-
-    	// For example in the clause (v331, ~v344, ~v313),
-    	// substituting  v331 (a positive literal) makes (TRUE, ~v344, ~v313) or just TRUE. (TRUE clauses can be ignored.)
-    	// Substituting ~v344 (a negative literal) makes (FALSE, v331, ~v313) or simply (v331, ~v313).
-
-        Iterator<Clause> clauseItor = clauses.iterator();
-        ImList<Clause> newList = new EmptyImList<Clause>();
-        while(clauseItor.hasNext())
-        {
-        	// Here we use another boolean identity:
-        	// A AND TRUE = A
-        	// Now, Formulas are a list of "ANDed" clauses.
-        	// So if a substituted Clause becomes TRUE, it can be removed from the formula by that identity.
-        	// For example in the formula (x1, x2, x3),
-        	// If calling reduce() on x1 makes it TRUE, we can simplify the formula to (x2, x3).
-        	// reduce() returns null if the clause is TRUE, so we only keep the clause (add it to newList) if newClause != null.
-        	Clause newClause = clauseItor.next().reduce(l);
-        	if(newClause != null)
-            {
-            	newList = newList.add(newClause);
-            }
-        	
-        }
-        return newList;
+    // Complete the statistics of a call that started at the given time,
+    // allocation count and collection time, and add them to the totals of
+    // the process.
+    private static SolveResult finish(SolveResult result, long started, long allocated, long collected) {
+    	SolverStatistics stats = result.getStatistics();
+    	stats.solveNanos = System.nanoTime() - started;
+    	if(allocated >= 0) stats.allocatedBytes = SolverStatistics.threadAllocatedBytes() - allocated;
+    	if(collected >= 0) stats.collectionMillis = SolverStatistics.collectionMillis() - collected;
+    	SolverMetrics.getInstance().record(stats, result.getStatus());
+    	return result;
     }
 
 }
@@ -2,6 +2,20 @@ package sat;
 
 import static org.junit.Assert.*;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.function.Supplier;
+
+import javax.management.ObjectName;
+
 import org.junit.Test;
 
 import sat.env.*;
@@ -75,6 +89,699 @@ public class SATSolverTest {
 		System.out.println(s2);
 		
     }
+
+    @Test
+    public void testSolveChecksEveryClause() throws ParseException, IOException {
+    	//(a | ~b) & (a | b) is satisfiable
+    	Formula f1 = new Formula(new Clause(a).add(nb)).addClause(new Clause(a).add(b));
+    	Environment e1 = SATSolver.solve(f1);
+    	assertNotNull(e1);
+    	assertTrue(satisfies(f1, e1));
+
+    	//(a) & (~a | b) & (~b | c) & (~c | ~a) is not
+    	Formula f2 = new Formula(new Clause(a)).addClause(new Clause(na).add(b))
+    	             .addClause(new Clause(nb).add(c)).addClause(new Clause(nc).add(na));
+    	assertNull(SATSolver.solve(f2));
+
+    	// The empty formula is trivially solvable; the empty clause never is.
+    	assertNotNull(SATSolver.solve(new Formula()));
+    	assertNull(SATSolver.solve(new Formula(new Clause())));
+
+    	Formula sudoku = Sudoku.fromFile(3, "samples/sudoku_evil.txt").getProblem();
+    	Environment e3 = SATSolver.solve(sudoku);
+    	assertNotNull(e3);
+    	assertTrue(satisfies(sudoku, e3));
+    }
+
+    @Test
+    public void testDPLLStackDepth() throws InterruptedException {
+    	// The chain x0 -> x1 -> ... takes the search a decision level per
+    	// variable, and the recursive search a stack frame per level; here it
+    	// runs on a stack with room for a few hundred frames at most.
+    	int n = 30000;
+    	int[][] chain = new int[n - 1][];
+    	for (int v = 0; v + 1 < n; v++) chain[v] = new int[] { 2 * v + 1, 2 * (v + 1) };
+    	Propagator propagator = new Propagator(n, chain);
+    	SolverOptions options = new SolverOptions().withHeuristic(SmallestClauseHeuristic::new);
+    	SolveResult.Status[] status = new SolveResult.Status[1];
+    	Thread search = new Thread(null, () -> status[0] = new DPLLSearch(propagator, options)
+    	        .solve(new int[0], new Budget(options, null)), "dpll", 64 * 1024);
+    	search.start();
+    	search.join();
+    	assertEquals("no StackOverflowError", SolveResult.Status.SATISFIABLE, status[0]);
+    	assertTrue(propagator.decisionLevel() > n / 2);
+    	byte[] model = propagator.model();
+    	for (int v = 0; v + 1 < n; v++)
+    		assertTrue(model[v] == Propagator.FALSE || model[v + 1] == Propagator.TRUE);
+    }
+
+    @Test
+    public void testSolveWithCDCL() throws ParseException, IOException {
+    	SolverOptions cdcl = new SolverOptions().withAlgorithm(Algorithm.CDCL);
+    	Formula f1 = new Formula(new Clause(a).add(nb)).addClause(new Clause(a).add(b));
+    	assertTrue(satisfies(f1, SATSolver.solve(f1, cdcl)));
+
+    	// Every assignment of a, b, c falsifies one of these clauses.
+    	Formula f2 = new Formula();
+    	for (Literal x : new Literal[] { a, na })
+    		for (Literal y : new Literal[] { b, nb })
+    			for (Literal z : new Literal[] { c, nc })
+    				f2 = f2.addClause(new Clause(x).add(y).add(z));
+    	assertNull(SATSolver.solve(f2, cdcl));
+    	assertNull(SATSolver.solve(f2));
+
+    	for (String file : new String[] { "samples/sudoku_hard.txt", "samples/sudoku_evil.txt" }) {
+    		Formula sudoku = Sudoku.fromFile(3, file).getProblem();
+    		Environment e = SATSolver.solve(sudoku, cdcl);
+    		assertNotNull(e);
+    		assertTrue(satisfies(sudoku, e));
+    	}
+    }
+
+    @Test
+    public void testHeuristics() throws ParseException, IOException {
+    	Formula sudoku = Sudoku.fromFile(3, "samples/sudoku_hard2.txt").getProblem();
+    	Formula unsat = new Formula(new Clause(a).add(b)).addClause(new Clause(na).add(b))
+    	                .addClause(new Clause(a).add(nb)).addClause(new Clause(na).add(nb));
+    	List<Supplier<? extends BranchingHeuristic>> heuristics = Arrays.asList(
+    	        VSIDSHeuristic::new, DLISHeuristic::new, MOMSHeuristic::new,
+    	        JeroslowWangHeuristic::new, SmallestClauseHeuristic::new);
+    	for (Algorithm algorithm : Algorithm.values()) {
+    		for (Supplier<? extends BranchingHeuristic> h : heuristics) {
+    			SolverOptions options = new SolverOptions().withAlgorithm(algorithm).withHeuristic(h);
+    			assertTrue(options.toString(), satisfies(sudoku, SATSolver.solve(sudoku, options)));
+    			assertNull(options.toString(), SATSolver.solve(unsat, options));
+    		}
+    	}
+    }
+
+    @Test
+    public void testRestarts() throws ParseException, IOException {
+    	long[] luby = { 1, 1, 2, 1, 1, 2, 4, 1, 1, 2, 1, 1, 2, 4, 8 };
+    	for (int i = 0; i < luby.length; i++) assertEquals(luby[i], LubyRestarts.luby(i));
+
+    	Formula sudoku = Sudoku.fromFile(3, "samples/sudoku_evil.txt").getProblem();
+    	List<Supplier<? extends RestartPolicy>> policies = Arrays.asList(
+    	        () -> new LubyRestarts(1), () -> new GeometricRestarts(1, 1.1), GlucoseRestarts::new);
+    	for (Supplier<? extends RestartPolicy> r : policies) {
+    		SolverOptions options = new SolverOptions().withAlgorithm(Algorithm.CDCL)
+    		        .withRestarts(r).withPhaseSaving(true);
+    		assertTrue(options.toString(), satisfies(sudoku, SATSolver.solve(sudoku, options)));
+    	}
+    }
+
+    @Test
+    public void testPreprocessor() throws ParseException, IOException {
+    	// Eliminating b leaves only (a | c), so the model must rebuild b.
+    	Formula f = new Formula(new Clause(a).add(b)).addClause(new Clause(nb).add(c))
+    	        .addClause(new Clause(na).add(nb).add(nc));
+    	SolverOptions options = new SolverOptions().withPreprocessor(new Preprocessor());
+    	assertTrue(satisfies(f, SATSolver.solve(f, options)));
+    	Formula unsat = new Formula(new Clause(a).add(b)).addClause(new Clause(na).add(b))
+    	        .addClause(new Clause(a).add(nb)).addClause(new Clause(na).add(nb));
+    	assertNull(SATSolver.solve(unsat, options));
+
+    	Formula sudoku = Sudoku.fromFile(3, "samples/sudoku_evil.txt").getProblem();
+    	List<Preprocessor.PassReport> reports = new ArrayList<Preprocessor.PassReport>();
+    	for (Algorithm algorithm : Algorithm.values()) {
+    		reports.clear();
+    		options = new SolverOptions().withAlgorithm(algorithm)
+    		        .withPreprocessor(new Preprocessor().withReporter(reports::add));
+    		assertTrue(options.toString(), satisfies(sudoku, SATSolver.solve(sudoku, options)));
+    		assertEquals(Preprocessor.Pass.values().length, reports.size());
+    	}
+    }
+
+    @Test
+    public void testPortfolio() throws ParseException, IOException {
+    	Formula unsat = new Formula(new Clause(a).add(b)).addClause(new Clause(na).add(b))
+    	        .addClause(new Clause(a).add(nb)).addClause(new Clause(na).add(nb));
+    	Formula sudoku = Sudoku.fromFile(3, "samples/sudoku_evil.txt").getProblem();
+    	List<Portfolio> portfolios = Arrays.asList(new Portfolio(1), new Portfolio(6),
+    	        new Portfolio(6).withClauseSharing(true),
+    	        new Portfolio(new SolverOptions(), new SolverOptions().withAlgorithm(Algorithm.CDCL)
+    	                .withPolarity(Polarity.RANDOM).withSeed(7).withRandomFrequency(0.1)));
+    	for (Portfolio portfolio : portfolios) {
+    		assertTrue(portfolio.toString(), satisfies(sudoku, SATSolver.solve(sudoku, portfolio)));
+    		assertNull(portfolio.toString(), SATSolver.solve(unsat, portfolio));
+    	}
+    }
+
+    @Test
+    public void testCubeAndConquer() throws ParseException, IOException {
+    	Formula unsat = new Formula(new Clause(a).add(b)).addClause(new Clause(na).add(b))
+    	        .addClause(new Clause(a).add(nb)).addClause(new Clause(na).add(nb));
+    	Formula sudoku = Sudoku.fromFile(3, "samples/sudoku_evil.txt").getProblem();
+    	List<CubeAndConquer> splits = Arrays.asList(new CubeAndConquer(1), new CubeAndConquer(4),
+    	        new CubeAndConquer(4).withInitialDepth(0).withConflictBudget(10),
+    	        new CubeAndConquer(3).withInitialDepth(6)
+    	                .withOptions(new SolverOptions().withPreprocessor(new Preprocessor())));
+    	for (CubeAndConquer split : splits) {
+    		assertTrue(split.toString(), satisfies(sudoku, SATSolver.solve(sudoku, split)));
+    		assertNull(split.toString(), SATSolver.solve(unsat, split));
+    	}
+
+    	// an interrupt stops the preprocessor before any cube is searched
+    	List<Preprocessor.PassReport> reports = new ArrayList<Preprocessor.PassReport>();
+    	CubeAndConquer preprocessed = new CubeAndConquer(2)
+    	        .withOptions(new SolverOptions().withPreprocessor(new Preprocessor().withReporter(reports::add)));
+    	Thread.currentThread().interrupt();
+    	try {
+    		SATSolver.solve(sudoku, preprocessed);
+    		fail("solve() returned while interrupted");
+    	} catch (CancellationException e) {
+    		assertTrue(Thread.interrupted());
+    		assertTrue(reports.toString(), reports.size() < Preprocessor.Pass.values().length);
+    	}
+    }
+
+    @Test
+    public void testIncremental() throws ParseException, IOException {
+    	IncrementalSolver solver = new IncrementalSolver();
+    	solver.add(new Sudoku(3).getProblem());
+    	for (String file : Arrays.asList("samples/sudoku_easy.txt", "samples/sudoku_hard.txt",
+    	                                 "samples/sudoku_evil.txt")) {
+    		// The givens of the puzzle are its unit clauses; assume them instead.
+    		Formula puzzle = Sudoku.fromFile(3, file).getProblem();
+    		List<Literal> givens = new ArrayList<Literal>();
+    		for (Clause clause : puzzle.getClauses()) {
+    			if (clause.isUnit()) givens.add(clause.chooseLiteral());
+    		}
+    		Environment e = solver.solve(givens.toArray(new Literal[givens.size()]));
+    		assertTrue(file, satisfies(puzzle, e));
+    		assertTrue(solver.getFailedAssumptions().isEmpty());
+    	}
+
+    	// Two symbols in the top left corner can't both be there.
+    	Literal one = PosLiteral.make(Sudoku.literalVar(1, 1, 1));
+    	Literal two = PosLiteral.make(Sudoku.literalVar(1, 1, 2));
+    	assertNull(solver.solve(a, one, two));
+    	assertEquals(2, solver.getFailedAssumptions().size());
+    	assertTrue(solver.getFailedAssumptions().containsAll(Arrays.asList(one, two)));
+    	assertNotNull(solver.solve(one));
+
+    	solver.add(new Clause(na));
+    	assertNull(solver.solve(a));
+    	assertEquals(Arrays.asList(a), solver.getFailedAssumptions());
+    	solver.add(new Clause(a));
+    	assertNull(solver.solve());
+    	assertTrue(solver.getFailedAssumptions().isEmpty());
+    }
+
+    @Test
+    public void testSolutions() throws ParseException {
+    	Formula f = new Formula(new Clause(a).add(b));
+    	assertEquals(3, SATSolver.solutions(f).count());
+    	assertEquals(2, SATSolver.solutions(f, Arrays.asList(a.getVariable(), c.getVariable())).count());
+    	Formula unsat = new Formula(new Clause(a)).addClause(new Clause(na));
+    	assertEquals(0, SATSolver.solutions(unsat).count());
+
+    	// 288 4x4 grids, 4! ways to fill in the first row
+    	Formula grid = new Sudoku(2).getProblem();
+    	List<Variable> cells = new ArrayList<Variable>();
+    	for (int i = 1; i <= 4; i++)
+    		for (int j = 1; j <= 4; j++)
+    			for (int k = 1; k <= 4; k++) cells.add(Sudoku.literalVar(i, j, k));
+    	Set<String> grids = new HashSet<String>();
+    	SATSolver.solutions(grid).forEach(e -> {
+    		assertTrue(satisfies(grid, e));
+    		StringBuilder key = new StringBuilder();
+    		for (Variable v : cells) key.append(e.get(v));
+    		assertTrue(grids.add(key.toString()));
+    	});
+    	assertEquals(288, grids.size());
+    	assertEquals(24, SATSolver.solutions(grid, cells.subList(0, 16)).count());
+
+    	Formula big = new Sudoku(3).getProblem();
+    	assertEquals(5, SATSolver.solutions(big).limit(5).filter(e -> satisfies(big, e)).count());
+    }
+
+    @Test
+    public void testSolveResult() throws ParseException, IOException {
+    	Formula unsat = new Formula(new Clause(a).add(b)).addClause(new Clause(na).add(b))
+    	        .addClause(new Clause(a).add(nb)).addClause(new Clause(na).add(nb));
+    	Formula sudoku = Sudoku.fromFile(3, "samples/sudoku_evil.txt").getProblem();
+    	Formula empty = new Sudoku(3).getProblem();
+    	Formula pigeons = pigeonhole(9, CardinalityEncoding.PAIRWISE);
+    	for (Algorithm algorithm : Algorithm.values()) {
+    		SolverOptions options = new SolverOptions().withAlgorithm(algorithm);
+    		SolveResult result = SATSolver.check(sudoku, options);
+    		assertEquals(SolveResult.Status.SATISFIABLE, result.getStatus());
+    		assertTrue(satisfies(sudoku, result.getEnvironment()));
+    		assertEquals(SolveResult.Status.UNSATISFIABLE, SATSolver.check(unsat, options).getStatus());
+
+    		assertEquals(SolveResult.Reason.DECISION_LIMIT,
+    		        SATSolver.check(empty, options.withDecisionLimit(10)).getReason());
+    		assertEquals(SolveResult.Reason.CONFLICT_LIMIT,
+    		        SATSolver.check(pigeons, options.withConflictLimit(10)).getReason());
+    		assertEquals(SolveResult.Reason.TIME_LIMIT,
+    		        SATSolver.check(pigeons, options.withTimeLimit(1)).getReason());
+    		// a limit too far off to count in nanoseconds is no limit
+    		assertEquals(SolveResult.Status.SATISFIABLE,
+    		        SATSolver.check(sudoku, options.withTimeLimit(Long.MAX_VALUE / 2)).getStatus());
+
+    		CancellationToken token = new CancellationToken();
+    		token.cancel();
+    		result = SATSolver.check(empty, options, token);
+    		assertEquals(SolveResult.Status.UNKNOWN, result.getStatus());
+    		assertEquals(SolveResult.Reason.CANCELLED, result.getReason());
+    		assertNull(result.getEnvironment());
+    		// the token stops the preprocessor before the search starts
+    		List<Preprocessor.PassReport> reports = new ArrayList<Preprocessor.PassReport>();
+    		result = SATSolver.check(empty, options.withPreprocessor(new Preprocessor().withReporter(reports::add)), token);
+    		assertEquals(SolveResult.Reason.CANCELLED, result.getReason());
+    		assertTrue(reports.toString(), reports.size() < Preprocessor.Pass.values().length);
+
+    		Thread.currentThread().interrupt();
+    		result = SATSolver.check(empty, options);
+    		assertTrue(Thread.interrupted());
+    		assertEquals(SolveResult.Reason.INTERRUPTED, result.getReason());
+    		try {
+    			SATSolver.solve(empty, options.withDecisionLimit(10));
+    			fail("solve() returned without an answer");
+    		} catch (CancellationException e) {
+    			// expected
+    		}
+    	}
+    }
+
+    @Test
+    public void testStatistics() throws Exception {
+    	Formula sudoku = Sudoku.fromFile(3, "samples/sudoku_evil.txt").getProblem();
+    	long solves = SolverMetrics.getInstance().getSolves();
+    	for (Algorithm algorithm : Algorithm.values()) {
+    		SolverOptions options = new SolverOptions().withAlgorithm(algorithm);
+    		SolverStatistics stats = SATSolver.check(sudoku, options).getStatistics();
+    		assertTrue(stats.toString(), stats.getDecisions() > 0);
+    		assertTrue(stats.toString(), stats.getPropagations() > stats.getDecisions());
+    		assertTrue(stats.toString(), stats.getMaxDepth() > 0 && stats.getMaxDepth() <= stats.getDecisions());
+    		assertTrue(stats.toString(), stats.getBacktracks() <= stats.getConflicts());
+    		assertTrue(stats.toString(), stats.getSolveNanos() >= stats.getPropagationNanos() + stats.getBranchingNanos());
+
+    		stats = SATSolver.check(pigeonhole(6, CardinalityEncoding.PAIRWISE), options.withConflictLimit(50)).getStatistics();
+    		assertEquals(50 + 1, stats.getConflicts());
+    	}
+    	assertTrue(SolverMetrics.getInstance().getSolves() >= solves + 4);
+    	assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName("sat:type=SolverMetrics")));
+    }
+
+    @Test
+    public void testProof() throws Exception {
+    	Path proof = Files.createTempFile("proof", ".drat");
+    	Path dimacs = Files.createTempFile("formula", ".cnf");
+    	try {
+    		Formula pigeons = pigeonhole(5, CardinalityEncoding.PAIRWISE);
+    		Formula sudoku = Sudoku.fromFile(3, "samples/sudoku_evil.txt").getProblem();
+    		SolverOptions cdcl = new SolverOptions().withAlgorithm(Algorithm.CDCL);
+    		List<SolverOptions> configs = Arrays.asList(new SolverOptions(), cdcl,
+    		        new SolverOptions().withPreprocessor(new Preprocessor()),
+    		        cdcl.withRestarts(LubyRestarts::new).withPreprocessor(new Preprocessor()));
+    		for (SolverOptions options : configs) {
+    			assertEquals(SolveResult.Status.UNSATISFIABLE,
+    			        SATSolver.check(pigeons, options.withProof(proof)).getStatus());
+    			assertTrue(options.toString(), isRefutation(IntFormula.fromFormula(pigeons).toCNF(),
+    			        Files.readAllBytes(proof)));
+    			assertTrue(satisfies(sudoku, SATSolver.solve(sudoku, options.withProof(proof))));
+    		}
+
+    		SATSolver.writeDimacs(pigeons, dimacs);
+    		List<String> lines = Files.readAllLines(dimacs);
+    		assertTrue(lines.contains("p cnf 30 81"));
+    		assertEquals(30 + 1 + 81, lines.size());
+    	} finally {
+    		Files.delete(proof);
+    		Files.delete(dimacs);
+    	}
+    }
+
+    @Test
+    public void testProbing() throws Exception {
+    	Formula evil = Sudoku.fromFile(3, "samples/sudoku_evil.txt").getProblem();
+    	Formula pigeons = pigeonhole(5, CardinalityEncoding.PAIRWISE);
+    	Path proof = Files.createTempFile("proof", ".drat");
+    	try {
+    		SolverOptions dpll = new SolverOptions();
+    		long guesses = SATSolver.check(evil, dpll).getStatistics().getDecisions();
+    		for (SolverOptions options : Arrays.asList(dpll.withProbing(100000),
+    		        dpll.withProbing(100000).withProbingLevel(100), dpll.withProbing(50).withProbingLevel(3),
+    		        new SolverOptions().withAlgorithm(Algorithm.CDCL).withProbing(100000))) {
+    			SolveResult result = SATSolver.check(evil, options);
+    			assertTrue(options.toString(), satisfies(evil, result.getEnvironment()));
+    			SolverStatistics stats = result.getStatistics();
+    			assertTrue(stats.toString(), stats.getFailedLiterals() + stats.getImpliedLiterals() > 0);
+    			if (options.getProbing() > 50)
+    				assertTrue(stats.toString(), stats.getDecisions() < guesses);
+
+    			assertEquals(SolveResult.Status.UNSATISFIABLE,
+    			        SATSolver.check(pigeons, options.withProof(proof)).getStatus());
+    			assertTrue(options.toString(), isRefutation(IntFormula.fromFormula(pigeons).toCNF(),
+    			        Files.readAllBytes(proof)));
+    		}
+    	} finally {
+    		Files.delete(proof);
+    	}
+    }
+
+    @Test
+    public void testAtMostOne() throws Exception {
+    	Formula one = new Formula().addExactlyOne(new ExactlyOne(a, b, c));
+    	Formula most = new Formula().addAtMostOne(new AtMostOne(a, nb, c));
+    	assertEquals(3, SATSolver.solutions(one).count());
+    	assertEquals(4, SATSolver.solutions(most).count());
+    	assertEquals(1, most.getSize());
+    	assertEquals(2, one.getSize());
+    	assertEquals(3, most.toClauses().getSize());
+
+    	// n+1 pigeons, each in some hole, and at most one pigeon per hole
+    	Formula pigeons = pigeonhole(6, CardinalityEncoding.NATIVE);
+    	Formula given = new Formula(new Clause(b)).and(one);
+    	Formula evil = Sudoku.fromFile(3, "samples/sudoku_evil.txt").getProblem();
+    	Path proof = Files.createTempFile("proof", ".drat");
+    	try {
+    		SolverOptions cdcl = new SolverOptions().withAlgorithm(Algorithm.CDCL);
+    		for (SolverOptions options : Arrays.asList(new SolverOptions(), cdcl,
+    		        new SolverOptions().withPreprocessor(new Preprocessor()),
+    		        cdcl.withPreprocessor(new Preprocessor()).withProbing(100000))) {
+    			Environment e = SATSolver.solve(given, options);
+    			assertEquals(Bool.TRUE, e.get(b.getVariable()));
+    			assertEquals(Bool.FALSE, e.get(a.getVariable()));
+    			assertTrue(satisfies(evil, SATSolver.solve(evil, options)));
+    			assertNull(SATSolver.solve(given.addClause(new Clause(c)), options));
+
+    			assertEquals(SolveResult.Status.UNSATISFIABLE,
+    			        SATSolver.check(pigeons, options.withProof(proof)).getStatus());
+    			assertTrue(options.toString(), isRefutation(IntFormula.fromFormula(pigeons).toCNF(),
+    			        Files.readAllBytes(proof)));
+    		}
+    	} finally {
+    		Files.delete(proof);
+    	}
+
+    	IncrementalSolver solver = new IncrementalSolver();
+    	solver.add(one);
+    	assertNull(solver.solve(a, c));
+    	assertEquals(2, solver.getFailedAssumptions().size());
+    	assertEquals(Bool.FALSE, solver.solve(b).get(c.getVariable()));
+    	solver.add(new AtMostOne(na, nb));
+    	assertNull(solver.solve(c));
+
+    	// 16x16 grids are beyond pairwise clauses, but not native constraints
+    	Formula grid = new Sudoku(4).getProblem();
+    	assertEquals(2 * 4 * 256, grid.getSize());
+    	assertTrue(satisfies(grid, SATSolver.solve(grid)));
+    }
+
+    @Test
+    public void testCardinalityEncodings() throws Exception {
+    	Literal[] ls = new Literal[7];
+    	List<Variable> vars = new ArrayList<Variable>();
+    	for (int i = 0; i < ls.length; i++) {
+    		ls[i] = PosLiteral.make("x" + i);
+    		vars.add(ls[i].getVariable());
+    	}
+    	ls[3] = ls[3].getNegation();
+    	Formula evil = Sudoku.fromFile(3, "samples/sudoku_evil.txt").getProblem();
+    	for (CardinalityEncoding encoding : CardinalityEncoding.values()) {
+    		// the auxiliary variables don't add solutions over the literals
+    		Formula most = encoding.addAtMostOne(new Formula(), new AtMostOne(ls));
+    		Formula one = encoding.addExactlyOne(new Formula(), new ExactlyOne(ls));
+    		assertEquals(encoding.toString(), 8, SATSolver.solutions(most, vars).count());
+    		assertEquals(encoding.toString(), 7, SATSolver.solutions(one, vars).count());
+    		assertNull(SATSolver.solve(one.addClause(new Clause(ls[0])).addClause(new Clause(ls[6]))));
+
+    		Formula problem = Sudoku.fromFile(3, "samples/sudoku_evil.txt").getProblem(encoding);
+    		for (Algorithm algorithm : Algorithm.values()) {
+    			Environment e = SATSolver.solve(problem, new SolverOptions().withAlgorithm(algorithm));
+    			assertTrue(satisfies(evil, e));
+    		}
+    	}
+    }
+
+    @Test
+    public void testIntFormula() throws Exception {
+    	// n+1 pigeons in n holes, straight in the int encoding: variable
+    	// p*n+h is pigeon p in hole h
+    	int n = 5;
+    	int[][] clauses = new int[n + 1 + n * n * (n + 1) / 2][];
+    	int k = 0;
+    	for (int p = 0; p <= n; p++) {
+    		clauses[k] = new int[n];
+    		for (int h = 0; h < n; h++) clauses[k][h] = 2 * (p * n + h);
+    		k++;
+    	}
+    	for (int h = 0; h < n; h++)
+    		for (int p = 0; p <= n; p++)
+    			for (int q = p + 1; q <= n; q++) clauses[k++] = new int[] { 2 * (p * n + h) + 1, 2 * (q * n + h) + 1 };
+    	IntFormula pigeons = new IntFormula((n + 1) * n, clauses);
+    	for (Algorithm algorithm : Algorithm.values()) {
+    		SolverOptions options = new SolverOptions().withAlgorithm(algorithm);
+    		assertEquals(SolveResult.Status.UNSATISFIABLE, SATSolver.check(pigeons, options).getStatus());
+    		// without the clause that pigeon 0 is somewhere, they fit
+    		IntFormula fewer = new IntFormula((n + 1) * n, Arrays.copyOfRange(clauses, 1, clauses.length));
+    		SolveResult result = SATSolver.check(fewer, options);
+    		assertEquals(SolveResult.Status.SATISFIABLE, result.getStatus());
+    		int[] model = result.getModel();
+    		assertEquals((n + 1) * n, model.length);
+    		assertTrue(satisfies(fewer.toFormula(), fewer.toEnvironment(model)));
+    		assertTrue(satisfies(fewer.toFormula(), result.getEnvironment()));
+    	}
+
+    	Formula evil = Sudoku.fromFile(3, "samples/sudoku_evil.txt").getProblem();
+    	IntFormula compact = IntFormula.fromFormula(evil);
+    	SolveResult result = SATSolver.check(compact, new SolverOptions());
+    	assertTrue(satisfies(evil, compact.toEnvironment(result.getModel())));
+    	assertTrue(satisfies(compact.toFormula(), result.getEnvironment()));
+    }
+
+    @Test
+    public void testBinaryClauses() throws Exception {
+    	// a chain of implications x1 -> x2 -> ... -> xm has m+1 models
+    	int m = 8;
+    	int[][] chain = new int[m - 1][];
+    	for (int v = 0; v + 1 < m; v++) chain[v] = new int[] { 2 * v + 1, 2 * (v + 1) };
+    	assertEquals(m + 1, SATSolver.solutions(new IntFormula(m, chain).toFormula()).count());
+    	// x1 forces the whole chain, so not both x1 and ~xm
+    	int[][] closed = Arrays.copyOf(chain, m + 1);
+    	closed[m - 1] = new int[] { 0 };
+    	closed[m] = new int[] { 2 * (m - 1) + 1, 2 * (m - 1) + 1 };
+    	for (Algorithm algorithm : Algorithm.values()) {
+    		SolverOptions options = new SolverOptions().withAlgorithm(algorithm);
+    		assertEquals(SolveResult.Status.UNSATISFIABLE, SATSolver.check(new IntFormula(m, closed), options).getStatus());
+    		// a tautology leaves the chain as it was
+    		closed[m] = new int[] { 3, 2 };
+    		assertEquals(SolveResult.Status.SATISFIABLE, SATSolver.check(new IntFormula(m, closed), options).getStatus());
+    		closed[m] = new int[] { 2 * (m - 1) + 1, 2 * (m - 1) + 1 };
+    	}
+
+    	// n+1 pigeons in n holes with pairwise clauses, which are all binary
+    	Formula pigeons = pigeonhole(6, CardinalityEncoding.PAIRWISE);
+    	Formula evil = Sudoku.fromFile(3, "samples/sudoku_evil.txt").getProblem(CardinalityEncoding.PAIRWISE);
+    	Path proof = Files.createTempFile("proof", ".drat");
+    	try {
+    		for (Algorithm algorithm : Algorithm.values()) {
+    			SolverOptions options = new SolverOptions().withAlgorithm(algorithm);
+    			assertEquals(SolveResult.Status.UNSATISFIABLE,
+    			        SATSolver.check(pigeons, options.withProof(proof)).getStatus());
+    			assertTrue(options.toString(), isRefutation(IntFormula.fromFormula(pigeons).toCNF(),
+    			        Files.readAllBytes(proof)));
+    			assertTrue(satisfies(evil, SATSolver.solve(evil, options)));
+    		}
+    	} finally {
+    		Files.delete(proof);
+    	}
+
+    	// binary clauses added between solves propagate like the others
+    	IncrementalSolver solver = new IncrementalSolver();
+    	solver.add(new Formula(new Clause(a).add(b)));
+    	assertNotNull(solver.solve(na));
+    	solver.add(new Clause(nb).add(c));
+    	solver.add(new Clause(nc).add(a));
+    	assertNull(solver.solve(na));
+    	assertEquals(Bool.TRUE, solver.solve().get(a.getVariable()));
+    }
+
+    @Test
+    public void testOffHeapClauses() throws Exception {
+    	Formula evil = Sudoku.fromFile(3, "samples/sudoku_evil.txt").getProblem(CardinalityEncoding.SEQUENTIAL);
+    	for (Algorithm algorithm : Algorithm.values()) {
+    		SolverOptions options = new SolverOptions().withAlgorithm(algorithm).withOffHeapClauses(true);
+    		assertTrue(options.toString(), satisfies(evil, SATSolver.solve(evil, options)));
+    	}
+    	// CDCL makes the same search over the same clauses, wherever they are kept
+    	SolverOptions cdcl = new SolverOptions().withAlgorithm(Algorithm.CDCL).withRestarts(LubyRestarts::new);
+    	SolveResult onHeap = SATSolver.check(evil, cdcl);
+    	SolveResult offHeap = SATSolver.check(evil, cdcl.withOffHeapClauses(true));
+    	assertEquals(0, onHeap.getStatistics().getOffHeapBytes());
+    	assertTrue(offHeap.getStatistics().getOffHeapBytes() > 0);
+    	assertEquals(onHeap.getStatistics().getDecisions(), offHeap.getStatistics().getDecisions());
+    	assertArrayEquals(onHeap.getModel(), offHeap.getModel());
+
+    	// 9 pigeons in 8 holes take CDCL enough conflicts to drop learned
+    	// clauses, and compact the arena, more than once
+    	Formula pigeons = pigeonhole(8, CardinalityEncoding.NATIVE);
+    	onHeap = SATSolver.check(pigeons, cdcl);
+    	Path proof = Files.createTempFile("proof", ".drat");
+    	try {
+    		offHeap = SATSolver.check(pigeons, cdcl.withOffHeapClauses(true).withProof(proof));
+    		assertEquals(SolveResult.Status.UNSATISFIABLE, offHeap.getStatus());
+    		assertTrue(offHeap.getStatistics().getConflicts() > 5000);
+    		assertEquals(onHeap.getStatistics().getConflicts(), offHeap.getStatistics().getConflicts());
+    		assertTrue(isRefutation(IntFormula.fromFormula(pigeons).toCNF(), Files.readAllBytes(proof)));
+    	} finally {
+    		Files.delete(proof);
+    	}
+
+    	// and clauses added between solves
+    	IncrementalSolver solver = new IncrementalSolver(new SolverOptions().withOffHeapClauses(true));
+    	solver.add(new Clause(a).add(b).add(c));
+    	for (int i = 0; i < 100; i++) solver.add(new Clause(PosLiteral.make("x" + i)).add(nb).add(c));
+    	assertNotNull(solver.solve(na, nc));
+    	solver.add(new Clause(a).add(b).add(nc));
+    	solver.add(new Clause(a).add(nb).add(c));
+    	solver.add(new Clause(a).add(nb).add(nc));
+    	assertNull(solver.solve(na));
+    	assertEquals(Bool.TRUE, solver.solve().get(a.getVariable()));
+    }
+
+    /**
+     * @return true iff proof is a binary DRAT proof that clauses are
+     *         unsatisfiable: every clause it adds follows by unit propagation
+     *         from the clauses before it, or is a resolution asymmetric
+     *         tautology on its first literal, and it adds the empty clause
+     */
+    static boolean isRefutation(int[][] clauses, byte[] proof) {
+    	List<int[]> db = new ArrayList<int[]>(Arrays.asList(clauses));
+    	int i = 0;
+    	while (i < proof.length) {
+    		boolean add = proof[i++] == 'a';
+    		List<Integer> lits = new ArrayList<Integer>();
+    		for (;;) {
+    			int u = 0;
+    			for (int shift = 0;; shift += 7) {
+    				u |= (proof[i] & 0x7f) << shift;
+    				if ((proof[i++] & 0x80) == 0) break;
+    			}
+    			if (u == 0) break;
+    			lits.add(u - 2);
+    		}
+    		int[] c = new int[lits.size()];
+    		for (int k = 0; k < c.length; k++) c[k] = lits.get(k);
+    		if (!add) {
+    			int[] sorted = c.clone();
+    			Arrays.sort(sorted);
+    			for (int d = 0; d < db.size(); d++) {
+    				int[] other = db.get(d).clone();
+    				Arrays.sort(other);
+    				if (Arrays.equals(sorted, other)) {
+    					db.remove(d);
+    					break;
+    				}
+    			}
+    			continue;
+    		}
+    		if (!isRUP(db, c)) {
+    			if (c.length == 0) return false;
+    			for (int[] other : db) {
+    				if (!contains(other, c[0] ^ 1)) continue;
+    				int[] resolvent = Arrays.copyOf(c, c.length + other.length);
+    				int size = c.length;
+    				for (int l : other) {
+    					if (l != (c[0] ^ 1)) resolvent[size++] = l;
+    				}
+    				if (!isRUP(db, Arrays.copyOf(resolvent, size))) return false;
+    			}
+    		}
+    		if (c.length == 0) return true;
+    		db.add(c);
+    	}
+    	return false;
+    }
+
+    // Unit propagation from the negation of c over db, until it runs into a conflict or nothing changes.
+    private static boolean isRUP(List<int[]> db, int[] c) {
+    	Set<Integer> trueLits = new HashSet<Integer>();
+    	for (int l : c) {
+    		if (trueLits.contains(l)) return true; // c is a tautology
+    		trueLits.add(l ^ 1);
+    	}
+    	boolean changed = true;
+    	while (changed) {
+    		changed = false;
+    		for (int[] clause : db) {
+    			int free = -1, numFree = 0;
+    			boolean satisfied = false;
+    			for (int l : clause) {
+    				if (trueLits.contains(l)) satisfied = true;
+    				else if (!trueLits.contains(l ^ 1) && l != free) {
+    					free = l;
+    					numFree++;
+    				}
+    			}
+    			if (satisfied) continue;
+    			if (numFree == 0) return true;
+    			if (numFree == 1) {
+    				trueLits.add(free);
+    				changed = true;
+    			}
+    		}
+    	}
+    	return false;
+    }
+
+    private static boolean contains(int[] lits, int l) {
+    	for (int x : lits) {
+    		if (x == l) return true;
+    	}
+    	return false;
+    }
+
+    /**
+     * @return the formula saying that n+1 pigeons sit in n holes, at most one
+     *         per hole in the given encoding, which is unsatisfiable and hard
+     *         to refute by search
+     */
+    static Formula pigeonhole(int n, CardinalityEncoding encoding) {
+    	Formula f = new Formula();
+    	for (int p = 0; p <= n; p++) {
+    		Clause somewhere = new Clause();
+    		for (int h = 0; h < n; h++) somewhere = somewhere.add(PosLiteral.make("p" + p + "h" + h));
+    		f = f.addClause(somewhere);
+    	}
+    	for (int h = 0; h < n; h++) {
+    		Literal[] hole = new Literal[n + 1];
+    		for (int p = 0; p <= n; p++) hole[p] = PosLiteral.make("p" + p + "h" + h);
+    		f = encoding.addAtMostOne(f, new AtMostOne(hole));
+    	}
+    	return f;
+    }
+
+    /**
+     * @return true iff every clause of f has a literal made true by e, and
+     *         no at-most-one constraint of f has two
+     */
+    static boolean satisfies(Formula f, Environment e) {
+    	for (Clause clause : f.getClauses()) {
+    		boolean sat = false;
+    		for (Literal l : clause) {
+    			if (isTrue(l, e)) sat = true;
+    		}
+    		if (!sat) return false;
+    	}
+    	for (AtMostOne constraint : f.getAtMostOnes()) {
+    		int count = 0;
+    		for (Literal l : constraint) {
+    			if (isTrue(l, e)) count++;
+    		}
+    		if (count > 1) return false;
+    	}
+    	return true;
+    }
+
+    private static boolean isTrue(Literal l, Environment e) {
+    	Bool value = e.get(l.getVariable());
+    	if (l instanceof NegLiteral) value = value.not();
+    	return value == Bool.TRUE;
+    }
     
 
     
@@ -0,0 +1,48 @@
+package sat;
+
+/**
+ * The original branching rule of SATSolver: decide the first free literal of
+ * the unsatisfied clause with the fewest free literals. Finding that clause
+ * takes a scan over all clauses of the formula for every decision.
+ */
+public class SmallestClauseHeuristic implements BranchingHeuristic {
+    private int[][] clauses;
+
+    public void init(int numVars, int[][] clauses) {
+        this.clauses = clauses;
+    }
+
+    public int pickLiteral(Assignment assignment) {
+        int best = -1;
+        int bestSize = Integer.MAX_VALUE;
+        for (int[] lits : clauses) {
+            int free = -1;
+            int size = 0;
+            for (int l : lits) {
+                if (assignment.isTrue(l)) {
+                    size = 0;
+                    break;
+                }
+                if (!assignment.isAssigned(l >> 1)) {
+                    if (size++ == 0) free = l;
+                }
+            }
+            if (size > 0 && size < bestSize) {
+                best = free;
+                bestSize = size;
+                // Propagation leaves no unit clause, so two is the minimum.
+                if (size == 2) break;
+            }
+        }
+        return best;
+    }
+
+    public void unassigned(int v) {
+    }
+
+    public void bump(int v) {
+    }
+
+    public void decay() {
+    }
+}
@@ -0,0 +1,112 @@
+package sat;
+
+import sat.env.Environment;
+import sat.formula.IntFormula;
+
+/**
+ * The answer of a solve call that may give up before it knows: the formula
+ * is satisfiable, with a solution; it is unsatisfiable; or it is unknown,
+ * because the search hit a limit or was cancelled first. Immutable.
+ */
+public class SolveResult {
+    /**
+     * What a solve call found out about the formula.
+     */
+    public enum Status {
+        SATISFIABLE, UNSATISFIABLE, UNKNOWN
+    }
+
+    /**
+     * Why a solve call stopped without an answer.
+     */
+    public enum Reason {
+        /** the time limit of the options ran out */
+        TIME_LIMIT,
+        /** the search made as many decisions as the options allow */
+        DECISION_LIMIT,
+        /** the search ran into as many conflicts as the options allow */
+        CONFLICT_LIMIT,
+        /** the heap in use grew past the memory limit of the options */
+        MEMORY_LIMIT,
+        /** the solving thread was interrupted */
+        INTERRUPTED,
+        /** the cancellation token of the call was cancelled */
+        CANCELLED
+    }
+
+    /*
+     * Rep invariant
+     *     formula != null and model != null iff status == SATISFIABLE
+     *     reason != null iff status == UNKNOWN
+     *     statistics != null
+     * The environment is built from formula and model when first asked for,
+     * as callers of the int encoding may never need it.
+     */
+    private final Status status;
+    private final IntFormula formula;
+    private final int[] model;
+    private volatile Environment environment;
+    private final Reason reason;
+    private final SolverStatistics statistics;
+
+    private SolveResult(Status status, IntFormula formula, int[] model, Reason reason, SolverStatistics statistics) {
+        this.status = status;
+        this.formula = formula;
+        this.model = model;
+        this.reason = reason;
+        this.statistics = statistics;
+    }
+
+    static SolveResult satisfiable(IntFormula formula, int[] model, SolverStatistics statistics) {
+        return new SolveResult(Status.SATISFIABLE, formula, model, null, statistics);
+    }
+
+    static SolveResult unsatisfiable(SolverStatistics statistics) {
+        return new SolveResult(Status.UNSATISFIABLE, null, null, null, statistics);
+    }
+
+    static SolveResult unknown(Reason reason, SolverStatistics statistics) {
+        return new SolveResult(Status.UNKNOWN, null, null, reason, statistics);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return an environment for which the formula evaluates to Bool.TRUE if
+     *         the status is SATISFIABLE, otherwise null
+     */
+    public Environment getEnvironment() {
+        if (environment == null && formula != null) environment = formula.toEnvironment(model);
+        return environment;
+    }
+
+    /**
+     * @return the literals of the solution in the int encoding of the
+     *         formula solved (see IntFormula), one for every variable it binds, if
+     *         the status is SATISFIABLE, otherwise null
+     */
+    public int[] getModel() {
+        return model == null ? null : model.clone();
+    }
+
+    /**
+     * @return why the search stopped if the status is UNKNOWN, otherwise null
+     */
+    public Reason getReason() {
+        return reason;
+    }
+
+    /**
+     * @return what the solve call did to get this result
+     */
+    public SolverStatistics getStatistics() {
+        return statistics;
+    }
+
+    @Override
+    public String toString() {
+        return status + (reason == null ? "" : " (" + reason + ")");
+    }
+}
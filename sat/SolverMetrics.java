@@ -0,0 +1,194 @@
+package sat;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Totals over every solve call in the process, published as an MBean named
+ * sat:type=SolverMetrics so that they can be watched with JConsole or any
+ * other JMX client.
+ *
+ * Besides the totals, it gives rates per second of solving, and histograms
+ * of how long solve calls took and how many conflicts they had. Bucket 0 of
+ * a histogram counts the calls with a value of 0, and bucket i > 0 those
+ * with a value in [2^(i-1), 2^i); the last bucket also takes everything
+ * larger.
+ *
+ * Solve calls on any thread add to the same totals, through adders that
+ * don't contend, so recording costs nothing next to a solve.
+ */
+public final class SolverMetrics implements SolverMetricsMBean {
+    private static final int BUCKETS = 32;
+    private static final SolverMetrics INSTANCE = new SolverMetrics();
+
+    static {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE,
+                    new ObjectName("sat:type=SolverMetrics"));
+        } catch (JMException e) {
+            // Already registered by another class loader, or JMX is not
+            // available; the totals can still be read through getInstance().
+        }
+    }
+
+    private final LongAdder solves = new LongAdder();
+    private final LongAdder satisfiable = new LongAdder();
+    private final LongAdder unsatisfiable = new LongAdder();
+    private final LongAdder unknown = new LongAdder();
+    private final LongAdder decisions = new LongAdder();
+    private final LongAdder propagations = new LongAdder();
+    private final LongAdder backtracks = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder solveNanos = new LongAdder();
+    private final LongAdder propagationNanos = new LongAdder();
+    private final LongAdder branchingNanos = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+    private final AtomicLongArray solveMillisHistogram = new AtomicLongArray(BUCKETS);
+    private final AtomicLongArray conflictHistogram = new AtomicLongArray(BUCKETS);
+
+    private SolverMetrics() {
+    }
+
+    /**
+     * @return the metrics of this process
+     */
+    public static SolverMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Add the statistics of a finished solve call with the given status.
+     */
+    void record(SolverStatistics stats, SolveResult.Status status) {
+        solves.increment();
+        switch (status) {
+        case SATISFIABLE: satisfiable.increment(); break;
+        case UNSATISFIABLE: unsatisfiable.increment(); break;
+        case UNKNOWN: unknown.increment(); break;
+        }
+        decisions.add(stats.decisions);
+        propagations.add(stats.propagations);
+        backtracks.add(stats.backtracks);
+        conflicts.add(stats.conflicts);
+        solveNanos.add(stats.solveNanos);
+        propagationNanos.add(stats.propagationNanos);
+        branchingNanos.add(stats.branchingNanos);
+        if (stats.allocatedBytes > 0) allocatedBytes.add(stats.allocatedBytes);
+        solveMillisHistogram.incrementAndGet(bucket(stats.solveNanos / 1000000));
+        conflictHistogram.incrementAndGet(bucket(stats.conflicts));
+    }
+
+    // 0 for 0, otherwise one more than the index of the highest bit set.
+    private static int bucket(long value) {
+        return Math.min(64 - Long.numberOfLeadingZeros(value), BUCKETS - 1);
+    }
+
+    public long getSolves() {
+        return solves.sum();
+    }
+
+    public long getSatisfiable() {
+        return satisfiable.sum();
+    }
+
+    public long getUnsatisfiable() {
+        return unsatisfiable.sum();
+    }
+
+    public long getUnknown() {
+        return unknown.sum();
+    }
+
+    public long getDecisions() {
+        return decisions.sum();
+    }
+
+    public long getPropagations() {
+        return propagations.sum();
+    }
+
+    public long getBacktracks() {
+        return backtracks.sum();
+    }
+
+    public long getConflicts() {
+        return conflicts.sum();
+    }
+
+    public long getSolveMillis() {
+        return solveNanos.sum() / 1000000;
+    }
+
+    public long getPropagationMillis() {
+        return propagationNanos.sum() / 1000000;
+    }
+
+    public long getBranchingMillis() {
+        return branchingNanos.sum() / 1000000;
+    }
+
+    /**
+     * @return bytes allocated by solve calls, on JVMs that keep track
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes.sum();
+    }
+
+    public double getDecisionsPerSecond() {
+        return perSecond(decisions);
+    }
+
+    public double getPropagationsPerSecond() {
+        return perSecond(propagations);
+    }
+
+    public double getConflictsPerSecond() {
+        return perSecond(conflicts);
+    }
+
+    // count per second spent in solve calls, or 0 before any
+    private double perSecond(LongAdder count) {
+        long nanos = solveNanos.sum();
+        return nanos == 0 ? 0 : count.sum() * 1e9 / nanos;
+    }
+
+    public long[] getSolveMillisHistogram() {
+        return toArray(solveMillisHistogram);
+    }
+
+    public long[] getConflictHistogram() {
+        return toArray(conflictHistogram);
+    }
+
+    private static long[] toArray(AtomicLongArray histogram) {
+        long[] counts = new long[histogram.length()];
+        for (int i = 0; i < counts.length; i++) counts[i] = histogram.get(i);
+        return counts;
+    }
+
+    /**
+     * Start all totals over from 0. Solve calls recorded meanwhile may be
+     * partly lost.
+     */
+    public void reset() {
+        for (LongAdder a : new LongAdder[] { solves, satisfiable, unsatisfiable, unknown, decisions,
+                propagations, backtracks, conflicts, solveNanos, propagationNanos, branchingNanos,
+                allocatedBytes }) {
+            a.reset();
+        }
+        for (int i = 0; i < BUCKETS; i++) {
+            solveMillisHistogram.set(i, 0);
+            conflictHistogram.set(i, 0);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SolverMetrics[" + getSolves() + " solves, " + getDecisions() + " decisions, " + getConflicts()
+               + " conflicts, " + getSolveMillis() + " ms]";
+    }
+}
@@ -0,0 +1,43 @@
+package sat;
+
+/**
+ * The management interface of SolverMetrics, as seen through JMX under the
+ * name sat:type=SolverMetrics.
+ */
+public interface SolverMetricsMBean {
+    long getSolves();
+
+    long getSatisfiable();
+
+    long getUnsatisfiable();
+
+    long getUnknown();
+
+    long getDecisions();
+
+    long getPropagations();
+
+    long getBacktracks();
+
+    long getConflicts();
+
+    long getSolveMillis();
+
+    long getPropagationMillis();
+
+    long getBranchingMillis();
+
+    long getAllocatedBytes();
+
+    double getDecisionsPerSecond();
+
+    double getPropagationsPerSecond();
+
+    double getConflictsPerSecond();
+
+    long[] getSolveMillisHistogram();
+
+    long[] getConflictHistogram();
+
+    void reset();
+}
@@ -0,0 +1,418 @@
+package sat;
+
+import java.nio.file.Path;
+import java.util.function.Supplier;
+
+/**
+ * SolverOptions is an immutable set of settings for one call of
+ * SATSolver.solve. The default options reproduce SATSolver.solve(Formula);
+ * each with-method returns a copy with one setting changed, e.g.
+ * 
+ *     new SolverOptions().withAlgorithm(Algorithm.CDCL)
+ *                        .withHeuristic(VSIDSHeuristic::new)
+ */
+public class SolverOptions implements Cloneable {
+    /*
+     * Rep invariant
+     *     algorithm != null
+     *     heuristic == null means the default heuristic of the algorithm
+     *     restarts == null means the search never restarts
+     *     preprocessor == null means the clauses are searched as they are
+     *     polarity != null
+     *     0 <= randomFrequency <= 1
+     *     every limit is positive; Long.MAX_VALUE means no limit
+     *     proof == null means no proof is written
+     *     probing >= 0, probingLevel >= 0
+     */
+    private Algorithm algorithm = Algorithm.DPLL;
+    private Supplier<? extends BranchingHeuristic> heuristic;
+    private Supplier<? extends RestartPolicy> restarts;
+    private boolean phaseSaving;
+    private boolean offHeapClauses;
+    private Preprocessor preprocessor;
+    private Polarity polarity = Polarity.HEURISTIC;
+    private long seed;
+    private double randomFrequency;
+    private long timeLimit = Long.MAX_VALUE;
+    private long decisionLimit = Long.MAX_VALUE;
+    private long conflictLimit = Long.MAX_VALUE;
+    private long memoryLimit = Long.MAX_VALUE;
+    private Path proof;
+    private long probing;
+    private int probingLevel;
+
+    /**
+     * @return the default options: plain DPLL, branching on the smallest
+     *         clause, without restarts, phase saving, preprocessing,
+     *         random decisions, probing or limits, without writing a proof,
+     *         and with the clauses on the heap
+     */
+    public SolverOptions() {
+    }
+
+    /**
+     * @return options equal to this, but searching with the given algorithm
+     */
+    public SolverOptions withAlgorithm(Algorithm algorithm) {
+        assert algorithm != null : "SolverOptions.withAlgorithm(null)";
+        SolverOptions o = copy();
+        o.algorithm = algorithm;
+        return o;
+    }
+
+    /**
+     * @param heuristic
+     *            makes a fresh heuristic for each solve call, or null to go
+     *            back to the default of the algorithm: SmallestClauseHeuristic
+     *            for DPLL, VSIDSHeuristic for CDCL
+     * @return options equal to this, but branching with the given heuristic
+     */
+    public SolverOptions withHeuristic(Supplier<? extends BranchingHeuristic> heuristic) {
+        SolverOptions o = copy();
+        o.heuristic = heuristic;
+        return o;
+    }
+
+    /**
+     * Restarts only apply to CDCL, which keeps what it learned across them;
+     * DPLL ignores this setting.
+     * 
+     * @param restarts
+     *            makes a fresh restart policy for each solve call, e.g.
+     *            LubyRestarts::new, or null to never restart
+     * @return options equal to this, but restarting as the policy says
+     */
+    public SolverOptions withRestarts(Supplier<? extends RestartPolicy> restarts) {
+        SolverOptions o = copy();
+        o.restarts = restarts;
+        return o;
+    }
+
+    /**
+     * @param phaseSaving
+     *            if true, a variable that had a value before is decided
+     *            again with the polarity it had last, whatever the
+     *            heuristic suggests
+     * @return options equal to this, but with phase saving turned on or off
+     */
+    public SolverOptions withPhaseSaving(boolean phaseSaving) {
+        SolverOptions o = copy();
+        o.phaseSaving = phaseSaving;
+        return o;
+    }
+
+    /**
+     * Off the heap, the clauses of more than two literals, learned ones
+     * included, sit in one direct buffer instead of an array each, so a
+     * formula of millions of clauses adds little to the work of the garbage
+     * collector. The memory is freed as soon as a solve call returns, or
+     * for an IncrementalSolver, once the solver is collected. Propagating
+     * over the buffer is a little slower than over arrays. Portfolios and
+     * cube-and-conquer pass this on to every search.
+     * 
+     * @param offHeapClauses
+     *            if true, the solver keeps its clauses off the heap
+     * @return options equal to this, but with the clauses on or off the heap
+     */
+    public SolverOptions withOffHeapClauses(boolean offHeapClauses) {
+        SolverOptions o = copy();
+        o.offHeapClauses = offHeapClauses;
+        return o;
+    }
+
+    /**
+     * @param preprocessor
+     *            simplifies the formula before the search, or null for none
+     * @return options equal to this, but with the given preprocessor
+     */
+    public SolverOptions withPreprocessor(Preprocessor preprocessor) {
+        SolverOptions o = copy();
+        o.preprocessor = preprocessor;
+        return o;
+    }
+
+    /**
+     * With a proof file, every solve call writes a binary DRAT proof of its
+     * search into it, replacing what it held: the clauses learned and
+     * deleted by the preprocessor and the search, ending with the empty
+     * clause if the formula is unsatisfiable. A checker needs the formula
+     * too, as written by SATSolver.writeDimacs, which numbers its variables
+     * the same way. Portfolios and cube-and-conquer write no proof.
+     * 
+     * @param proof
+     *            the file to write proofs into, or null for none
+     * @return options equal to this, but with the given proof file
+     */
+    public SolverOptions withProof(Path proof) {
+        SolverOptions o = copy();
+        o.proof = proof;
+        return o;
+    }
+
+    /**
+     * @param polarity
+     *            the value decisions give their variable, unless phase saving
+     *            has one for it
+     * @return options equal to this, but deciding with the given polarity
+     */
+    public SolverOptions withPolarity(Polarity polarity) {
+        assert polarity != null : "SolverOptions.withPolarity(null)";
+        SolverOptions o = copy();
+        o.polarity = polarity;
+        return o;
+    }
+
+    /**
+     * @param seed
+     *            seed of the random numbers behind random decisions and
+     *            Polarity.RANDOM; the same seed gives the same search
+     * @return options equal to this, but with the given seed
+     */
+    public SolverOptions withSeed(long seed) {
+        SolverOptions o = copy();
+        o.seed = seed;
+        return o;
+    }
+
+    /**
+     * @param randomFrequency
+     *            fraction of the decisions made on a random variable instead
+     *            of the one the heuristic picks, between 0 (the default) and 1
+     * @return options equal to this, but with the given rate of random decisions
+     */
+    public SolverOptions withRandomFrequency(double randomFrequency) {
+        assert 0 <= randomFrequency && randomFrequency <= 1 : "SolverOptions.withRandomFrequency: " + randomFrequency;
+        SolverOptions o = copy();
+        o.randomFrequency = randomFrequency;
+        return o;
+    }
+
+    /**
+     * Probing tries out both literals of free variables before deciding:
+     * a literal whose propagation fails is replaced by its negation, and the
+     * literals implied by both are assigned, which settles many variables
+     * without a guess. It runs before the search, and DPLL runs it again on
+     * every decision level up to the probing level, where it also decides
+     * the variable whose literals imply the most, if the round covered them
+     * all. Each round spends at most the given number of propagations.
+     * 
+     * @param propagations
+     *            budget of one probing round, or 0 not to probe
+     * @return options equal to this, but with the given probing budget
+     */
+    public SolverOptions withProbing(long propagations) {
+        assert propagations >= 0 : "SolverOptions.withProbing: " + propagations;
+        SolverOptions o = copy();
+        o.probing = propagations;
+        return o;
+    }
+
+    /**
+     * @param level
+     *            deepest decision level DPLL probes on; 0 for before the
+     *            search only
+     * @return options equal to this, but with the given probing level
+     */
+    public SolverOptions withProbingLevel(int level) {
+        assert level >= 0 : "SolverOptions.withProbingLevel: " + level;
+        SolverOptions o = copy();
+        o.probingLevel = level;
+        return o;
+    }
+
+    /**
+     * @return the propagation budget of a probing round, or 0 for none
+     */
+    public long getProbing() {
+        return probing;
+    }
+
+    /**
+     * @return the deepest decision level DPLL probes on
+     */
+    public int getProbingLevel() {
+        return probingLevel;
+    }
+
+    /**
+     * A search that runs out of its limits stops with an unknown result (see
+     * SATSolver.check). The limits of these options apply to each solve call
+     * separately.
+     * 
+     * @param millis
+     *            wall-clock time a solve call may take, at least 1
+     * @return options equal to this, but with the given time limit
+     */
+    public SolverOptions withTimeLimit(long millis) {
+        assert millis > 0 : "SolverOptions.withTimeLimit: " + millis;
+        SolverOptions o = copy();
+        o.timeLimit = millis;
+        return o;
+    }
+
+    /**
+     * @param decisions
+     *            number of decisions a solve call may make, at least 1
+     * @return options equal to this, but with the given decision limit
+     */
+    public SolverOptions withDecisionLimit(long decisions) {
+        assert decisions > 0 : "SolverOptions.withDecisionLimit: " + decisions;
+        SolverOptions o = copy();
+        o.decisionLimit = decisions;
+        return o;
+    }
+
+    /**
+     * @param conflicts
+     *            number of conflicts a solve call may run into, at least 1
+     * @return options equal to this, but with the given conflict limit
+     */
+    public SolverOptions withConflictLimit(long conflicts) {
+        assert conflicts > 0 : "SolverOptions.withConflictLimit: " + conflicts;
+        SolverOptions o = copy();
+        o.conflictLimit = conflicts;
+        return o;
+    }
+
+    /**
+     * Since the heap is shared with the rest of the program, this bounds the
+     * heap in use by the whole JVM, as Runtime reports it, not just by the
+     * solver.
+     * 
+     * @param bytes
+     *            heap in use above which a solve call gives up, at least 1
+     * @return options equal to this, but with the given memory limit
+     */
+    public SolverOptions withMemoryLimit(long bytes) {
+        assert bytes > 0 : "SolverOptions.withMemoryLimit: " + bytes;
+        SolverOptions o = copy();
+        o.memoryLimit = bytes;
+        return o;
+    }
+
+    /**
+     * @return the time limit in milliseconds, or Long.MAX_VALUE for none
+     */
+    public long getTimeLimit() {
+        return timeLimit;
+    }
+
+    /**
+     * @return the decision limit, or Long.MAX_VALUE for none
+     */
+    public long getDecisionLimit() {
+        return decisionLimit;
+    }
+
+    /**
+     * @return the conflict limit, or Long.MAX_VALUE for none
+     */
+    public long getConflictLimit() {
+        return conflictLimit;
+    }
+
+    /**
+     * @return the memory limit in bytes, or Long.MAX_VALUE for none
+     */
+    public long getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    /**
+     * @return the preprocessor to run before the search, or null
+     */
+    public Preprocessor getPreprocessor() {
+        return preprocessor;
+    }
+
+    /**
+     * @return the file that solve calls write proofs into, or null
+     */
+    public Path getProof() {
+        return proof;
+    }
+
+    /**
+     * @return true iff decisions reuse the last polarity of their variable
+     */
+    public boolean isPhaseSaving() {
+        return phaseSaving;
+    }
+
+    /**
+     * @return true iff the solver keeps its clauses off the heap
+     */
+    public boolean isOffHeapClauses() {
+        return offHeapClauses;
+    }
+
+    /**
+     * @return the value decisions give their variable, without a saved phase
+     */
+    public Polarity getPolarity() {
+        return polarity;
+    }
+
+    /**
+     * @return the seed of the random decisions and polarities
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return the fraction of decisions made on a random variable
+     */
+    public double getRandomFrequency() {
+        return randomFrequency;
+    }
+
+    /**
+     * @return the search algorithm to use
+     */
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @return a fresh branching heuristic for one search
+     */
+    BranchingHeuristic newHeuristic() {
+        if (heuristic != null) return heuristic.get();
+        if (algorithm == Algorithm.CDCL) return new VSIDSHeuristic();
+        return new SmallestClauseHeuristic();
+    }
+
+    /**
+     * @return a fresh restart policy for one search, or null for none
+     */
+    RestartPolicy newRestartPolicy() {
+        return restarts == null ? null : restarts.get();
+    }
+
+    private SolverOptions copy() {
+        try {
+            return (SolverOptions) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        RestartPolicy r = newRestartPolicy();
+        return "SolverOptions[" + algorithm + ", " + newHeuristic().getClass().getSimpleName()
+               + (r == null ? "" : ", " + r.getClass().getSimpleName())
+               + (phaseSaving ? ", phase saving" : "")
+               + (offHeapClauses ? ", clauses off heap" : "")
+               + (polarity == Polarity.HEURISTIC ? "" : ", " + polarity)
+               + (randomFrequency == 0 ? "" : ", random " + randomFrequency + " seed " + seed)
+               + (preprocessor == null ? "" : ", " + preprocessor)
+               + (probing == 0 ? "" : ", probing " + probing + " up to level " + probingLevel)
+               + (proof == null ? "" : ", proof to " + proof)
+               + (timeLimit == Long.MAX_VALUE ? "" : ", " + timeLimit + " ms")
+               + (decisionLimit == Long.MAX_VALUE ? "" : ", " + decisionLimit + " decisions")
+               + (conflictLimit == Long.MAX_VALUE ? "" : ", " + conflictLimit + " conflicts")
+               + (memoryLimit == Long.MAX_VALUE ? "" : ", " + memoryLimit + " bytes") + "]";
+    }
+}
@@ -0,0 +1,172 @@
+package sat;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * What one solve call did: how many decisions, propagations, backtracks and
+ * conflicts its search went through, how deep it got, where its time went
+ * and how much memory it allocated, on the heap and off it. Statistics are filled in by the search
+ * as it runs, and are not to be changed once the solve call has returned.
+ *
+ * Counting is a field increment per event, and timing two or three reads of
+ * System.nanoTime() per decision, against the microseconds a propagation
+ * takes, so statistics are always collected.
+ */
+public class SolverStatistics {
+    long decisions;
+    long propagations;
+    long backtracks;
+    long conflicts;
+    long restarts;
+    int maxDepth;
+    long failedLiterals;
+    long impliedLiterals;
+    long propagationNanos;
+    long branchingNanos;
+    long solveNanos;
+    long allocatedBytes = -1;
+    long collectionMillis = -1;
+    long offHeapBytes;
+
+    /**
+     * @return number of literals decided, not counting assumptions
+     */
+    public long getDecisions() {
+        return decisions;
+    }
+
+    /**
+     * @return number of assigned literals whose watches were visited
+     */
+    public long getPropagations() {
+        return propagations;
+    }
+
+    /**
+     * @return number of times the search undid decisions: after a conflict
+     *         in CDCL, or to flip a decision in DPLL
+     */
+    public long getBacktracks() {
+        return backtracks;
+    }
+
+    public long getConflicts() {
+        return conflicts;
+    }
+
+    public long getRestarts() {
+        return restarts;
+    }
+
+    /**
+     * @return the highest decision level the search opened
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @return number of literals probing found to fail, so that their
+     *         negation was assigned
+     */
+    public long getFailedLiterals() {
+        return failedLiterals;
+    }
+
+    /**
+     * @return number of literals probing found implied by both literals of
+     *         a variable
+     */
+    public long getImpliedLiterals() {
+        return impliedLiterals;
+    }
+
+    /**
+     * @return nanoseconds spent in unit propagation
+     */
+    public long getPropagationNanos() {
+        return propagationNanos;
+    }
+
+    /**
+     * @return nanoseconds spent choosing decisions
+     */
+    public long getBranchingNanos() {
+        return branchingNanos;
+    }
+
+    /**
+     * @return nanoseconds the whole solve call took, preprocessing included
+     */
+    public long getSolveNanos() {
+        return solveNanos;
+    }
+
+    /**
+     * @return bytes allocated by the solving thread during the call, or -1
+     *         if the JVM cannot tell
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Since the heap is shared with the rest of the program, this is the
+     * time the JVM spent collecting garbage while the call ran, whoever
+     * made the garbage.
+     *
+     * @return milliseconds of garbage collection during the call, or -1 if
+     *         the JVM cannot tell
+     */
+    public long getCollectionMillis() {
+        return collectionMillis;
+    }
+
+    /**
+     * @return bytes the solver held off the heap for its clauses at the end
+     *         of the search, 0 with the clauses on the heap (see
+     *         SolverOptions.withOffHeapClauses)
+     */
+    public long getOffHeapBytes() {
+        return offHeapBytes;
+    }
+
+    /**
+     * @return bytes allocated so far by the current thread, or -1 if the JVM
+     *         does not keep track
+     */
+    static long threadAllocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return -1;
+        com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) threads;
+        if (!sun.isThreadAllocatedMemorySupported() || !sun.isThreadAllocatedMemoryEnabled()) return -1;
+        return sun.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * @return milliseconds all garbage collectors of the JVM have taken so
+     *         far, or -1 if none keeps track
+     */
+    static long collectionMillis() {
+        long total = -1;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            long millis = gc.getCollectionTime();
+            if (millis >= 0) total = Math.max(total, 0) + millis;
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return "SolverStatistics[" + decisions + " decisions, " + propagations + " propagations, "
+               + backtracks + " backtracks, " + conflicts + " conflicts, " + restarts + " restarts, depth "
+               + maxDepth + (failedLiterals + impliedLiterals == 0 ? "" : ", probing found " + failedLiterals
+               + " failed and " + impliedLiterals + " implied literals") + ", " + solveNanos / 1000000
+               + " ms (" + propagationNanos / 1000000 + " ms propagating, " + branchingNanos / 1000000 + " ms branching)"
+               + (allocatedBytes < 0 ? "" : ", " + allocatedBytes + " bytes allocated")
+               + (offHeapBytes == 0 ? "" : ", " + offHeapBytes + " bytes off heap")
+               + (collectionMillis < 0 ? "" : ", " + collectionMillis + " ms collecting garbage") + "]";
+    }
+}
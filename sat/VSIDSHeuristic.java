@@ -0,0 +1,48 @@
+package sat;
+
+/**
+ * Variable State Independent Decaying Sum, as in Chaff and MiniSat. Every
+ * variable has an activity, bumped whenever it takes part in a conflict;
+ * after each conflict the bump grows, so older conflicts weigh exponentially
+ * less. The most active free variable is decided true, and the activities
+ * are kept in a VariableHeap so that a decision costs O(log n).
+ */
+public class VSIDSHeuristic implements BranchingHeuristic {
+    private static final double DECAY = 0.95;
+    private static final double RESCALE_LIMIT = 1e100;
+
+    private double[] activity;
+    private double increment = 1;
+    private VariableHeap heap;
+
+    public void init(int numVars, int[][] clauses) {
+        activity = new double[numVars];
+        heap = new VariableHeap(activity);
+        for (int v = 0; v < numVars; v++) heap.insert(v);
+    }
+
+    public int pickLiteral(Assignment assignment) {
+        while (!heap.isEmpty()) {
+            int v = heap.removeMax();
+            if (!assignment.isAssigned(v)) return 2 * v;
+        }
+        return -1;
+    }
+
+    public void unassigned(int v) {
+        heap.insert(v);
+    }
+
+    public void bump(int v) {
+        if ((activity[v] += increment) > RESCALE_LIMIT) {
+            // Scaling every activity by the same factor keeps the heap order.
+            for (int i = 0; i < activity.length; i++) activity[i] /= RESCALE_LIMIT;
+            increment /= RESCALE_LIMIT;
+        }
+        heap.increased(v);
+    }
+
+    public void decay() {
+        increment /= DECAY;
+    }
+}
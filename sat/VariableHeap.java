@@ -0,0 +1,101 @@
+package sat;
+
+import java.util.Arrays;
+
+/**
+ * Indexed binary max-heap of variables, ordered by a score array that the
+ * owner updates. Because the heap knows the position of every variable, a
+ * variable can be found, re-ordered after its score increased, or inserted
+ * in O(log n).
+ */
+final class VariableHeap {
+    /*
+     * Rep invariant:
+     *   heap[0..size) holds distinct variables
+     *   position[heap[i]] == i for 0 <= i < size, position[v] == -1 otherwise
+     *   score[heap[i]] >= score[heap[2i+1]] and score[heap[2i+2]]
+     */
+    private final double[] score;
+    private final int[] heap;
+    private final int[] position;
+    private int size;
+
+    /**
+     * Make an empty heap over variables 0..score.length-1. The scores are
+     * shared, not copied.
+     */
+    VariableHeap(double[] score) {
+        this.score = score;
+        this.heap = new int[score.length];
+        this.position = new int[score.length];
+        Arrays.fill(position, -1);
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean contains(int v) {
+        return position[v] >= 0;
+    }
+
+    /**
+     * Add v, if it isn't there already.
+     */
+    void insert(int v) {
+        if (contains(v)) return;
+        heap[size] = v;
+        position[v] = size;
+        up(size++);
+    }
+
+    /**
+     * Restore the heap order after the score of v was increased.
+     */
+    void increased(int v) {
+        if (contains(v)) up(position[v]);
+    }
+
+    /**
+     * Requires: !isEmpty()
+     * @return the variable with the highest score, after removing it
+     */
+    int removeMax() {
+        int max = heap[0];
+        position[max] = -1;
+        if (--size > 0) {
+            heap[0] = heap[size];
+            position[heap[0]] = 0;
+            down(0);
+        }
+        return max;
+    }
+
+    private void up(int i) {
+        int v = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >> 1;
+            if (score[heap[parent]] >= score[v]) break;
+            heap[i] = heap[parent];
+            position[heap[i]] = i;
+            i = parent;
+        }
+        heap[i] = v;
+        position[v] = i;
+    }
+
+    private void down(int i) {
+        int v = heap[i];
+        for (;;) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && score[heap[child + 1]] > score[heap[child]]) child++;
+            if (score[heap[child]] <= score[v]) break;
+            heap[i] = heap[child];
+            position[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = v;
+        position[v] = i;
+    }
+}
@@ -5,8 +5,8 @@
  * (c) 2008, MIT and Daniel Jackson
  */
 package sat.env;
-import immutable.ImListMap;
-import immutable.ImMap;
+
+import java.util.Arrays;
 
 /**
  * An environment is an immutable mapping from variables to boolean values.
@@ -18,20 +18,42 @@ import immutable.ImMap;
  * to return a boolean value for an unbound variable. But this
  * implementation does not prevent a variable from being explicitly
  * bound to UNDEFINED.
+ * 
+ * The variables are numbered densely by an index shared with every
+ * environment derived from the same empty one, and the bindings are two
+ * bits per variable, whether it is bound to TRUE or FALSE, and to which.
+ * The bits come in fixed-size chunks, and put copies only the chunk it
+ * changes and the array of chunks, so get and put take constant time for
+ * a given number of variables, and a full assignment to the 729 variables
+ * of a 9x9 Sudoku takes a few hundred bytes.
  */
 public class Environment {
+    // variables per chunk, and words per half chunk
+    private static final int CHUNK_BITS = 256;
+    private static final int CHUNK_WORDS = CHUNK_BITS / 64;
+
     /*
      * Rep invariant
-     *     bindings != null
+     *     index != null, chunks != null
+     *     every non-null chunk has 2 * CHUNK_WORDS words
+     *     a value bit is only set if its bound bit is
+     *
+     * Abstraction function
+     *     variable index.variable(id) is bound to TRUE if bit id % CHUNK_BITS
+     *     of chunk id / CHUNK_BITS is set in both its halves, to FALSE if it
+     *     is only set in the first half, and unbound otherwise; chunks that
+     *     are null or missing have no bits set
      */
-    private ImMap <Variable, Bool> bindings;
+    private final VariableIndex index;
+    private final long[][] chunks;
 
-    private Environment(ImMap <Variable, Bool> bindings) {
-        this.bindings = bindings;
+    private Environment(VariableIndex index, long[][] chunks) {
+        this.index = index;
+        this.chunks = chunks;
     }
 
     public Environment() {
-        this (new ImListMap<Variable, Bool> ());
+        this (new VariableIndex(), new long[0][]);
     }
 
     /**
@@ -39,7 +61,24 @@ public class Environment {
      * if a binding for v already exists, overwrite it
      */
     public Environment put(Variable v, Bool b) {
-        return new Environment (bindings.put (v, b));
+        assert v != null && b != null : "Environment.put(null)";
+        int id = index.add(v);
+        int c = id / CHUNK_BITS;
+        int word = id % CHUNK_BITS / 64;
+        long bit = 1L << id;
+        long[] chunk = c < chunks.length ? chunks[c] : null;
+        long bound = chunk == null ? 0 : chunk[word];
+        long value = chunk == null ? 0 : chunk[CHUNK_WORDS + word];
+        long newBound = b == Bool.UNDEFINED ? bound & ~bit : bound | bit;
+        long newValue = b == Bool.TRUE ? value | bit : value & ~bit;
+        if (newBound == bound && newValue == value) return this;
+
+        long[][] newChunks = Arrays.copyOf(chunks, Math.max(chunks.length, c + 1));
+        long[] newChunk = chunk == null ? new long[2 * CHUNK_WORDS] : chunk.clone();
+        newChunk[word] = newBound;
+        newChunk[CHUNK_WORDS + word] = newValue;
+        newChunks[c] = newChunk;
+        return new Environment (index, newChunks);
     }
 
     /**
@@ -47,7 +86,7 @@ public class Environment {
      * if a binding for v already exists, overwrite it
      */
     public Environment putTrue(Variable v) {
-        return new Environment (bindings.put (v, Bool.TRUE));
+        return put (v, Bool.TRUE);
     }
 
     /**
@@ -55,7 +94,7 @@ public class Environment {
      * if a binding for v already exists, overwrite it
      */
     public Environment putFalse(Variable v) {
-        return new Environment (bindings.put (v, Bool.FALSE));
+        return put (v, Bool.FALSE);
     }
 
     /**
@@ -63,13 +102,32 @@ public class Environment {
      * the special UNDEFINED value if it is not bound
      */
     public Bool get(Variable v){
-        Bool b = bindings.get(v);
-        if (b==null) return Bool.UNDEFINED;
-        else return b;
+        int id = index.get(v);
+        if (id < 0 || id / CHUNK_BITS >= chunks.length) return Bool.UNDEFINED;
+        return get(id);
+    }
+
+    // the value of variable number id, which has a chunk slot
+    private Bool get(int id) {
+        long[] chunk = chunks[id / CHUNK_BITS];
+        if (chunk == null) return Bool.UNDEFINED;
+        int word = id % CHUNK_BITS / 64;
+        long bit = 1L << id;
+        if ((chunk[word] & bit) == 0) return Bool.UNDEFINED;
+        return (chunk[CHUNK_WORDS + word] & bit) != 0 ? Bool.TRUE : Bool.FALSE;
     }
 
     @Override
     public String toString () {
-        return "Environment:" + bindings;
+        StringBuilder s = new StringBuilder("Environment:[");
+        boolean first = true;
+        for (int id = 0; id < chunks.length * CHUNK_BITS; id++) {
+            Bool b = get(id);
+            if (b == Bool.UNDEFINED) continue;
+            if (!first) s.append(", ");
+            first = false;
+            s.append(index.variable(id)).append("->").append(b);
+        }
+        return s.append("]").toString();
     }
 }
@@ -0,0 +1,63 @@
+package sat.env;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class EnvironmentTest {
+    Variable a = new Variable("a");
+    Variable b = new Variable("b");
+
+    // make sure assertions are turned on!
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false;
+    }
+
+    @Test
+    public void testPutGet() {
+        Environment empty = new Environment();
+        Environment e1 = empty.putTrue(a);
+        Environment e2 = e1.putFalse(b);
+        Environment e3 = e2.putFalse(a);
+        assertEquals(Bool.UNDEFINED, empty.get(a));
+        assertEquals(Bool.TRUE, e1.get(a));
+        assertEquals(Bool.UNDEFINED, e1.get(b));
+        assertEquals(Bool.TRUE, e2.get(a));
+        assertEquals(Bool.FALSE, e2.get(b));
+        assertEquals(Bool.FALSE, e3.get(a));
+        // variables are equal by name
+        assertEquals(Bool.FALSE, e3.get(new Variable("b")));
+        assertEquals(Bool.UNDEFINED, e3.put(a, Bool.UNDEFINED).get(a));
+        assertSame(e3, e3.putFalse(a));
+        assertEquals("Environment:[a->FALSE, b->FALSE]", e3.toString());
+    }
+
+    @Test
+    public void testVersions() {
+        // versions branching off the same environment keep their own bindings
+        Environment base = new Environment().putTrue(a);
+        Environment left = base;
+        Environment right = base;
+        for (int i = 0; i < 1000; i++) {
+            left = left.putTrue(new Variable("x" + i));
+            right = right.putFalse(new Variable("x" + (999 - i)));
+        }
+        for (int i = 0; i < 1000; i++) {
+            Variable x = new Variable("x" + i);
+            assertEquals(Bool.TRUE, left.get(x));
+            assertEquals(Bool.FALSE, right.get(x));
+            assertEquals(Bool.UNDEFINED, base.get(x));
+        }
+        assertEquals(Bool.TRUE, right.get(a));
+    }
+
+    @Test
+    public void testLarge() {
+        Environment e = new Environment();
+        int n = 100000;
+        for (int i = 0; i < n; i++) e = e.put(new Variable("v" + i), i % 3 == 0 ? Bool.TRUE : Bool.FALSE);
+        for (int i = 0; i < n; i++)
+            assertEquals(i % 3 == 0 ? Bool.TRUE : Bool.FALSE, e.get(new Variable("v" + i)));
+    }
+}
@@ -43,4 +43,12 @@ public class Variable {
         Variable v = (Variable) o;
         return v.name.equals(name); 
     }
+
+    /**
+     * @return hash code of the name, so that equal variables have equal
+     * hash codes
+     */
+    public int hashCode () {
+        return name.hashCode();
+    }
 }
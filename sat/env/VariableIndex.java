@@ -0,0 +1,55 @@
+package sat.env;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Numbers variables densely from 0, in order of first use, for the bitsets
+ * of an Environment. An index only ever grows, and is shared by all the
+ * environments derived from the same empty one, so a variable keeps its
+ * number in every version. Safe to use from any number of threads.
+ */
+final class VariableIndex {
+    private final ConcurrentHashMap<Variable, Integer> ids = new ConcurrentHashMap<Variable, Integer>();
+    private volatile Variable[] variables = new Variable[64];
+    /*
+     * Rep invariant:
+     *     ids maps variables[i] to i for each i < ids.size(), and nothing else
+     */
+
+    /**
+     * @return the number of v, or -1 if it has none yet
+     */
+    int get(Variable v) {
+        Integer id = ids.get(v);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @return the number of v, given the next free one if it has none yet
+     */
+    int add(Variable v) {
+        Integer id = ids.get(v);
+        if (id != null) return id;
+        synchronized (this) {
+            id = ids.get(v);
+            if (id != null) return id;
+            int n = ids.size();
+            Variable[] vs = variables;
+            if (n == vs.length) vs = Arrays.copyOf(vs, 2 * n);
+            vs[n] = v;
+            // publish the variable before its number, so variable(n) finds it
+            variables = vs;
+            ids.put(v, n);
+            return n;
+        }
+    }
+
+    /**
+     * Requires: id was returned by add()
+     * @return the variable numbered id
+     */
+    Variable variable(int id) {
+        return variables[id];
+    }
+}
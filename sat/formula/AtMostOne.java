@@ -0,0 +1,85 @@
+package sat.formula;
+
+import immutable.EmptyImList;
+import immutable.ImList;
+
+import java.util.Iterator;
+
+/**
+ * An immutable constraint that at most one of a set of literals is true.
+ *
+ * In CNF it takes a clause (~a | ~b) for every pair of its literals, which is
+ * quadratic in its size; a Formula keeps it whole instead, and the solver
+ * propagates it as a single constraint: once one of its literals is true,
+ * all the others are made false.
+ */
+public class AtMostOne implements Iterable<Literal> {
+    private final ImList<Literal> literals;
+    /*
+     * Rep invariant:
+     *     literals is non null but may be empty
+     *     contains no duplicate literals
+     *     contains no null elements
+     *
+     * Abstraction function:
+     *     The list of literals l1,l2,...,ln represents the constraint that
+     *     at most one of l1,l2,...,ln is true.
+     */
+
+    void checkRep() {
+        try {
+            assert false;
+        } catch (AssertionError e) {
+            for (ImList<Literal> ls = literals; !ls.isEmpty(); ls = ls.rest()) {
+                assert ls.first() != null : "AtMostOne, Rep invariant: no null elements";
+                assert !ls.rest().contains(ls.first()) : "AtMostOne, Rep invariant: no dupes";
+            }
+        }
+    }
+
+    /**
+     * Requires: literals are non-null and distinct
+     * @return the constraint that at most one of literals is true
+     */
+    public AtMostOne(Literal... literals) {
+        ImList<Literal> ls = new EmptyImList<Literal>();
+        for (int i = literals.length - 1; i >= 0; i--) ls = ls.add(literals[i]);
+        this.literals = ls;
+        checkRep();
+    }
+
+    /**
+     * @return number of literals in this constraint
+     */
+    public int size() {
+        return literals.size();
+    }
+
+    /**
+     * @return the literals of this constraint, in the order given
+     */
+    public Iterator<Literal> iterator() {
+        return literals.iterator();
+    }
+
+    /**
+     * @return the clauses (~a | ~b) of every pair a, b of literals of this,
+     *         which together say the same
+     */
+    public ImList<Clause> toClauses() {
+        ImList<Clause> clauses = new EmptyImList<Clause>();
+        for (ImList<Literal> ls = literals; !ls.isEmpty(); ls = ls.rest()) {
+            Clause first = new Clause(ls.first().getNegation());
+            for (Literal l : ls.rest()) {
+                Clause pair = first.add(l.getNegation());
+                // a literal and its negation can't both be true anyway
+                if (pair != null) clauses = clauses.add(pair);
+            }
+        }
+        return clauses;
+    }
+
+    public String toString() {
+        return "AtMostOne" + literals;
+    }
+}
@@ -0,0 +1,155 @@
+package sat.formula;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ways of bringing the disjunction or negation of formulas back into
+ * conjunctive normal form, for Formula.or() and Formula.not().
+ *
+ * DISTRIBUTIVE: the distributive law, which gives an equivalent formula
+ * over the same variables, but of the product of the clause counts: or()
+ * of m and n clauses has mn clauses, and not() of n clauses of k literals
+ * has k^n.
+ *
+ * TSEITIN: the transformation of Tseitin. Each side of or() with more than
+ * one clause gets a fresh variable x defined as equivalent to it: x implies
+ * each clause c of the side, and (the conjunction of the clauses) implies
+ * x, with a fresh variable d equivalent to each clause c of more than one
+ * literal; the result is the clause of those variables, together with the
+ * definitions. not() of clauses c1,...,cn gives the clause of a variable
+ * equivalent to the negation of each ci. Either way the number of clauses
+ * is linear in the size of the formulas.
+ *
+ * PLAISTED_GREENBAUM: the transformation of Plaisted and Greenbaum, which
+ * is that of Tseitin with only the half of each definition that the
+ * result needs, since the fresh variables only occur positively in it: x
+ * implies the side, but not the other way round. It has fewer clauses,
+ * about the size of the formulas plus one.
+ *
+ * The formulas of TSEITIN and PLAISTED_GREENBAUM are not equivalent to the
+ * disjunction or negation, since they have variables of their own, but
+ * their models are exactly the models of the disjunction or negation,
+ * extended to the fresh variables: every model of one extends, and the
+ * solutions of the result projected on the variables of the formulas are
+ * those of the distributive form. Under TSEITIN each extends in just one
+ * way, as long as the formulas have no fresh variables of their own.
+ *
+ * Fresh variables are named after the transformation and a number,
+ * starting with an underscore, e.g. _pg42. Since they are existentially
+ * quantified, a formula that has some should not be negated again: the
+ * negation of the result of TSEITIN or PLAISTED_GREENBAUM is not the
+ * formula it came from.
+ *
+ * At-most-one constraints are turned into their pairwise clauses first.
+ */
+public enum CNFTransformation {
+    DISTRIBUTIVE("dist"), TSEITIN("ts"), PLAISTED_GREENBAUM("pg");
+
+    // numbers the fresh variables of all transformations
+    private static final AtomicInteger fresh = new AtomicInteger();
+
+    private final String prefix;
+
+    private CNFTransformation(String name) {
+        this.prefix = "_" + name;
+    }
+
+    /**
+     * @return a formula in conjunctive normal form for the disjunction of f
+     *         and g, by this transformation
+     */
+    public Formula or(Formula f, Formula g) {
+        if (this == DISTRIBUTIVE) return f.or(g);
+        Formula left = f.toClauses();
+        Formula right = g.toClauses();
+        // true on either side makes the disjunction true
+        if (left.getSize() == 0 || right.getSize() == 0) return new Formula();
+        Formula result = new Formula();
+        Clause top = new Clause();
+        for (Formula side : new Formula[] { left, right }) {
+            if (side.getSize() == 1) {
+                top = top.merge(side.getClauses().first());
+                if (top == null) return new Formula();
+            } else {
+                Literal x = freshLiteral();
+                result = define(result, x, side);
+                top = top.add(x);
+            }
+        }
+        return result.addClause(top);
+    }
+
+    /**
+     * @return a formula in conjunctive normal form for the negation of f, by
+     *         this transformation
+     */
+    public Formula not(Formula f) {
+        if (this == DISTRIBUTIVE) return f.not();
+        Formula clauses = f.toClauses();
+        // the negation of true is false, and of one clause, its literals negated
+        if (clauses.getSize() == 0) return new Formula(new Clause());
+        if (clauses.getSize() == 1) return negated(clauses.getClauses().first());
+        Formula result = new Formula();
+        Clause top = new Clause();
+        for (Clause c : clauses.getClauses()) {
+            // a false clause makes the negation true
+            if (c.isEmpty()) return new Formula();
+            Literal d;
+            if (c.isUnit()) {
+                d = c.chooseLiteral().getNegation();
+            } else {
+                // d implies the negation of every literal of c
+                d = freshLiteral();
+                for (Literal l : c) result = result.addClause(new Clause(d.getNegation()).add(l.getNegation()));
+                if (this == TSEITIN) result = result.addClause(c.add(d));
+            }
+            top = top.add(d);
+            if (top == null) return new Formula();
+        }
+        return result.addClause(top);
+    }
+
+    // the units of the negated literals of c
+    private static Formula negated(Clause c) {
+        Formula result = new Formula();
+        for (Literal l : c) result = result.addClause(new Clause(l.getNegation()));
+        return result;
+    }
+
+    /*
+     * f with clauses added saying that x implies the conjunction of the
+     * clauses of side, and for TSEITIN, that the conjunction implies x
+     * (unless it can't hold, when two of its units clash).
+     * Requires: x is fresh, and side is clauses only
+     */
+    private Formula define(Formula f, Literal x, Formula side) {
+        Clause back = new Clause(x);
+        for (Clause c : side.getClauses()) {
+            f = f.addClause(c.add(x.getNegation()));
+            if (this != TSEITIN) continue;
+            Literal d;
+            if (c.isUnit()) {
+                d = c.chooseLiteral();
+            } else {
+                d = freshLiteral();
+                f = define(f, d, c);
+            }
+            if (back != null) back = back.add(d.getNegation());
+        }
+        return this == TSEITIN && back != null ? f.addClause(back) : f;
+    }
+
+    /*
+     * f with clauses added saying that x is equivalent to c.
+     * Requires: x is fresh
+     */
+    private static Formula define(Formula f, Literal x, Clause c) {
+        f = f.addClause(c.add(x.getNegation()));
+        for (Literal l : c) f = f.addClause(new Clause(l.getNegation()).add(x));
+        return f;
+    }
+
+    private Literal freshLiteral() {
+        return PosLiteral.make(prefix + fresh.incrementAndGet());
+    }
+}
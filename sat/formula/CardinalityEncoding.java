@@ -0,0 +1,245 @@
+package sat.formula;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ways of adding an at-most-one or exactly-one constraint to a Formula.
+ *
+ * NATIVE keeps the constraint whole, for the solver to propagate as such.
+ * The others write it out as clauses, some with auxiliary variables; which
+ * one does best depends on the solver and the size of the constraint. Over
+ * n literals:
+ *
+ * PAIRWISE: the clause (~a | ~b) for each pair, n(n-1)/2 clauses and no
+ * auxiliary variables.
+ *
+ * SEQUENTIAL: the sequential counter of Sinz, with auxiliary variable s_i
+ * true if one of the first i literals is; 3n-4 clauses, n-1 variables.
+ *
+ * COMMANDER: the commander encoding of Klieber and Kwon. The literals are
+ * split into groups of three, each group pairwise at most one, and each
+ * literal implies the commander variable of its group; at most one of the
+ * commanders is then encoded the same way, until few enough are left to
+ * take pairwise. About 3n clauses and n/2 variables.
+ *
+ * PRODUCT: the product encoding of Chen. The literals are laid out in a
+ * grid of about sqrt(n) by sqrt(n), each implying a variable for its row
+ * and one for its column, and at most one row and one column variable are
+ * true, recursively. About 2n clauses and 2 sqrt(n) variables.
+ *
+ * BIMANDER: the bimander encoding of Holldobler and Nguyen. The literals are
+ * split into groups of two, each pairwise at most one, and every literal of
+ * group i implies the binary code of i over log2(n/2) auxiliary variables.
+ * About n log2(n) / 2 clauses.
+ *
+ * Auxiliary variables are named after the encoding and a number, starting
+ * with an underscore, e.g. _seq42; they are fresh for every call, and
+ * constraints of other formulas must not use such names.
+ */
+public enum CardinalityEncoding {
+    NATIVE("native"), PAIRWISE("pair"), SEQUENTIAL("seq"), COMMANDER("cmd"), PRODUCT("prod"), BIMANDER("bim");
+
+    // numbers the auxiliary variables of all encodings
+    private static final AtomicInteger fresh = new AtomicInteger();
+    // constraints up to this size are taken pairwise by the recursive encodings
+    private static final int PAIRWISE_LIMIT = 4;
+    private static final int COMMANDER_GROUP = 3;
+
+    private final String prefix;
+
+    private CardinalityEncoding(String name) {
+        this.prefix = "_" + name;
+    }
+
+    /**
+     * @return formula with constraint added, in this encoding
+     */
+    public Formula addAtMostOne(Formula formula, AtMostOne constraint) {
+        if (this == NATIVE) return formula.addAtMostOne(constraint);
+        FormulaTarget target = new FormulaTarget(formula, constraint);
+        atMostOne(target, target.given());
+        return target.formula;
+    }
+
+    /**
+     * @return formula with constraint added: its at-least-one clause, and its
+     *         at-most-one constraint in this encoding
+     */
+    public Formula addExactlyOne(Formula formula, ExactlyOne constraint) {
+        if (this == NATIVE) return formula.addExactlyOne(constraint);
+        return addAtMostOne(formula.addClause(constraint.getAtLeastOne()), constraint.getAtMostOne());
+    }
+
+    /**
+     * Add the constraint that at most one of lits is true to builder, in
+     * this encoding.
+     * Requires: lits are distinct literals of builder
+     */
+    public void addAtMostOne(FormulaBuilder builder, int... lits) {
+        if (this == NATIVE) builder.addAtMostOne(lits);
+        else atMostOne(new BuilderTarget(builder), lits);
+    }
+
+    /**
+     * Add the constraint that exactly one of lits is true to builder: its
+     * at-least-one clause, and its at-most-one constraint in this encoding.
+     * Requires: lits are distinct literals of builder
+     */
+    public void addExactlyOne(FormulaBuilder builder, int... lits) {
+        builder.addClause(lits);
+        addAtMostOne(builder, lits);
+    }
+
+    /*
+     * Where the clauses of an encoding go. Literals are ints, negated by
+     * l^1, as in IntFormula.
+     */
+    private interface Target {
+        // positive literal of a fresh variable of the given name
+        int fresh(String name);
+
+        // add the clause (a | b), unless it is a tautology
+        void clause(int a, int b);
+    }
+
+    private static final class BuilderTarget implements Target {
+        private final FormulaBuilder builder;
+
+        BuilderTarget(FormulaBuilder builder) {
+            this.builder = builder;
+        }
+
+        public int fresh(String name) {
+            return builder.literal(PosLiteral.make(name));
+        }
+
+        public void clause(int a, int b) {
+            builder.addClause(a, b);
+        }
+    }
+
+    /*
+     * Adds clauses to a Formula. Literal 2i stands for the i-th literal
+     * of the constraint, or of the fresh ones after it, and 2i+1 for its
+     * negation.
+     */
+    private static final class FormulaTarget implements Target {
+        Formula formula;
+        private Literal[] literals = new Literal[16];
+        private int size;
+        private final int numGiven;
+
+        FormulaTarget(Formula formula, AtMostOne constraint) {
+            this.formula = formula;
+            for (Literal l : constraint) add(l);
+            numGiven = size;
+        }
+
+        // the literals of the constraint
+        int[] given() {
+            int[] lits = new int[numGiven];
+            for (int i = 0; i < numGiven; i++) lits[i] = 2 * i;
+            return lits;
+        }
+
+        private int add(Literal l) {
+            if (size == literals.length) literals = Arrays.copyOf(literals, 2 * size);
+            literals[size] = l;
+            return 2 * size++;
+        }
+
+        private Literal literal(int l) {
+            Literal pos = literals[l >> 1];
+            return (l & 1) == 0 ? pos : pos.getNegation();
+        }
+
+        public int fresh(String name) {
+            return add(PosLiteral.make(name));
+        }
+
+        public void clause(int a, int b) {
+            Clause c = new Clause(literal(a)).add(literal(b));
+            if (c != null) formula = formula.addClause(c);
+        }
+    }
+
+    private void atMostOne(Target t, int[] lits) {
+        if (lits.length <= 1) return;
+        switch (this) {
+        case SEQUENTIAL: sequential(t, lits); break;
+        case COMMANDER: commander(t, lits); break;
+        case PRODUCT: product(t, lits); break;
+        case BIMANDER: bimander(t, lits); break;
+        default: pairwise(t, lits);
+        }
+    }
+
+    private static void pairwise(Target t, int[] lits) {
+        for (int i = 0; i < lits.length; i++) {
+            for (int j = i + 1; j < lits.length; j++) t.clause(lits[i] ^ 1, lits[j] ^ 1);
+        }
+    }
+
+    private void sequential(Target t, int[] lits) {
+        int n = lits.length;
+        int[] s = auxiliary(t, n - 1);
+        t.clause(lits[0] ^ 1, s[0]);
+        for (int i = 1; i < n - 1; i++) {
+            t.clause(lits[i] ^ 1, s[i]);
+            t.clause(s[i - 1] ^ 1, s[i]);
+            t.clause(lits[i] ^ 1, s[i - 1] ^ 1);
+        }
+        t.clause(lits[n - 1] ^ 1, s[n - 2] ^ 1);
+    }
+
+    private void commander(Target t, int[] lits) {
+        if (lits.length <= PAIRWISE_LIMIT) {
+            pairwise(t, lits);
+            return;
+        }
+        int groups = (lits.length + COMMANDER_GROUP - 1) / COMMANDER_GROUP;
+        int[] commanders = auxiliary(t, groups);
+        for (int g = 0; g < groups; g++) {
+            int[] group = Arrays.copyOfRange(lits, g * COMMANDER_GROUP, Math.min(lits.length, (g + 1) * COMMANDER_GROUP));
+            pairwise(t, group);
+            for (int l : group) t.clause(l ^ 1, commanders[g]);
+        }
+        commander(t, commanders);
+    }
+
+    private void product(Target t, int[] lits) {
+        if (lits.length <= PAIRWISE_LIMIT) {
+            pairwise(t, lits);
+            return;
+        }
+        int rows = (int) Math.ceil(Math.sqrt(lits.length));
+        int columns = (lits.length + rows - 1) / rows;
+        int[] u = auxiliary(t, rows);
+        int[] v = auxiliary(t, columns);
+        for (int i = 0; i < lits.length; i++) {
+            t.clause(lits[i] ^ 1, u[i / columns]);
+            t.clause(lits[i] ^ 1, v[i % columns]);
+        }
+        product(t, u);
+        product(t, v);
+    }
+
+    private void bimander(Target t, int[] lits) {
+        int groups = (lits.length + 1) / 2;
+        int bits = 32 - Integer.numberOfLeadingZeros(groups - 1);
+        int[] b = auxiliary(t, bits);
+        for (int i = 0; i < lits.length; i++) {
+            int g = i / 2;
+            if (i % 2 == 1) t.clause(lits[i - 1] ^ 1, lits[i] ^ 1);
+            for (int j = 0; j < bits; j++) t.clause(lits[i] ^ 1, (g >> j & 1) == 1 ? b[j] : b[j] ^ 1);
+        }
+    }
+
+    // n fresh auxiliary variables, as positive literals
+    private int[] auxiliary(Target t, int n) {
+        int[] aux = new int[n];
+        for (int i = 0; i < n; i++) aux[i] = t.fresh(prefix + fresh.incrementAndGet());
+        return aux;
+    }
+}
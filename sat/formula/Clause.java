@@ -57,7 +57,9 @@ public class Clause implements Iterable<Literal> {
         }        
     }
 
-    private Clause(ImList<Literal> literals) {
+    // Requires: literals meet the rep invariant; for FormulaBuilder, which
+    // makes sure of that without the scans of add()
+    Clause(ImList<Literal> literals) {
         this.literals = literals;
         checkRep();
     }
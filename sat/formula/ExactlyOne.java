@@ -0,0 +1,72 @@
+package sat.formula;
+
+import java.util.Iterator;
+
+/**
+ * An immutable constraint that exactly one of a set of literals is true: the
+ * clause that at least one of them is, together with the AtMostOne
+ * constraint over them.
+ */
+public class ExactlyOne implements Iterable<Literal> {
+    private final Clause atLeastOne;
+    private final AtMostOne atMostOne;
+    /*
+     * Rep invariant:
+     *     atLeastOne and atMostOne are non null and have the same literals
+     *
+     * Abstraction function:
+     *     The constraint that exactly one literal of atMostOne is true.
+     */
+
+    void checkRep() {
+        assert atLeastOne != null && atMostOne != null : "ExactlyOne, Rep invariant: non-null";
+        assert atLeastOne.size() == atMostOne.size() : "ExactlyOne, Rep invariant: same literals";
+    }
+
+    /**
+     * Requires: literals are non-null and distinct, and contain no literal
+     * together with its negation
+     * @return the constraint that exactly one of literals is true
+     */
+    public ExactlyOne(Literal... literals) {
+        Clause clause = new Clause();
+        for (Literal l : literals) clause = clause.add(l);
+        this.atLeastOne = clause;
+        this.atMostOne = new AtMostOne(literals);
+        checkRep();
+    }
+
+    /**
+     * @return the clause that at least one literal of this is true
+     */
+    public Clause getAtLeastOne() {
+        return atLeastOne;
+    }
+
+    /**
+     * @return the constraint that at most one literal of this is true
+     */
+    public AtMostOne getAtMostOne() {
+        return atMostOne;
+    }
+
+    /**
+     * @return number of literals in this constraint
+     */
+    public int size() {
+        return atMostOne.size();
+    }
+
+    /**
+     * @return the literals of this constraint, in the order given
+     */
+    public Iterator<Literal> iterator() {
+        return atMostOne.iterator();
+    }
+
+    public String toString() {
+        String result = "";
+        for (Literal l : atMostOne) result += (result.isEmpty() ? "" : ", ") + l;
+        return "ExactlyOne[" + result + "]";
+    }
+}
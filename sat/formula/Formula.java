@@ -19,12 +19,22 @@ import sat.env.Variable;
  * Literal is abstracted into PosLiteral and NegLiteral, and is akin to variables like x1' or x2.
  * It's similar to a "system of equations" in algebra, where we're solving for the variables.
  * Only, the variables are all either true or false.
+ *
+ * Besides its clauses, a formula may hold AtMostOne constraints, also ANDed
+ * in. They say what their pairwise clauses would, without the quadratic
+ * number of clauses; addExactlyOne() adds one together with its
+ * at-least-one clause.
  */
 public class Formula {
     private final ImList<Clause> clauses;
+    private final ImList<AtMostOne> atMostOnes;
     // Rep invariant:
-    //      clauses != null
-    //      clauses contains no null elements (ensured by spec of ImList)
+    //      clauses != null, atMostOnes != null
+    //      clauses and atMostOnes contain no null elements (ensured by spec of ImList)
+    //
+    // The lists made here are VectorImLists, which keep thousands of clauses
+    // in a few arrays; a clause has few literals, for which a plain list does
+    // better.
     //
     // Note: although a formula is intended to be a set,  
     // the list may include duplicate clauses without any problems. 
@@ -37,9 +47,12 @@ public class Formula {
     //        
     //        For example, if the list contains the two clauses (a,b) and (!c,d), then the
     //        corresponding formula is (a or b) and (!c or d).
+    //        Each at-most-one constraint a1,...,am of atMostOnes is ANDed in as
+    //        well, as the conjunction of (!ai or !aj) for all i < j.
 
     void checkRep() {
         assert this.clauses != null : "SATProblem, Rep invariant: clauses non-null";
+        assert this.atMostOnes != null : "SATProblem, Rep invariant: atMostOnes non-null";
     }
 
     /**
@@ -49,8 +62,7 @@ public class Formula {
      * @return the true problem
      */
     public Formula() {
-    	clauses = new EmptyImList<Clause>();
-    	checkRep();
+    	this(new VectorImList<Clause>());
     }
 
     /**
@@ -60,8 +72,7 @@ public class Formula {
      * @return the problem with a single clause containing the literal l
      */
     public Formula(Variable l) {
-    	clauses = new NonEmptyImList<Clause>(new Clause(PosLiteral.make(l)));
-    	checkRep();
+    	this(new Clause(PosLiteral.make(l)));
     }
 
     /**
@@ -70,12 +81,17 @@ public class Formula {
      * @return the problem with a single clause c
      */
     public Formula(Clause c) {
-    	clauses = new NonEmptyImList<Clause>(c);
-    	checkRep();
+    	this(new VectorImList<Clause>().add(c));
     }
 
     public Formula(ImList<Clause> c) {
+        this(c, new VectorImList<AtMostOne>());
+    }
+
+    // also for FormulaBuilder, which makes both lists in one go
+    Formula(ImList<Clause> c, ImList<AtMostOne> a) {
         clauses = c;
+        atMostOnes = a;
         checkRep();
     }
 
@@ -86,7 +102,26 @@ public class Formula {
      * @return a new problem with the clauses of this, but c added
      */
     public Formula addClause(Clause c) {
-    	return new Formula(clauses.add(c));
+    	return new Formula(clauses.add(c), atMostOnes);
+    }
+
+    /**
+     * Add an at-most-one constraint to this problem
+     * 
+     * @return a new problem with the constraints of this, but a added
+     */
+    public Formula addAtMostOne(AtMostOne a) {
+    	return new Formula(clauses, atMostOnes.add(a));
+    }
+
+    /**
+     * Add an exactly-one constraint to this problem, as its at-least-one
+     * clause and its at-most-one constraint
+     * 
+     * @return a new problem with the constraints of this, but e added
+     */
+    public Formula addExactlyOne(ExactlyOne e) {
+    	return new Formula(clauses.add(e.getAtLeastOne()), atMostOnes.add(e.getAtMostOne()));
     }
 
 	/**
@@ -98,6 +133,26 @@ public class Formula {
     	return clauses;
     }
 
+    /**
+     * Get the at-most-one constraints of the formula.
+     * 
+     * @return list of constraints
+     */
+    public ImList<AtMostOne> getAtMostOnes() {
+    	return atMostOnes;
+    }
+
+    /**
+     * @return an equivalent formula of clauses only: the clauses of this,
+     *         and the pairwise clauses of its at-most-one constraints
+     */
+    public Formula toClauses() {
+    	ImList<Clause> result = clauses;
+    	for (AtMostOne a : atMostOnes)
+    		for (Clause c : a.toClauses()) result = result.add(c);
+    	return new Formula(result);
+    }
+
     /**
      * Iterator over clauses
      * 
@@ -120,8 +175,10 @@ public class Formula {
     	{
     		resultList = resultList.add(list.next());
     	}
+    	ImList<AtMostOne> constraints = atMostOnes;
+    	for (AtMostOne a : p.atMostOnes) constraints = constraints.add(a);
     	
-    	return new Formula(resultList);
+    	return new Formula(resultList, constraints);
     }
 
     /**
@@ -132,10 +189,14 @@ public class Formula {
      * result Formula3 will be (x1 | y1) & (x1 | y2) & (x2 | y1) & (x2 | y2)
 	 * or in terms of Clauses, (x1,y1) & (x1,y2) & (x2,y1) & (x2,y2).
 	 * NOTE: I corrected this comment after some research. They were WRONG! =)
+	 * At-most-one constraints are turned into their pairwise clauses first.
+	 * The result has a clause for every pair of clauses, less the
+	 * tautologies; see or(p, transformation) for a linear one.
      * @return a new problem corresponding to the disjunction of this and p
      */
     public Formula or(Formula p) {
-    	ImList<Clause> returnList = new EmptyImList<Clause>();
+    	if (!atMostOnes.isEmpty() || !p.atMostOnes.isEmpty()) return toClauses().or(p.toClauses());
+    	ImList<Clause> returnList = new VectorImList<Clause>();
     	Clause left;
     	Iterator<Clause> list1 = this.clauses.iterator();
     	while(list1.hasNext())
@@ -145,10 +206,10 @@ public class Formula {
     		while(list2.hasNext())
     		{
     			Clause right = list2.next();
-    			Clause tempClause;
-    			tempClause = left.merge(right);
-    			if(tempClause.isEmpty()) return null;
-    			else returnList = returnList.add(tempClause);
+    			// A pair with complementary literals merges to null: that
+    			// clause is always true, so it is left out.
+    			Clause tempClause = left.merge(right);
+    			if(tempClause != null) returnList = returnList.add(tempClause);
     		}
     		
     	}
@@ -156,6 +217,18 @@ public class Formula {
     }
 
     /**
+     * ORs two formulas, brought back to CNF by the given transformation,
+     * which may add variables of its own; see CNFTransformation.
+     * @return a new problem whose models are those of the disjunction of
+     *         this and p
+     */
+    public Formula or(Formula p, CNFTransformation transformation) {
+    	return transformation.or(this, p);
+    }
+
+    /**
+     * The result has up to a clause for every way of picking a literal from
+     * each clause; see not(transformation) for a linear one.
      * @return a new problem corresponding to the negation of this
      */
     public Formula not() {
@@ -167,6 +240,9 @@ public class Formula {
         //                       => (!a & !b) | !c            (moving negation down to the literals)
         //                       => (!a | !c) & (!b | !c)    (conjunctive normal form)
     	checkRep();
+    	if (!atMostOnes.isEmpty()) return toClauses().not();
+    	// The negation of the true problem is the empty clause.
+    	if (clauses.isEmpty()) return new Formula(new Clause());
     	Iterator<Clause> list1 = this.clauses.iterator();
     	Formula result = new Formula();
 
@@ -193,12 +269,22 @@ public class Formula {
    		return result;    	
     }
 
+    /**
+     * Negates this formula, brought back to CNF by the given
+     * transformation, which may add variables of its own; see
+     * CNFTransformation.
+     * @return a new problem whose models are those of the negation of this
+     */
+    public Formula not(CNFTransformation transformation) {
+    	return transformation.not(this);
+    }
+
     /**
      * 
-     * @return number of clauses in this
+     * @return number of clauses and at-most-one constraints in this
      */
     public int getSize() {
-    	return clauses.size();
+    	return clauses.size() + atMostOnes.size();
     }
 
     /**
@@ -208,6 +294,8 @@ public class Formula {
         String result = "Problem[";
         for (Clause c : clauses)
             result += "\n" + c;
+        for (AtMostOne a : atMostOnes)
+            result += "\n" + a;
         return result + "]";
     }
 }
@@ -0,0 +1,250 @@
+package sat.formula;
+
+import immutable.EmptyImList;
+import immutable.ImList;
+import immutable.VectorImList;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import sat.env.Variable;
+
+/**
+ * A mutable builder for big formulas. Clauses and at-most-one constraints
+ * are added as ints, in the encoding of IntFormula, to growable arrays, and
+ * the whole lot is turned into an IntFormula or a Formula in one step at the
+ * end.
+ *
+ * Building a formula with Formula.addClause makes a new Formula for every
+ * clause, and Clause.add scans the clause for every literal it adds; here
+ * adding a clause only copies its ints. Variables are numbered in order of
+ * first use, by variable() or literal().
+ *
+ * A builder can go on after toFormula() or toIntFormula(), which copy what
+ * has been added so far, but isn't safe to share between threads.
+ */
+public final class FormulaBuilder {
+    private final Map<Variable, Integer> index = new HashMap<Variable, Integer>();
+    private Variable[] variables = new Variable[16];
+    private int numVariables;
+    private int[] literals = new int[64];
+    private int[] clauseOffsets = new int[17];
+    private int numClauses;
+    private int[] amoLiterals = new int[16];
+    private int[] amoOffsets = new int[5];
+    private int numAtMostOnes;
+    /*
+     * Rep invariant:
+     *     index maps variables[0..numVariables) to their positions, and
+     *       nothing else
+     *     clauseOffsets[0] == 0, clauseOffsets[0..numClauses] ascending;
+     *       likewise amoOffsets[0..numAtMostOnes]
+     *     every literal l in literals[0..clauseOffsets[numClauses]) and
+     *       amoLiterals[0..amoOffsets[numAtMostOnes]) has
+     *       0 <= l < 2 * numVariables
+     *     no clause has a literal twice, nor a literal and its negation
+     *
+     * Abstraction function:
+     *     The IntFormula over variables[0..numVariables) with the clauses
+     *     and constraints between the offsets, as in IntFormula.
+     */
+
+    /**
+     * @return the number of v in this builder, numbering it if it is new
+     */
+    public int variable(Variable v) {
+        Integer i = index.get(v);
+        if (i != null) return i;
+        if (numVariables == variables.length) variables = Arrays.copyOf(variables, 2 * numVariables);
+        variables[numVariables] = v;
+        index.put(v, numVariables);
+        return numVariables++;
+    }
+
+    /**
+     * @return l as an int: 2v for a positive literal of the variable numbered
+     *         v, 2v+1 for a negative one
+     */
+    public int literal(Literal l) {
+        return 2 * variable(l.getVariable()) + (l instanceof NegLiteral ? 1 : 0);
+    }
+
+    /**
+     * Add the clause of lits. A literal given twice counts once, and a
+     * clause with a literal and its negation is left out, being true.
+     * Requires: every literal came from literal() of this builder
+     *
+     * @return this builder
+     */
+    public FormulaBuilder addClause(int... lits) {
+        int start = clauseOffsets[numClauses];
+        int end = start;
+        if (literals.length < start + lits.length)
+            literals = Arrays.copyOf(literals, Math.max(2 * literals.length, start + lits.length));
+        // clauses are short, so a scan of the literals kept so far is cheap
+        for (int l : lits) {
+            assert l >= 0 && l < 2 * numVariables : "FormulaBuilder: literal " + l;
+            boolean seen = false;
+            for (int k = start; k < end; k++) {
+                if (literals[k] == (l ^ 1)) return this;
+                if (literals[k] == l) seen = true;
+            }
+            if (!seen) literals[end++] = l;
+        }
+        if (numClauses + 1 == clauseOffsets.length) clauseOffsets = Arrays.copyOf(clauseOffsets, 2 * clauseOffsets.length);
+        clauseOffsets[++numClauses] = end;
+        return this;
+    }
+
+    /**
+     * Add the clause of lits, as addClause(int...).
+     *
+     * @return this builder
+     */
+    public FormulaBuilder addClause(Literal... lits) {
+        return addClause(literals(lits));
+    }
+
+    /**
+     * Add the constraint that at most one of lits is true.
+     * Requires: lits are distinct, and came from literal() of this builder
+     *
+     * @return this builder
+     */
+    public FormulaBuilder addAtMostOne(int... lits) {
+        int start = amoOffsets[numAtMostOnes];
+        if (amoLiterals.length < start + lits.length)
+            amoLiterals = Arrays.copyOf(amoLiterals, Math.max(2 * amoLiterals.length, start + lits.length));
+        for (int l : lits) assert l >= 0 && l < 2 * numVariables : "FormulaBuilder: literal " + l;
+        System.arraycopy(lits, 0, amoLiterals, start, lits.length);
+        if (numAtMostOnes + 1 == amoOffsets.length) amoOffsets = Arrays.copyOf(amoOffsets, 2 * amoOffsets.length);
+        amoOffsets[++numAtMostOnes] = start + lits.length;
+        return this;
+    }
+
+    /**
+     * Add the constraint that at most one of lits is true, as
+     * addAtMostOne(int...).
+     *
+     * @return this builder
+     */
+    public FormulaBuilder addAtMostOne(Literal... lits) {
+        return addAtMostOne(literals(lits));
+    }
+
+    /**
+     * Add the constraint that exactly one of lits is true: their clause and
+     * the constraint that at most one is.
+     * Requires: lits are distinct, and came from literal() of this builder
+     *
+     * @return this builder
+     */
+    public FormulaBuilder addExactlyOne(int... lits) {
+        return addClause(lits).addAtMostOne(lits);
+    }
+
+    /**
+     * Add the constraint that exactly one of lits is true, as
+     * addExactlyOne(int...).
+     *
+     * @return this builder
+     */
+    public FormulaBuilder addExactlyOne(Literal... lits) {
+        return addExactlyOne(literals(lits));
+    }
+
+    /**
+     * Add the clauses and constraints of f.
+     *
+     * @return this builder
+     */
+    public FormulaBuilder add(Formula f) {
+        for (Clause c : f.getClauses()) addClause(literals(c, c.size()));
+        for (AtMostOne a : f.getAtMostOnes()) addAtMostOne(literals(a, a.size()));
+        return this;
+    }
+
+    private int[] literals(Literal[] lits) {
+        int[] result = new int[lits.length];
+        for (int i = 0; i < lits.length; i++) result[i] = literal(lits[i]);
+        return result;
+    }
+
+    private int[] literals(Iterable<Literal> lits, int size) {
+        int[] result = new int[size];
+        int i = 0;
+        for (Literal l : lits) result[i++] = literal(l);
+        return result;
+    }
+
+    /**
+     * @return number of variables numbered so far
+     */
+    public int numVariables() {
+        return numVariables;
+    }
+
+    /**
+     * @return number of clauses added so far, less the tautologies
+     */
+    public int numClauses() {
+        return numClauses;
+    }
+
+    /**
+     * @return number of at-most-one constraints added so far
+     */
+    public int numAtMostOnes() {
+        return numAtMostOnes;
+    }
+
+    /**
+     * @return the formula built so far in compact form, variable v being
+     *         the v-th one numbered
+     */
+    public IntFormula toIntFormula() {
+        return new IntFormula(Arrays.copyOf(variables, numVariables),
+                              Arrays.copyOf(literals, clauseOffsets[numClauses]),
+                              Arrays.copyOf(clauseOffsets, numClauses + 1),
+                              Arrays.copyOf(amoLiterals, amoOffsets[numAtMostOnes]),
+                              Arrays.copyOf(amoOffsets, numAtMostOnes + 1));
+    }
+
+    /**
+     * @return the formula built so far, with a literal object for each
+     *         literal: the formula that adding the clauses and constraints
+     *         one by one with Formula.addClause and addAtMostOne would give,
+     *         with the literals of each in the order added
+     */
+    public Formula toFormula() {
+        Literal[] pos = new Literal[numVariables];
+        Literal[] neg = new Literal[numVariables];
+        for (int v = 0; v < numVariables; v++) {
+            pos[v] = PosLiteral.make(variables[v]);
+            neg[v] = pos[v].getNegation();
+        }
+        // The clauses have no duplicates nor tautologies, so their lists
+        // can be made straight, back to front, without the checks of
+        // Clause.add.
+        ImList<Clause> clauses = new VectorImList<Clause>();
+        for (int i = 0; i < numClauses; i++) {
+            ImList<Literal> ls = new EmptyImList<Literal>();
+            for (int k = clauseOffsets[i + 1] - 1; k >= clauseOffsets[i]; k--) {
+                int l = literals[k];
+                ls = ls.add((l & 1) == 0 ? pos[l >> 1] : neg[l >> 1]);
+            }
+            clauses = clauses.add(new Clause(ls));
+        }
+        ImList<AtMostOne> atMostOnes = new VectorImList<AtMostOne>();
+        for (int i = 0; i < numAtMostOnes; i++) {
+            Literal[] lits = new Literal[amoOffsets[i + 1] - amoOffsets[i]];
+            for (int k = 0; k < lits.length; k++) {
+                int l = amoLiterals[amoOffsets[i] + k];
+                lits[k] = (l & 1) == 0 ? pos[l >> 1] : neg[l >> 1];
+            }
+            atMostOnes = atMostOnes.add(new AtMostOne(lits));
+        }
+        return new Formula(clauses, atMostOnes);
+    }
+}
@@ -0,0 +1,92 @@
+package sat.formula;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import sat.SATSolver;
+import sat.env.Variable;
+
+public class FormulaBuilderTest {
+    Literal a = PosLiteral.make("a");
+    Literal b = PosLiteral.make("b");
+    Literal c = PosLiteral.make("c");
+    Literal na = a.getNegation();
+    Literal nb = b.getNegation();
+    Literal nc = c.getNegation();
+
+    // make sure assertions are turned on!
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false;
+    }
+
+    @Test
+    public void testBuild() {
+        FormulaBuilder builder = new FormulaBuilder();
+        // numbered in order of first use
+        assertEquals(1, builder.literal(na));
+        assertEquals(2, builder.literal(b));
+        assertEquals(0, builder.variable(a.getVariable()));
+        builder.addClause(a, nb, a);
+        builder.addClause(b, c, nb);
+        builder.addClause(builder.literal(nc));
+        builder.addExactlyOne(a, b, c);
+        assertEquals(3, builder.numVariables());
+        // the tautology is left out, the duplicate a taken once
+        assertEquals(3, builder.numClauses());
+        assertEquals(1, builder.numAtMostOnes());
+
+        IntFormula i = builder.toIntFormula();
+        assertEquals(3, i.numVariables());
+        assertEquals(a.getVariable(), i.getVariable(0));
+        assertArrayEquals(new int[] { 0, 3 }, i.clauses()[0]);
+        assertArrayEquals(new int[] { 5 }, i.clauses()[1]);
+        assertArrayEquals(new int[] { 0, 2, 4 }, i.atMostOnes()[0]);
+
+        Formula f = builder.toFormula();
+        assertEquals(4, f.getSize());
+        assertTrue(f.getClauses().contains(new Clause(a).add(nb)));
+        assertEquals(i.toFormula().getClauses(), f.getClauses());
+        // a then c is the only model
+        assertEquals(1, SATSolver.solutions(f).count());
+
+        // the builder goes on from there, and the frozen formulas stay as they were
+        builder.addClause(na);
+        assertEquals(3, i.numClauses());
+        assertEquals(4, builder.toIntFormula().numClauses());
+        assertEquals(0, SATSolver.solutions(builder.toFormula()).count());
+    }
+
+    @Test
+    public void testAddFormula() {
+        Formula f = new Formula(new Clause(a).add(nb)).addClause(new Clause(nc)).addAtMostOne(new AtMostOne(b, nc, na));
+        FormulaBuilder builder = new FormulaBuilder().add(f).add(f);
+        assertEquals(4, builder.numClauses());
+        assertEquals(2, builder.numAtMostOnes());
+        // the literals of each clause come out in the order they went in
+        assertEquals(new Formula().and(f).and(f).toString(), builder.toFormula().toString());
+    }
+
+    @Test
+    public void testEncodings() {
+        Literal[] ls = new Literal[7];
+        for (int i = 0; i < ls.length; i++) ls[i] = PosLiteral.make("y" + i);
+        ls[3] = ls[3].getNegation();
+        for (CardinalityEncoding encoding : CardinalityEncoding.values()) {
+            FormulaBuilder builder = new FormulaBuilder();
+            int[] lits = new int[ls.length];
+            for (int i = 0; i < ls.length; i++) lits[i] = builder.literal(ls[i]);
+            encoding.addExactlyOne(builder, lits);
+            Formula f = encoding.addExactlyOne(new Formula(), new ExactlyOne(ls));
+            // the same constraint as through a Formula, with other fresh variables
+            assertEquals(encoding.toString(), f.getClauses().size(), builder.numClauses());
+            assertEquals(encoding.toString(), f.getAtMostOnes().size(), builder.numAtMostOnes());
+            Variable[] vars = new Variable[ls.length];
+            for (int i = 0; i < ls.length; i++) vars[i] = ls[i].getVariable();
+            assertEquals(encoding.toString(), 7, SATSolver.solutions(builder.toFormula(), Arrays.asList(vars)).count());
+        }
+    }
+}
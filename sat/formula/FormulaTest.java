@@ -1,8 +1,22 @@
 package sat.formula;
 
 import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
 import org.junit.Test;
 
+import sat.Algorithm;
+import sat.SATSolver;
+import sat.SolverOptions;
+import sat.env.Bool;
+import sat.env.Environment;
+import sat.env.Variable;
+
 public class FormulaTest {    
     Literal a = PosLiteral.make("a");
     Literal b = PosLiteral.make("b");
@@ -51,6 +65,66 @@ public class FormulaTest {
 
     
     
+    @Test
+    public void testOrWithComplementaryLiterals() {
+        // (a) | (~a & b) used to hit the null merge of a and ~a
+        Formula f = new Formula(new Clause(a)).or(new Formula(new Clause(na)).addClause(new Clause(b)));
+        assertEquals(1, f.getSize());
+        assertEquals(make(a, b), f.getClauses().first());
+        assertEquals(0, new Formula(make(a, b)).or(new Formula(make(na, c))).getSize());
+        assertTrue(new Formula(new Clause(a)).or(new Formula(new Clause(na))).getClauses().isEmpty());
+        assertTrue(new Formula().not().getClauses().first().isEmpty());
+    }
+
+    @Test
+    public void testTransformations() {
+        Literal d = PosLiteral.make("d");
+        List<Variable> vars = Arrays.asList(a.getVariable(), b.getVariable(), c.getVariable(), d.getVariable());
+        Formula[] fs = { new Formula(), new Formula(new Clause()), new Formula(make(a, nb)),
+                         new Formula(make(a, b)).addClause(make(nc, d)).addClause(new Clause(nb)),
+                         new Formula(new Clause(c)).addClause(new Clause(nc)),
+                         new Formula(make(na, b, c)).addAtMostOne(new AtMostOne(a, b, d)) };
+        for (Formula f : fs) {
+            assertEquals(f.toString(), models(f.not(), vars), models(f.not(CNFTransformation.TSEITIN), vars));
+            assertEquals(f.toString(), models(f.not(), vars),
+                         models(f.not(CNFTransformation.PLAISTED_GREENBAUM), vars));
+            for (Formula g : fs) {
+                Set<String> expected = models(f.or(g), vars);
+                for (CNFTransformation t : CNFTransformation.values())
+                    assertEquals(t + " " + f + " " + g, expected, models(f.or(g, t), vars));
+            }
+        }
+        // under Tseitin the fresh variables add no models of their own
+        Formula f = fs[3].or(fs[5], CNFTransformation.TSEITIN);
+        assertEquals(models(fs[3].or(fs[5]), vars).size(), SATSolver.solutions(f).count());
+
+        // 20 clauses of 3 literals: 3^20 clauses distributed, 81 by Tseitin
+        Formula big = new Formula();
+        Literal[] xs = new Literal[60];
+        for (int i = 0; i < xs.length; i++) xs[i] = PosLiteral.make("x" + i);
+        for (int i = 0; i < xs.length; i += 3) big = big.addClause(make(xs[i], xs[i + 1], xs[i + 2]));
+        assertEquals(81, big.not(CNFTransformation.TSEITIN).getSize());
+        assertEquals(61, big.not(CNFTransformation.PLAISTED_GREENBAUM).getSize());
+        assertEquals(2 * 20 + 1, big.or(big, CNFTransformation.PLAISTED_GREENBAUM).getSize());
+        Formula either = big.or(big.not(CNFTransformation.PLAISTED_GREENBAUM), CNFTransformation.TSEITIN);
+        assertNotNull(SATSolver.solve(big.not(CNFTransformation.TSEITIN).and(either),
+                                      new SolverOptions().withAlgorithm(Algorithm.CDCL)));
+    }
+
+    // the models of f, as the values of vars, a variable f leaves
+    // undefined taking either
+    private static Set<String> models(Formula f, List<Variable> vars) {
+        return SATSolver.solutions(f, vars).flatMap(e -> values(e, vars, 0).stream()).collect(Collectors.toSet());
+    }
+
+    private static List<String> values(Environment e, List<Variable> vars, int from) {
+        if (from == vars.size()) return Arrays.asList("");
+        List<String> rest = values(e, vars, from + 1);
+        Bool b = e.get(vars.get(from));
+        return rest.stream().flatMap(r -> (b == Bool.UNDEFINED ? Stream.of("T", "F") : Stream.of(b == Bool.TRUE ? "T" : "F"))
+                                          .map(x -> x + r)).collect(Collectors.toList());
+    }
+
     // Helper function for constructing a clause.  Takes
     // a variable number of arguments, e.g.
     //  clause(a, b, c) will make the clause (a or b or c)
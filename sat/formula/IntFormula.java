@@ -0,0 +1,363 @@
+package sat.formula;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import sat.env.Bool;
+import sat.env.Environment;
+import sat.env.Variable;
+
+/**
+ * An immutable formula in compact form: the variables are numbered densely
+ * from 0, literal 2v stands for variable v and 2v+1 for its negation, and
+ * the literals of all clauses sit in one flat array, clause i taking
+ * literals clauseStart(i) to clauseEnd(i). At-most-one constraints are
+ * stored the same way.
+ *
+ * This is the form the solver works on; a Formula with all its literal,
+ * clause and list objects is converted to it before solving, and a formula
+ * built straight in this form skips that step.
+ */
+public final class IntFormula {
+    private final Variable[] variables;
+    private final int[] literals;
+    private final int[] clauseOffsets;
+    private final int[] amoLiterals;
+    private final int[] amoOffsets;
+    /*
+     * Rep invariant:
+     *     variables, literals, clauseOffsets, amoLiterals, amoOffsets non null
+     *     variables contains no null elements and no duplicates
+     *     clauseOffsets[0] == 0, clauseOffsets ascending, and its last
+     *       element is literals.length; the same for amoOffsets and
+     *       amoLiterals
+     *     every literal l has 0 <= l < 2 * variables.length
+     *     no at-most-one constraint has the same literal twice
+     *
+     * Abstraction function:
+     *     The conjunction of the clauses literals[clauseOffsets[i] ..
+     *     clauseOffsets[i+1]) and of the constraints that at most one of
+     *     amoLiterals[amoOffsets[i] .. amoOffsets[i+1]) is true, literal l
+     *     read as variables[l >> 1], negated if l is odd.
+     */
+
+    void checkRep() {
+        assert clauseOffsets.length > 0 && clauseOffsets[0] == 0 : "IntFormula, Rep invariant: offsets";
+        assert clauseOffsets[clauseOffsets.length - 1] == literals.length : "IntFormula, Rep invariant: offsets";
+        assert amoOffsets.length > 0 && amoOffsets[0] == 0 : "IntFormula, Rep invariant: offsets";
+        assert amoOffsets[amoOffsets.length - 1] == amoLiterals.length : "IntFormula, Rep invariant: offsets";
+        try {
+            assert false;
+        } catch (AssertionError e) {
+            for (Variable v : variables) assert v != null : "IntFormula, Rep invariant: no null variables";
+            for (int i = 1; i < clauseOffsets.length; i++)
+                assert clauseOffsets[i - 1] <= clauseOffsets[i] : "IntFormula, Rep invariant: offsets ascending";
+            for (int i = 1; i < amoOffsets.length; i++)
+                assert amoOffsets[i - 1] <= amoOffsets[i] : "IntFormula, Rep invariant: offsets ascending";
+            for (int l : literals)
+                assert l >= 0 && l < 2 * variables.length : "IntFormula, Rep invariant: literal " + l;
+            for (int l : amoLiterals)
+                assert l >= 0 && l < 2 * variables.length : "IntFormula, Rep invariant: literal " + l;
+        }
+    }
+
+    // takes the arrays as they are; also for FormulaBuilder
+    IntFormula(Variable[] variables, int[] literals, int[] clauseOffsets, int[] amoLiterals,
+                       int[] amoOffsets) {
+        this.variables = variables;
+        this.literals = literals;
+        this.clauseOffsets = clauseOffsets;
+        this.amoLiterals = amoLiterals;
+        this.amoOffsets = amoOffsets;
+        checkRep();
+    }
+
+    /**
+     * Requires: variables are non-null and distinct, and every literal l of
+     * clauses and atMostOnes has 0 <= l < 2 * variables.length
+     * @return the conjunction of clauses and of the constraints that at
+     *         most one literal of each of atMostOnes is true, variable v
+     *         being variables[v]. The arrays are copied.
+     */
+    public IntFormula(Variable[] variables, int[][] clauses, int[][] atMostOnes) {
+        this(variables.clone(), flatten(clauses), offsets(clauses), flatten(atMostOnes), offsets(atMostOnes));
+    }
+
+    /**
+     * Requires: every literal l of clauses has 0 <= l < 2 * numVars
+     * @return the conjunction of clauses over numVars variables, variable v
+     *         named "x" followed by v+1, its number in DIMACS
+     */
+    public IntFormula(int numVars, int[][] clauses) {
+        this(numbered(numVars), clauses, new int[0][]);
+    }
+
+    private static Variable[] numbered(int numVars) {
+        Variable[] variables = new Variable[numVars];
+        for (int v = 0; v < numVars; v++) variables[v] = PosLiteral.make("x" + (v + 1)).getVariable();
+        return variables;
+    }
+
+    private static int[] flatten(int[][] arrays) {
+        int n = 0;
+        for (int[] a : arrays) n += a.length;
+        int[] flat = new int[n];
+        int k = 0;
+        for (int[] a : arrays) {
+            System.arraycopy(a, 0, flat, k, a.length);
+            k += a.length;
+        }
+        return flat;
+    }
+
+    private static int[] offsets(int[][] arrays) {
+        int[] offsets = new int[arrays.length + 1];
+        for (int i = 0; i < arrays.length; i++) offsets[i + 1] = offsets[i] + arrays[i].length;
+        return offsets;
+    }
+
+    /**
+     * @return formula in compact form, its variables numbered in order of
+     *         first occurrence, first in the clauses, then in the
+     *         at-most-one constraints
+     */
+    public static IntFormula fromFormula(Formula formula) {
+        Numbering numbering = new Numbering();
+        int[] clauseOffsets = new int[formula.getClauses().size() + 1];
+        int i = 0;
+        for (Clause clause : formula.getClauses()) {
+            numbering.encode(clause);
+            clauseOffsets[++i] = numbering.size;
+        }
+        int[] literals = numbering.literals();
+        numbering.size = 0;
+        int[] amoOffsets = new int[formula.getAtMostOnes().size() + 1];
+        i = 0;
+        for (AtMostOne amo : formula.getAtMostOnes()) {
+            numbering.encode(amo);
+            amoOffsets[++i] = numbering.size;
+        }
+        return new IntFormula(numbering.variables(), literals, clauseOffsets, numbering.literals(), amoOffsets);
+    }
+
+    /*
+     * Numbers variables in order of first occurrence, and collects the
+     * literals encoded so far in a growable buffer.
+     */
+    private static final class Numbering {
+        private final Map<Literal, Integer> index = new HashMap<Literal, Integer>();
+        private Variable[] vars = new Variable[16];
+        private int[] buffer = new int[64];
+        int size;
+
+        void encode(Iterable<Literal> lits) {
+            for (Literal l : lits) {
+                Literal pos = l instanceof NegLiteral ? l.getNegation() : l;
+                Integer v = index.get(pos);
+                if (v == null) {
+                    v = index.size();
+                    index.put(pos, v);
+                    if (v == vars.length) vars = Arrays.copyOf(vars, 2 * v);
+                    vars[v] = pos.getVariable();
+                }
+                if (size == buffer.length) buffer = Arrays.copyOf(buffer, 2 * size);
+                buffer[size++] = 2 * v + (pos == l ? 0 : 1);
+            }
+        }
+
+        int[] literals() {
+            return Arrays.copyOf(buffer, size);
+        }
+
+        Variable[] variables() {
+            return Arrays.copyOf(vars, index.size());
+        }
+    }
+
+    /**
+     * @return the same formula with literal and clause objects
+     */
+    public Formula toFormula() {
+        Literal[] pos = new Literal[variables.length];
+        for (int v = 0; v < variables.length; v++) pos[v] = PosLiteral.make(variables[v]);
+        Formula f = new Formula();
+        for (int i = 0; i < numClauses(); i++) {
+            Clause c = new Clause();
+            for (int k = clauseOffsets[i]; k < clauseOffsets[i + 1]; k++) {
+                c = c.add(toLiteral(pos, literals[k]));
+                // a literal together with its negation: the clause is true anyway
+                if (c == null) break;
+            }
+            if (c != null) f = f.addClause(c);
+        }
+        for (int i = 0; i < numAtMostOnes(); i++) {
+            Literal[] lits = new Literal[amoOffsets[i + 1] - amoOffsets[i]];
+            for (int k = 0; k < lits.length; k++) lits[k] = toLiteral(pos, amoLiterals[amoOffsets[i] + k]);
+            f = f.addAtMostOne(new AtMostOne(lits));
+        }
+        return f;
+    }
+
+    private static Literal toLiteral(Literal[] pos, int l) {
+        Literal p = pos[l >> 1];
+        return (l & 1) == 0 ? p : p.getNegation();
+    }
+
+    /**
+     * @return number of variables
+     */
+    public int numVariables() {
+        return variables.length;
+    }
+
+    /**
+     * Requires: 0 <= v < numVariables()
+     * @return variable v
+     */
+    public Variable getVariable(int v) {
+        return variables[v];
+    }
+
+    /**
+     * @return number of clauses
+     */
+    public int numClauses() {
+        return clauseOffsets.length - 1;
+    }
+
+    /**
+     * Requires: 0 <= i < numClauses()
+     * @return index in literal() of the first literal of clause i
+     */
+    public int clauseStart(int i) {
+        return clauseOffsets[i];
+    }
+
+    /**
+     * Requires: 0 <= i < numClauses()
+     * @return index in literal() just past the last literal of clause i
+     */
+    public int clauseEnd(int i) {
+        return clauseOffsets[i + 1];
+    }
+
+    /**
+     * Requires: 0 <= k < clauseEnd(numClauses() - 1)
+     * @return literal k of the clauses, all laid end to end
+     */
+    public int literal(int k) {
+        return literals[k];
+    }
+
+    /**
+     * @return number of at-most-one constraints
+     */
+    public int numAtMostOnes() {
+        return amoOffsets.length - 1;
+    }
+
+    /**
+     * @return the clauses, one array each
+     */
+    public int[][] clauses() {
+        return split(literals, clauseOffsets);
+    }
+
+    /**
+     * @return the literals of the at-most-one constraints, one array each
+     */
+    public int[][] atMostOnes() {
+        return split(amoLiterals, amoOffsets);
+    }
+
+    private static int[][] split(int[] flat, int[] offsets) {
+        int[][] arrays = new int[offsets.length - 1][];
+        for (int i = 0; i < arrays.length; i++) arrays[i] = Arrays.copyOfRange(flat, offsets[i], offsets[i + 1]);
+        return arrays;
+    }
+
+    /**
+     * @return the clauses, followed by the clauses (~a | ~b) of every pair
+     *         of literals of each at-most-one constraint: the same formula
+     *         in plain CNF
+     */
+    public int[][] toCNF() {
+        int n = numClauses();
+        for (int i = 0; i < numAtMostOnes(); i++) {
+            int size = amoOffsets[i + 1] - amoOffsets[i];
+            n += size * (size - 1) / 2;
+        }
+        int[][] cnf = Arrays.copyOf(clauses(), n);
+        int c = numClauses();
+        for (int i = 0; i < numAtMostOnes(); i++) {
+            for (int j = amoOffsets[i]; j < amoOffsets[i + 1]; j++) {
+                for (int k = j + 1; k < amoOffsets[i + 1]; k++)
+                    cnf[c++] = new int[] { amoLiterals[j] ^ 1, amoLiterals[k] ^ 1 };
+            }
+        }
+        return cnf;
+    }
+
+    /**
+     * Requires: no two of model are a literal and its negation
+     * @return an environment binding the variable of every literal of model
+     *         so that the literal is true
+     */
+    public Environment toEnvironment(int[] model) {
+        Environment env = new Environment();
+        for (int l : model) {
+            if ((l & 1) == 0) env = env.putTrue(variables[l >> 1]);
+            else env = env.putFalse(variables[l >> 1]);
+        }
+        return env;
+    }
+
+    /**
+     * @return the literals that env makes true, one for every variable of
+     *         this bound to Bool.TRUE or Bool.FALSE, in order of variable
+     */
+    public int[] fromEnvironment(Environment env) {
+        int[] model = new int[variables.length];
+        int n = 0;
+        for (int v = 0; v < variables.length; v++) {
+            Bool b = env.get(variables[v]);
+            if (b == Bool.TRUE) model[n++] = 2 * v;
+            else if (b == Bool.FALSE) model[n++] = 2 * v + 1;
+        }
+        return Arrays.copyOf(model, n);
+    }
+
+    /**
+     * Write the clauses in DIMACS CNF, variable v numbered v+1, with a
+     * comment line naming each variable. DIMACS has no at-most-one
+     * constraints, so they are written as their pairwise clauses (see
+     * toCNF()), which is also what a proof of the solver is checked against.
+     */
+    public void writeDimacs(Writer out) throws IOException {
+        int[][] cnf = toCNF();
+        for (int v = 0; v < variables.length; v++) out.write("c " + (v + 1) + " " + variables[v] + "\n");
+        out.write("p cnf " + variables.length + " " + cnf.length + "\n");
+        StringBuilder line = new StringBuilder();
+        for (int[] c : cnf) {
+            line.setLength(0);
+            for (int l : c) line.append((l & 1) == 0 ? "" : "-").append((l >> 1) + 1).append(' ');
+            out.write(line.append("0\n").toString());
+        }
+    }
+
+    public String toString() {
+        StringBuilder result = new StringBuilder("IntFormula[");
+        for (int i = 0; i < numClauses(); i++) {
+            if (i > 0) result.append(", ");
+            result.append(Arrays.toString(Arrays.copyOfRange(literals, clauseOffsets[i], clauseOffsets[i + 1])));
+        }
+        for (int i = 0; i < numAtMostOnes(); i++) {
+            result.append(numClauses() + i > 0 ? ", " : "").append("AtMostOne");
+            result.append(Arrays.toString(Arrays.copyOfRange(amoLiterals, amoOffsets[i], amoOffsets[i + 1])));
+        }
+        return result.append("]").toString();
+    }
+}
@@ -0,0 +1,83 @@
+package sat.formula;
+
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import sat.env.Bool;
+import sat.env.Environment;
+
+public class IntFormulaTest {
+    Literal a = PosLiteral.make("a");
+    Literal b = PosLiteral.make("b");
+    Literal c = PosLiteral.make("c");
+    Literal na = a.getNegation();
+    Literal nb = b.getNegation();
+    Literal nc = c.getNegation();
+
+    // make sure assertions are turned on!
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false;
+    }
+
+    @Test
+    public void testFromFormula() {
+        Formula f = new Formula(new Clause(a).add(nb)).addClause(new Clause(nc))
+                .addAtMostOne(new AtMostOne(b, nc, na));
+        IntFormula i = IntFormula.fromFormula(f);
+        assertEquals(3, i.numVariables());
+        assertEquals(2, i.numClauses());
+        assertEquals(1, i.numAtMostOnes());
+        // numbered in order of first occurrence, over the clauses as listed
+        int[][] clauses = i.clauses();
+        assertEquals(2, clauses.length);
+        for (int[] clause : clauses) {
+            for (int l : clause) assertTrue(l >= 0 && l < 6);
+        }
+        assertEquals(3, i.clauseEnd(i.numClauses() - 1));
+        assertEquals(i.clauseEnd(0), i.clauseStart(1));
+        assertEquals(5, i.toCNF().length);
+
+        Formula back = i.toFormula();
+        assertEquals(f.getClauses().size(), back.getClauses().size());
+        assertEquals(1, back.getAtMostOnes().size());
+        assertEquals(f.toString().length(), back.toString().length());
+    }
+
+    @Test
+    public void testEnvironment() {
+        IntFormula i = IntFormula.fromFormula(new Formula(new Clause(a).add(nb)).addClause(new Clause(c)));
+        int[] model = i.fromEnvironment(new Environment().putTrue(a.getVariable()).putFalse(c.getVariable()));
+        assertEquals(2, model.length);
+        Environment env = i.toEnvironment(model);
+        assertEquals(Bool.TRUE, env.get(a.getVariable()));
+        assertEquals(Bool.UNDEFINED, env.get(b.getVariable()));
+        assertEquals(Bool.FALSE, env.get(c.getVariable()));
+        assertArrayEquals(model, i.fromEnvironment(env));
+    }
+
+    @Test
+    public void testFromInts() throws Exception {
+        // (x1 | ~x2) & (x2 | x3) & (~x3)
+        IntFormula i = new IntFormula(3, new int[][] { { 0, 3 }, { 2, 4 }, { 5 } });
+        assertEquals(3, i.numVariables());
+        assertEquals("x3", i.getVariable(2).getName());
+        assertTrue(Arrays.deepEquals(new int[][] { { 0, 3 }, { 2, 4 }, { 5 } }, i.clauses()));
+        assertEquals(0, i.atMostOnes().length);
+        assertEquals(5, i.literal(i.clauseStart(2)));
+
+        StringWriter out = new StringWriter();
+        i.writeDimacs(out);
+        assertTrue(out.toString().contains("p cnf 3 3\n1 -2 0\n2 3 0\n-3 0\n"));
+        assertEquals(3, i.toFormula().getClauses().size());
+    }
+
+    @Test(expected=AssertionError.class)
+    public void testLiteralOutOfRange() {
+        new IntFormula(2, new int[][] { { 0, 4 } });
+    }
+}
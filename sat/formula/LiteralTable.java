@@ -0,0 +1,186 @@
+package sat.formula;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A table interning literals by name, so that there is one PosLiteral and
+ * one NegLiteral object per variable name, and literals can be compared
+ * with ==. Lookups are hash based, and tables are safe to use from any
+ * number of threads.
+ *
+ * PosLiteral.make interns into the current table of the calling thread:
+ * the global table, unless a scope has been entered on the thread:
+ *
+ *     LiteralTable table = LiteralTable.weak();
+ *     try (LiteralTable.Scope scope = table.enter()) {
+ *         ... PosLiteral.make("a") ...
+ *     }
+ *
+ * The global table keeps its literals for the life of the process. A table
+ * made with strong() keeps them as long as the table itself is reachable,
+ * so a table per task goes with the task; one made with weak() only keeps
+ * them while they are in use somewhere, so a long-running service can
+ * share one without it growing forever.
+ *
+ * Literals of different tables are different objects even if their names
+ * are the same, so the literals of one formula should all come from one
+ * table. Their variables are equal by name (see Variable.equals), so
+ * environments work across tables.
+ */
+public final class LiteralTable {
+    private static final LiteralTable GLOBAL = new LiteralTable(false);
+    private static final ThreadLocal<LiteralTable> CURRENT = new ThreadLocal<LiteralTable>();
+
+    private final boolean weak;
+    // exactly one of the maps is non null, depending on weak
+    private final ConcurrentHashMap<String, PosLiteral> literals;
+    private final ConcurrentHashMap<String, NameReference> references;
+    private final ReferenceQueue<PosLiteral> queue;
+    /*
+     * Rep invariant:
+     *     literals != null iff !weak; references != null and queue != null
+     *       iff weak
+     *     every literal in either map is named by its key
+     *
+     * Abstraction function:
+     *     The set of interned positive literals: those of literals, or the
+     *     referents of references still reachable.
+     */
+
+    private LiteralTable(boolean weak) {
+        this.weak = weak;
+        this.literals = weak ? null : new ConcurrentHashMap<String, PosLiteral>();
+        this.references = weak ? new ConcurrentHashMap<String, NameReference>() : null;
+        this.queue = weak ? new ReferenceQueue<PosLiteral>() : null;
+    }
+
+    /**
+     * @return a new, empty table that keeps its literals as long as it is
+     *         reachable
+     */
+    public static LiteralTable strong() {
+        return new LiteralTable(false);
+    }
+
+    /**
+     * @return a new, empty table that keeps its literals only as long as
+     *         they are reachable from elsewhere
+     */
+    public static LiteralTable weak() {
+        return new LiteralTable(true);
+    }
+
+    /**
+     * @return the table of literals not made in a scope
+     */
+    public static LiteralTable global() {
+        return GLOBAL;
+    }
+
+    /**
+     * @return the table of the innermost scope entered on this thread and
+     *         not closed yet, or the global table if there is none
+     */
+    public static LiteralTable current() {
+        LiteralTable table = CURRENT.get();
+        return table == null ? GLOBAL : table;
+    }
+
+    /**
+     * Make this the current table of the calling thread, until the scope
+     * returned is closed.
+     */
+    public Scope enter() {
+        return new Scope(this);
+    }
+
+    /**
+     * A stretch of a thread during which PosLiteral.make interns into a
+     * given table. Scopes nest, and must be closed on the thread that
+     * entered them, innermost first.
+     */
+    public static final class Scope implements AutoCloseable {
+        private final Thread thread = Thread.currentThread();
+        private final LiteralTable table;
+        private final LiteralTable previous;
+        private boolean closed;
+
+        private Scope(LiteralTable table) {
+            this.table = table;
+            this.previous = CURRENT.get();
+            CURRENT.set(table);
+        }
+
+        /**
+         * Make the table current before this scope current again.
+         */
+        public void close() {
+            assert Thread.currentThread() == thread : "LiteralTable.Scope closed on another thread";
+            if (closed) return;
+            assert CURRENT.get() == table : "LiteralTable.Scope closed before an inner scope";
+            closed = true;
+            if (previous == null) CURRENT.remove();
+            else CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * @return the positive literal named name in this table, made if it
+     *         isn't there yet
+     */
+    public PosLiteral make(String name) {
+        if (!weak) {
+            PosLiteral literal = literals.get(name);
+            return literal != null ? literal : literals.computeIfAbsent(name, PosLiteral::create);
+        }
+        NameReference ref = references.get(name);
+        PosLiteral literal = ref == null ? null : ref.get();
+        if (literal != null) return literal;
+        expunge();
+        PosLiteral[] made = new PosLiteral[1];
+        references.compute(name, (key, old) -> {
+            made[0] = old == null ? null : old.get();
+            if (made[0] != null) return old;
+            made[0] = PosLiteral.create(key);
+            return new NameReference(key, made[0], queue);
+        });
+        return made[0];
+    }
+
+    /**
+     * @return number of literals in this table; for a weak table, this
+     *         may still count some that are no longer reachable
+     */
+    public int size() {
+        if (!weak) return literals.size();
+        expunge();
+        return references.size();
+    }
+
+    // drop the entries of the literals that have been collected
+    private void expunge() {
+        for (Object ref; (ref = queue.poll()) != null;) {
+            NameReference r = (NameReference) ref;
+            references.remove(r.name, r);
+        }
+    }
+
+    /*
+     * A weak reference to a literal that remembers its name, to find the
+     * entry to drop once the literal is collected.
+     */
+    private static final class NameReference extends WeakReference<PosLiteral> {
+        final String name;
+
+        NameReference(String name, PosLiteral literal, ReferenceQueue<PosLiteral> queue) {
+            super(literal, queue);
+            this.name = name;
+        }
+    }
+
+    public String toString() {
+        return (this == GLOBAL ? "global" : weak ? "weak" : "strong") + " LiteralTable of " + size();
+    }
+}
@@ -0,0 +1,107 @@
+package sat.formula;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import sat.env.Variable;
+
+public class LiteralTableTest {
+
+    // make sure assertions are turned on!
+    @Test(expected=AssertionError.class)
+    public void testAssertionsEnabled() {
+        assert false;
+    }
+
+    @Test
+    public void testInterning() {
+        PosLiteral a = PosLiteral.make("a");
+        assertSame(a, PosLiteral.make("a"));
+        assertSame(a, PosLiteral.make(new Variable("a")));
+        assertSame(a.getNegation(), NegLiteral.make("a"));
+        assertSame(a, LiteralTable.global().make("a"));
+        assertSame(LiteralTable.global(), LiteralTable.current());
+
+        Variable v = new Variable("a");
+        assertEquals(a.getVariable(), v);
+        assertEquals(a.getVariable().hashCode(), v.hashCode());
+    }
+
+    @Test
+    public void testScopes() {
+        PosLiteral a = PosLiteral.make("a");
+        LiteralTable outer = LiteralTable.strong();
+        LiteralTable inner = LiteralTable.weak();
+        PosLiteral outerA;
+        LiteralTable.Scope scope = outer.enter();
+        try {
+            assertSame(outer, LiteralTable.current());
+            outerA = PosLiteral.make("a");
+            assertNotSame(a, outerA);
+            assertEquals(a.getVariable(), outerA.getVariable());
+            LiteralTable.Scope nested = inner.enter();
+            try {
+                assertSame(inner, LiteralTable.current());
+                assertNotSame(outerA, PosLiteral.make("a"));
+            } finally {
+                nested.close();
+            }
+            assertSame(outerA, PosLiteral.make("a"));
+            assertEquals(1, outer.size());
+        } finally {
+            scope.close();
+        }
+        assertSame(LiteralTable.global(), LiteralTable.current());
+        assertSame(a, PosLiteral.make("a"));
+    }
+
+    @Test
+    public void testWeak() {
+        LiteralTable table = LiteralTable.weak();
+        PosLiteral kept = table.make("kept");
+        for (int i = 0; i < 10000; i++) table.make("dropped" + i);
+        // the dropped literals go once the collector has run
+        for (int i = 0; i < 50 && table.size() > 1; i++) {
+            System.gc();
+            Thread.yield();
+        }
+        assertEquals(1, table.size());
+        assertSame(kept, table.make("kept"));
+        assertEquals("dropped0", table.make("dropped0").getVariable().getName());
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+        for (LiteralTable table : new LiteralTable[] { LiteralTable.strong(), LiteralTable.weak() }) {
+            ExecutorService pool = Executors.newFixedThreadPool(4);
+            try {
+                List<Future<PosLiteral[]>> results = new ArrayList<Future<PosLiteral[]>>();
+                for (int t = 0; t < 4; t++) {
+                    results.add(pool.submit(new Callable<PosLiteral[]>() {
+                        public PosLiteral[] call() {
+                            PosLiteral[] made = new PosLiteral[1000];
+                            for (int i = 0; i < made.length; i++) made[i] = table.make("v" + i);
+                            return made;
+                        }
+                    }));
+                }
+                PosLiteral[] first = results.get(0).get();
+                for (Future<PosLiteral[]> result : results) {
+                    PosLiteral[] made = result.get();
+                    for (int i = 0; i < made.length; i++) assertSame(first[i], made[i]);
+                }
+                assertEquals(1000, table.size());
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+}
@@ -7,24 +7,31 @@
 package sat.formula;
 
 import sat.env.Variable;
-import immutable.ImListMap;
-import immutable.ImMap;
 
 /**
  * Class representing positive literals.
- * Works with NegLiteral to ensure interning of literals.
+ * Works with NegLiteral to ensure interning of literals, which are kept
+ * in a LiteralTable.
  * PosLiteral objects are immutable.
  */
 public class PosLiteral extends Literal {
-    /* 
-     * Mapping of positive literals that have already been allocated, keyed on their names
-     * Invariant: non null, and no key or value is null
-     */
-    static ImMap<String,PosLiteral> allocatedPosLiterals = new ImListMap<String,PosLiteral>();
 
     private PosLiteral (String name) {
         super (name);
     }    
+
+    /**
+     * @return a new positive literal named name, with its negation; only
+     *         to be called by a LiteralTable, which does the interning
+     */
+    static PosLiteral create (String name) {
+        PosLiteral literal = new PosLiteral(name);
+        NegLiteral negated = new NegLiteral(name);
+        literal.negation = negated;
+        negated.negation = literal;
+        literal.checkRep();
+        return literal;
+    }
     
     public static PosLiteral make (Variable var) {
         return make(var.getName());
@@ -32,20 +39,12 @@ public class PosLiteral extends Literal {
         
     /**
      * Factory method. Preserves the invariant that only one object
-     * will exist to represent a literal of a given name. 
+     * will exist to represent a literal of a given name in the current
+     * LiteralTable of the thread.
      * @return the positive literal with the given name
      */
     public static PosLiteral make (String name) {
-        PosLiteral literal = allocatedPosLiterals.get(name);
-        if (literal==null) {
-            literal = new PosLiteral(name);
-            NegLiteral negated = new NegLiteral(name);
-            literal.negation = negated;
-            negated.negation = literal;
-            allocatedPosLiterals = allocatedPosLiterals.put(name, literal);
-        }
-        literal.checkRep(); 
-        return literal;
+        return LiteralTable.current().make(name);
     }
 
     public String toString () {
@@ -0,0 +1,129 @@
+package sudoku;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+import sat.Algorithm;
+import sat.IncrementalSolver;
+import sat.SATSolver;
+import sat.SolveResult;
+import sat.SolverOptions;
+import sat.SolverStatistics;
+import sat.env.Bool;
+import sat.env.Environment;
+import sat.env.Variable;
+import sat.formula.*;
+import sudoku.Sudoku.ParseException;
+
+/**
+ * Compares keeping the clauses on the heap with keeping them off it (see
+ * SolverOptions.withOffHeapClauses), on two loads: solving big grids with
+ * CDCL, and enumerating solutions of an empty grid with blocking clauses,
+ * one more long clause per solution. For each, how long it takes, the heap
+ * at its peak or left in use, what it allocated on the heap and held off
+ * it, and how long the garbage collector ran meanwhile.
+ */
+public class ClauseStoreReport {
+
+    public static void main(String[] args) throws IOException, ParseException {
+        solve("samples/sudoku_evil.txt", Sudoku.fromFile(3, "samples/sudoku_evil.txt"));
+        solve("empty 25x25", new Sudoku(5));
+        enumerate(3, 5000);
+    }
+
+    /**
+     * Print two lines per encoding of sudoku, one per store.
+     */
+    private static void solve(String name, Sudoku sudoku) throws ParseException {
+        System.out.println(name);
+        System.out.println(String.format("  %-10s %-5s %8s %10s %10s %10s %12s %8s", "encoding", "store", "clauses",
+                                         "CDCL ms", "peak MB", "alloc MB", "off heap KB", "GC ms"));
+        SolverOptions cdcl = new SolverOptions().withAlgorithm(Algorithm.CDCL);
+        for (CardinalityEncoding encoding : CardinalityEncoding.values()) {
+            IntFormula f = sudoku.getIntProblem(encoding);
+            for (boolean offHeap : new boolean[] { false, true }) {
+                System.gc();
+                resetPeakHeap();
+                SolveResult result = SATSolver.check(f, cdcl.withOffHeapClauses(offHeap));
+                long peak = peakHeap();
+                if (result.getStatus() != SolveResult.Status.SATISFIABLE) throw new ParseException("No solution to " + name);
+                SolverStatistics stats = result.getStatistics();
+                System.out.println(String.format("  %-10s %-5s %8d %10.1f %10.1f %10.1f %12.1f %8d", encoding,
+                        offHeap ? "off" : "heap", f.numClauses(), stats.getSolveNanos() / 1e6, peak / 1e6,
+                        stats.getAllocatedBytes() / 1e6, stats.getOffHeapBytes() / 1e3, stats.getCollectionMillis()));
+            }
+        }
+        System.out.println();
+    }
+
+    /**
+     * Print one line per store for finding the first count solutions of the
+     * empty grid of the given dimension, each followed by the clause that
+     * rules it out. The heap in use is measured at the end, with the solver
+     * and its clauses still alive.
+     */
+    private static void enumerate(int dim, int count) throws ParseException {
+        System.out.println(String.format("%d solutions of the empty %dx%d grid", count, dim * dim, dim * dim));
+        System.out.println(String.format("  %-5s %10s %10s %8s", "store", "ms", "heap MB", "GC ms"));
+        Formula grid = new Sudoku(dim).getProblem(CardinalityEncoding.NATIVE);
+        int n = dim * dim;
+        for (boolean offHeap : new boolean[] { false, true }) {
+            System.gc();
+            long collected = collectionMillis();
+            long started = System.nanoTime();
+            IncrementalSolver solver = new IncrementalSolver(new SolverOptions().withOffHeapClauses(offHeap));
+            solver.add(grid);
+            for (int found = 0; found < count; found++) {
+                Environment env = solver.solve();
+                if (env == null) break;
+                // not all the same digits again
+                Clause block = new Clause();
+                for (int i = 0; i < n; i++) {
+                    for (int j = 0; j < n; j++) {
+                        for (int k = 0; k < n; k++) {
+                            Variable v = Sudoku.literalVar(i, j, k);
+                            if (env.get(v) == Bool.TRUE) block = block.add(NegLiteral.make(v));
+                        }
+                    }
+                }
+                solver.add(block);
+            }
+            long elapsed = System.nanoTime() - started;
+            long gc = collectionMillis() - collected;
+            System.gc();
+            long heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            System.out.println(String.format("  %-5s %10.1f %10.1f %8d", offHeap ? "off" : "heap", elapsed / 1e6,
+                    heap / 1e6, gc));
+            // keep the solver alive until its heap is measured
+            if (solver.numVariables() == 0) throw new AssertionError();
+        }
+        System.out.println();
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+        }
+    }
+
+    // bytes of heap in use at the peak since the last reset, summed over the pools
+    private static long peakHeap() {
+        long total = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) total += pool.getPeakUsage().getUsed();
+        }
+        return total;
+    }
+
+    // milliseconds the garbage collectors have taken so far
+    private static long collectionMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(gc.getCollectionTime(), 0);
+        }
+        return total;
+    }
+}
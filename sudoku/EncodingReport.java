@@ -0,0 +1,52 @@
+package sudoku;
+
+import java.io.IOException;
+
+import sat.Algorithm;
+import sat.SATSolver;
+import sat.SolveResult;
+import sat.SolverOptions;
+import sat.formula.*;
+import sudoku.Sudoku.ParseException;
+
+/**
+ * Compares the cardinality encodings on the sample puzzles: for each puzzle
+ * and encoding, the size of the formula and how long each algorithm takes
+ * to solve it.
+ */
+public class EncodingReport {
+
+    public static void main(String[] args) throws IOException, ParseException {
+        report(2, "samples/sudoku_4x4.txt");
+        report(2, "samples/sudoku_5x5.txt");
+        report(3, "samples/sudoku_easy.txt");
+        report(3, "samples/sudoku_easy2.txt");
+        report(3, "samples/sudoku_hard.txt");
+        report(3, "samples/sudoku_hard2.txt");
+        report(3, "samples/sudoku_evil.txt");
+    }
+
+    /**
+     * Print one line per encoding of the puzzle in filename.
+     */
+    private static void report(int dim, String filename) throws IOException, ParseException {
+        Sudoku sudoku = Sudoku.fromFile(dim, filename);
+        System.out.println(filename);
+        System.out.println(String.format("  %-10s %8s %8s %10s %10s %10s", "encoding", "clauses", "vars",
+                                         "build ms", "DPLL ms", "CDCL ms"));
+        for (CardinalityEncoding encoding : CardinalityEncoding.values()) {
+            long started = System.nanoTime();
+            IntFormula f = sudoku.getIntProblem(encoding);
+            long built = System.nanoTime() - started;
+            StringBuilder line = new StringBuilder(String.format("  %-10s %8d %8d %10.1f", encoding,
+                    f.numClauses(), f.numVariables(), built / 1e6));
+            for (Algorithm algorithm : Algorithm.values()) {
+                SolveResult result = SATSolver.check(f, new SolverOptions().withAlgorithm(algorithm));
+                if (result.getStatus() != SolveResult.Status.SATISFIABLE) throw new ParseException("No solution to " + filename);
+                line.append(String.format(" %10.1f", result.getStatistics().getSolveNanos() / 1e6));
+            }
+            System.out.println(line);
+        }
+        System.out.println();
+    }
+}
@@ -3,8 +3,11 @@ package sudoku;
 import java.io.IOException;
 
 import sat.SATSolver;
+import sat.SolveResult;
+import sat.SolverOptions;
 import sat.env.Environment;
-import sat.formula.Formula;
+import sat.formula.CardinalityEncoding;
+import sat.formula.IntFormula;
 import sudoku.Sudoku.ParseException;
 
 public class Main {
@@ -27,15 +30,18 @@ public class Main {
         long started = System.nanoTime();
 
         System.out.println ("Creating SAT formula...");
-        Formula f = new Formula();
+        IntFormula f;
 		try {
-			f = sudoku.getProblem();
+			f = sudoku.getIntProblem(CardinalityEncoding.NATIVE);
 		} catch (ParseException e1) {
 			e1.printStackTrace();
+			return;
 		}
         
         System.out.println ("Solving...");
-        Environment e = SATSolver.solve(f);
+        SolveResult result = SATSolver.check(f, new SolverOptions());
+        Environment e = result.getEnvironment();
+        System.out.println (result.getStatistics());
         
         System.out.println ("Interpreting solution...");
         Sudoku solution = sudoku.interpretSolution(e);
@@ -134,12 +134,12 @@ public class Sudoku {
      * Reads in a file containing a Sudoku puzzle.
      * 
      * @param dim
-     *            Dimension of puzzle. Requires: 2 for a 4x4, or 3 for a 9x9.
-     *            These are the only two sizes supported.
+     *            Dimension of puzzle, e.g. 2 for a 4x4, 3 for a 9x9 or 4 for a 16x16.
      * @param filename
      *            of file containing puzzle. The file should contain one line
      *            per row, with each square in the row represented by a digit
      *            (if known) or a '.' otherwise. (The periods are converted to zeros.)
+     *            Values above 9 are written as letters: A for 10, B for 11 and so on.
      *            The file should contain dim*dim rows, and each row should contain dim*dim characters.
      *            
      *            NOTE: There is support for puzzles with an extra row/column
@@ -153,7 +153,7 @@ public class Sudoku {
      *             if file has error in its format
      */
     public static Sudoku fromFile(int dim, String filename) throws IOException, ParseException {
-        if(!(dim == 2 || dim == 3)){throw new ParseException("Invalid dim. Only values 2 or 3 are compatible.");}
+        if(dim < 1){throw new ParseException("Invalid dim. Must be positive.");}
     	try(
     			FileReader fr = new FileReader(filename);
             	BufferedReader br = new BufferedReader(fr);)
@@ -179,9 +179,9 @@ public class Sudoku {
         		for(int col = 0; col < line.length(); col++)
         		{
         			char s = line.charAt(col);
-        			if(Character.isDigit(s))
+        			if(isSymbol(s, dim))
         			{
-        				newPuzzle[1][col+1] = s - '0';
+        				newPuzzle[1][col+1] = Character.digit(s, Character.MAX_RADIX);
         			}
         			else if(s == '.')
         			{
@@ -208,9 +208,9 @@ public class Sudoku {
             	for(int col = buffer; col < line.length(); col++)
             	{
             		char s = line.charAt(col);
-            		if(Character.isDigit(s))
+            		if(isSymbol(s, dim))
             		{
-            			newPuzzle[row][col+1-buffer] = s - '0';
+            			newPuzzle[row][col+1-buffer] = Character.digit(s, Character.MAX_RADIX);
             		}
             		else if( s == '.')
             		{
@@ -231,6 +231,14 @@ public class Sudoku {
     	return new Sudoku(dim); // Returns empty puzzle if there's an error
     }
 
+    /**
+     * @return true if s is a digit or letter standing for a value from 0 to dim*dim
+     */
+    private static boolean isSymbol(char s, int dim) {
+    	int value = Character.digit(s, Character.MAX_RADIX);
+    	return value >= 0 && value <= dim * dim;
+    }
+
     /**
      * Exception used for signaling grammatical errors in Sudoku puzzle files
      */
@@ -248,6 +256,7 @@ public class Sudoku {
      *   3412 
      *   2.43 
      *   4321
+     * Values above 9 are shown as letters, as fromFile() reads them.
      * 
      * @return a string corresponding to this grid
      */
@@ -262,7 +271,7 @@ public class Sudoku {
     			{
     				puzzle += ".";
     			}
-    			else puzzle += square[i][j];
+    			else puzzle += Character.toUpperCase(Character.forDigit(square[i][j], Character.MAX_RADIX));
     		}
     		puzzle += "\n";
     	}
@@ -277,8 +286,10 @@ public class Sudoku {
      * @param k value
      * @return the variable name for the literal
      */
-    private String literalString(int i, int j, int k) {
+    private static String literalString(int i, int j, int k) {
 //		return "occupies(" + Integer.toString(i) + ", " + Integer.toString(j) + ", " + Integer.toString(k)+ ")";
+		// Beyond 9x9 the numbers need separators, or v1111 could be (1, 11, 1) as well as (11, 1, 1).
+		if(i > 9 || j > 9 || k > 9) return "v" + i + "_" + j + "_" + k;
 		return "v" + Integer.toString(i) + Integer.toString(j) + Integer.toString(k);
 
     }
@@ -292,24 +303,73 @@ public class Sudoku {
      * @return a variable with the name returned by literalString: "occupies(i, j, k)"
      */
     public static Variable literalVar(int i, int j, int k) {
-		return new Variable("v" + Integer.toString(i) + Integer.toString(j) + Integer.toString(k));
+		return new Variable(literalString(i, j, k));
     }
 
     /**
      * @return a SAT problem corresponding to the puzzle, using variables with
      *         names of the form occupies(i,j,k) to indicate that the kth symbol
-     *         occupies the entry in row i, column j. This one's a doozy.
+     *         occupies the entry in row i, column j. Each square, row, column
+     *         and block is an ExactlyOne constraint, so any dim works.
      * @throws ParseException
-     *             if a dim other than 2 or 3 is used
+     *             if a square holds a value larger than size
      */
     public Formula getProblem() throws ParseException {
+    	return getProblem(CardinalityEncoding.NATIVE);
+    }
+
+    /**
+     * @return the SAT problem of getProblem(), with its ExactlyOne
+     *         constraints added in the given encoding
+     * @throws ParseException
+     *             if a square holds a value larger than size
+     */
+    public Formula getProblem(CardinalityEncoding encoding) throws ParseException {
+    	return build(encoding).toFormula();
+    }
+
+    /**
+     * @return the SAT problem of getProblem(encoding) in compact form, made
+     *         without any clause or literal objects, ready for
+     *         SATSolver.check()
+     * @throws ParseException
+     *             if a square holds a value larger than size
+     */
+    public IntFormula getIntProblem(CardinalityEncoding encoding) throws ParseException {
+    	return build(encoding).toIntFormula();
+    }
+
+    /*
+     * The constraints of the puzzle, collected in a FormulaBuilder: a big
+     * grid has hundreds of thousands of clauses in a clausal encoding, far
+     * too many to add to a Formula one by one.
+     */
+    private FormulaBuilder build(CardinalityEncoding encoding) throws ParseException {
     	// int dim, int size
     	// int square[][] (size+1)
     	// Variable occupies[][][] (size+1)
-        if(!(dim == 2 || dim == 3)){throw new ParseException("Invalid dim. Only values 2 or 3 are compatible.");}
+    	for(int i = 1; i <= size; i++)
+    	{
+    		for(int j = 1; j <= size; j++)
+    		{
+    			if(square[i][j] < 0 || square[i][j] > size)
+    				throw new ParseException("Invalid value " + square[i][j] + " at (" + i + ", " + j + ").");
+    		}
+    	}
 
     	checkRep();
-    	Formula newProblem = new Formula();
+    	// Number each literal once, since the constraints below share them.
+    	FormulaBuilder newProblem = new FormulaBuilder();
+    	Literal[][][] v = new Literal[size+1][size+1][size+1];
+    	int[][][] lit = new int[size+1][size+1][size+1];
+    	for(int i = 1; i <= size; i++)
+    		for(int j = 1; j <= size; j++)
+    			for(int k = 1; k <= size; k++)
+    			{
+    				v[i][j][k] = PosLiteral.make(literalString(i,j,k));
+    				lit[i][j][k] = newProblem.literal(v[i][j][k]);
+    			}
+
     	// 1. Solution must be consistent with the starting grid.
     	// For every entry (already-filled square) in square[][], produce a clause. (81 max for a 9x9)
     	for(int i = 1; i <= size; i++)
@@ -319,233 +379,71 @@ public class Sudoku {
     			int k = square[i][j];
     			if(k > 0)
     			{
-    				PosLiteral l = PosLiteral.make(literalString(i,j,k));
-    				newProblem = newProblem.addClause(new Clause(l));
-    				occupies[i][j][k] = l.getVariable();
+    				newProblem.addClause(lit[i][j][k]);
+    				occupies[i][j][k] = v[i][j][k].getVariable();
     			}
     		}
     	}
     	
-    	// 2. At most ONE DIGIT per square! (2,754 clauses for a 9x9 puzzle!)
+    	// 2. Exactly ONE DIGIT per square!
+    	// This used to be a clause (NOT v[i][j][k1] or NOT v[i][j][k2]) for every pair of digits k1/k2
+    	// (thousands of clauses for a 9x9 puzzle, growing as size^4). An ExactlyOne constraint says the
+    	// same thing, plus the clause that the square holds SOME digit, and the solver propagates it
+    	// as a whole: once a digit is placed, every other digit of the square is ruled out in one go.
+    	// (That is the NATIVE encoding; CardinalityEncoding has the clausal ones, pairwise included.)
     	for(int i = 1; i <= size; i++)
     	{
     		for(int j = 1; j <= size; j++)
     		{
-    			/* For EACH CELL in the puzzle (hence the above for() loops), we need to make a set of clauses.
-    			 * We have to loop through every pair of numbers, i.e. (1,2), (1,3), (1,4), (2,3), (2,4).
-    			 * For EVERY PAIR k1/k2, we add the clause (NOT v[i][j][k1] or NOT v[i][j][k2]).
-    			 * This logic prevents both pairs from being true at the same time.
-    			 * IOW: If there's a digit in a cell, this prevents any other digit from being there.
-    			 */
-    			for(int k1 = 1; k1 < size; k1++)
-    			{
-    				for(int k2 = k1+1; k2 <= size; k2++)
-    				{
-        				PosLiteral L1 = PosLiteral.make(literalString(i,j,k1));
-        				PosLiteral L2 = PosLiteral.make(literalString(i,j,k2));
-    					newProblem = newProblem.addClause(new Clause(L1.getNegation()).add(L2.getNegation()));
-    				}
-    			}
+    			int[] digits = new int[size];
+    			for(int k = 1; k <= size; k++) digits[k-1] = lit[i][j][k];
+    			encoding.addExactlyOne(newProblem, digits);
     		}
     	}
-    	
+
     	// 3. In each ROW "i", each DIGIT "k" must appear exactly once.
+    	// For each row i and digit k: exactly one of v[i][1][k], v[i][2][k], v[i][3][k]...
     	for(int i = 1; i <= size; i++)
     	{
     		for(int k = 1; k <= size; k++)
     		{
-    			// First, we add a clause that guarantees the digit to appear AT LEAST once in this row.
-    			// For each row i and digit k: (v[i][1][k] or v[i][2][k] or v[i][3][k]...)
-    			// IOW: 1... or .1.. or ..1. or ...1 for every row and every number. Yeah it's a lot of clauses x.x
-				Clause tempClause = new Clause();
-    			for(int j = 1; j <= size; j++)
-    			{
-    				PosLiteral l = PosLiteral.make(literalString(i,j,k));
-    				tempClause = tempClause.add(l); // Remember, adding to a clause is the same as ORing the literals
-    			}
-    			newProblem = newProblem.addClause(tempClause);
-
-    			
-    			/* ALSO within the ROW, we get to add the tricky loop again! Phew, here goes...
-    			 * Same as part 2, only this time we're iterating through the middle value (j).
-    			 * 
-    			 * We need to make sure the current number (k) only appears ONCE in this row.
-    			 * To do this, we take every pair of cells (j1/j2) in this row,
-    			 * and add the clause (NOT v[i][j1][k] or NOT v[i][j2][k]) -- see part 2 above for details.
-    			 * For example, the number 2 can be in ONE of (1st or 2nd), (1st or 3rd), (1st or 4th), (2nd or 3rd), (2nd or 4th), etc.
-    			 */
-    			for(int j1 = 1; j1 < size; j1++)
-    			{
-    				for(int j2 = j1+1; j2 <= size; j2++)
-    				{
-        				PosLiteral L1 = PosLiteral.make(literalString(i,j1,k));
-        				PosLiteral L2 = PosLiteral.make(literalString(i,j2,k));
-    					newProblem = newProblem.addClause(new Clause(L1.getNegation()).add(L2.getNegation()));
-    				}
-    			}
+    			int[] cells = new int[size];
+    			for(int j = 1; j <= size; j++) cells[j-1] = lit[i][j][k];
+    			encoding.addExactlyOne(newProblem, cells);
     		}
     	}
-    	
+
     	// 4. In each COLUMN "j", each DIGIT "k" must appear exactly once.
     	// Exactly the same as part 3, only checking vertically instead of horizontally. (So, i/j swap)
     	for(int j = 1; j <= size; j++)
     	{
     		for(int k = 1; k <= size; k++)
     		{
-    			/* First, we add a clause that guarantees the digit to appear AT LEAST once in this column.
-    			 * For each column j and digit k: (v[1][j][k] or v[2][j][k] or v[3][j][k]...)
-    			 * IOW: 1  or  .  or  .  or  .
-    			 *      .      1      .      .
-    			 *      .      .      1      .
-    			 *      .      .      .      1
-    			 * for every column and every number. Yeah it's a lot of clauses x.x
-    			 */
-				Clause tempClause = new Clause();
-    			for(int i = 1; i <= size; i++)
-    			{
-    				PosLiteral l = PosLiteral.make(literalString(i,j,k));
-    				tempClause = tempClause.add(l); // Remember, adding to a clause is the same as ORing the literals
-    			}
-    			newProblem = newProblem.addClause(tempClause);
+    			int[] cells = new int[size];
+    			for(int i = 1; i <= size; i++) cells[i-1] = lit[i][j][k];
+    			encoding.addExactlyOne(newProblem, cells);
+    		}
+    	}
 
-    			
-    			/* ALSO within the COLUMN, we get to add the tricky loop again! Phew, here goes...
-    			 * Same as part 2, only this time we're iterating through the first value (i).
-    			 * 
-    			 * We need to make sure the current number (k) only appears ONCE in this column.
-    			 * To do this, we take every pair of cells (i1/i2) in this column,
-    			 * and add the clause (NOT v[i1][j][k] or NOT v[i2][j][k]) -- see part 2 above for details.
-    			 * For example, the number 2 can be in ONE of (1st or 2nd), (1st or 3rd), (1st or 4th), (2nd or 3rd), (2nd or 4th), etc.
-    			 */
-    			for(int i1 = 1; i1 < size; i1++)
+    	// 5. In each BLOCK, each digit must appear exactly once.
+    	// The block with its top left corner at (1+a, 1+b) covers rows 1+a..dim+a and columns 1+b..dim+b,
+    	// for a, b = 0, dim, 2*dim... so this works for any dim, not just the 4x4 and 9x9 grids.
+    	for(int a = 0; a < size; a += dim)
+    	{
+    		for(int b = 0; b < size; b += dim)
+    		{
+    			for(int k = 1; k <= size; k++)
     			{
-    				for(int i2 = i1+1; i2 <= size; i2++)
+    				int[] cells = new int[size];
+    				int n = 0;
+    				for(int i = 1; i <= dim; i++)
     				{
-        				PosLiteral L1 = PosLiteral.make(literalString(i1,j,k));
-        				PosLiteral L2 = PosLiteral.make(literalString(i2,j,k));
-    					newProblem = newProblem.addClause(new Clause(L1.getNegation()).add(L2.getNegation()));
+    					for(int j = 1; j <= dim; j++) cells[n++] = lit[i+a][j+b][k];
     				}
+    				encoding.addExactlyOne(newProblem, cells);
     			}
     		}
     	}
-    	
-    	// 5. In each BLOCK, each digit must appear exactly once.
-    	// 
-    	// ...*sigh*
-    	// Okay, this part is tricky enough that I'm just gonna hard-code it.
-    	// If you want to implement this class for dim 4 or higher (16x16+ Sudokus), you'll have to modify this section.
-    	// Looping through each block, and then each value in each block is NOT pretty in for() loops.
-    	
-    	if(dim == 3)
-    	{
-    		// Each digit must appear exactly once in its 3x3 block
-    		// Add a clause for each digit being ORed in its respective block
-			for(int a = 0; a < size; a+= 3){ // Adds 0, 3, 6
-			for(int b = 0; b < size; b+= 3){ // Adds 0, 3, 6
-			for(int k = 1; k <= size; k++){
-	    		Clause tempClause = new Clause();
-				tempClause = tempClause.add(PosLiteral.make(literalString(1+a,1+b,k)))
-						               .add(PosLiteral.make(literalString(1+a,2+b,k)))
-						               .add(PosLiteral.make(literalString(1+a,3+b,k)))
-						               .add(PosLiteral.make(literalString(2+a,1+b,k)))
-						               .add(PosLiteral.make(literalString(2+a,2+b,k)))
-						               .add(PosLiteral.make(literalString(2+a,3+b,k)))
-						               .add(PosLiteral.make(literalString(3+a,1+b,k)))
-						               .add(PosLiteral.make(literalString(3+a,2+b,k)))
-						               .add(PosLiteral.make(literalString(3+a,3+b,k)));
-    			newProblem = newProblem.addClause(tempClause);
-			}}}
-
-			
-			// For each PAIR of cells in each block, each can only have the digit once. (See part 2)
-			// Add a clause for each pair: (NOT v[i1][j1][k] or NOT v[i2][j2][k])
-			// There's... PROBABLY an easier way to write this, but whatever. It's only done once.
-			for( int a = 0; a < size; a+= 3){ // Adds 0, 3, 6
-			for( int b = 0; b < size; b+= 3){ // Adds 0, 3, 6
-			for( int k = 1; k<= size; k++){
-				PosLiteral L1 = PosLiteral.make(literalString(1+a,1+b,k));
-				PosLiteral L2 = PosLiteral.make(literalString(1+a,2+b,k));
-				PosLiteral L3 = PosLiteral.make(literalString(1+a,3+b,k));
-				PosLiteral L4 = PosLiteral.make(literalString(2+a,1+b,k));
-				PosLiteral L5 = PosLiteral.make(literalString(2+a,2+b,k));
-				PosLiteral L6 = PosLiteral.make(literalString(2+a,3+b,k));
-				PosLiteral L7 = PosLiteral.make(literalString(3+a,1+b,k));
-				PosLiteral L8 = PosLiteral.make(literalString(3+a,2+b,k));
-				PosLiteral L9 = PosLiteral.make(literalString(3+a,3+b,k));
-				newProblem = newProblem.addClause(new Clause(L1.getNegation()).add(L2.getNegation()));
-				newProblem = newProblem.addClause(new Clause(L1.getNegation()).add(L3.getNegation()));
-				newProblem = newProblem.addClause(new Clause(L1.getNegation()).add(L4.getNegation()));
-				newProblem = newProblem.addClause(new Clause(L1.getNegation()).add(L5.getNegation()));
-				newProblem = newProblem.addClause(new Clause(L1.getNegation()).add(L6.getNegation()));
-				newProblem = newProblem.addClause(new Clause(L1.getNegation()).add(L7.getNegation()));
-				newProblem = newProblem.addClause(new Clause(L1.getNegation()).add(L8.getNegation()));
-				newProblem = newProblem.addClause(new Clause(L1.getNegation()).add(L9.getNegation()));
-				newProblem = newProblem.addClause(new Clause(L2.getNegation()).add(L3.getNegation()));
-				newProblem = newProblem.addClause(new Clause(L2.getNegation()).add(L4.getNegation()));
-				newProblem = newProblem.addClause(new Clause(L2.getNegation()).add(L5.getNegation()));
-				newProblem = newProblem.addClause(new Clause(L2.getNegation()).add(L6.getNegation()));
-				newProblem = newProblem.addClause(new Clause(L2.getNegation()).add(L7.getNegation()));
-				newProblem = newProblem.addClause(new Clause(L2.getNegation()).add(L8.getNegation()));
-				newProblem = newProblem.addClause(new Clause(L2.getNegation()).add(L9.getNegation()));
-				newProblem = newProblem.addClause(new Clause(L3.getNegation()).add(L4.getNegation()));
-				newProblem = newProblem.addClause(new Clause(L3.getNegation()).add(L5.getNegation()));
-				newProblem = newProblem.addClause(new Clause(L3.getNegation()).add(L6.getNegation()));
-				newProblem = newProblem.addClause(new Clause(L3.getNegation()).add(L7.getNegation()));
-				newProblem = newProblem.addClause(new Clause(L3.getNegation()).add(L8.getNegation()));
-				newProblem = newProblem.addClause(new Clause(L3.getNegation()).add(L9.getNegation()));
-				newProblem = newProblem.addClause(new Clause(L4.getNegation()).add(L5.getNegation()));
-				newProblem = newProblem.addClause(new Clause(L4.getNegation()).add(L6.getNegation()));
-				newProblem = newProblem.addClause(new Clause(L4.getNegation()).add(L7.getNegation()));
-				newProblem = newProblem.addClause(new Clause(L4.getNegation()).add(L8.getNegation()));
-				newProblem = newProblem.addClause(new Clause(L4.getNegation()).add(L9.getNegation()));
-				newProblem = newProblem.addClause(new Clause(L5.getNegation()).add(L6.getNegation()));
-				newProblem = newProblem.addClause(new Clause(L5.getNegation()).add(L7.getNegation()));
-				newProblem = newProblem.addClause(new Clause(L5.getNegation()).add(L8.getNegation()));
-				newProblem = newProblem.addClause(new Clause(L5.getNegation()).add(L9.getNegation()));
-				newProblem = newProblem.addClause(new Clause(L6.getNegation()).add(L7.getNegation()));
-				newProblem = newProblem.addClause(new Clause(L6.getNegation()).add(L8.getNegation()));
-				newProblem = newProblem.addClause(new Clause(L6.getNegation()).add(L9.getNegation()));
-				newProblem = newProblem.addClause(new Clause(L7.getNegation()).add(L8.getNegation()));
-				newProblem = newProblem.addClause(new Clause(L7.getNegation()).add(L9.getNegation()));
-				newProblem = newProblem.addClause(new Clause(L8.getNegation()).add(L9.getNegation()));
-			}}}
-			
-    	}
-    	else
-    	{
-    		// dim == 2
-    		// Each digit must appear exactly once in its 2x2 block
-    		// Add a clause for each digit being ORed in its respective block
-			for( int a = 0; a < size; a+= 2){ // Adds 0, 2
-			for( int b = 0; b < size; b+= 2){ // Adds 0, 2
-			for( int k = 1; k <= size; k++)
-			{
-				Clause tempClause = new Clause();
-				tempClause = tempClause.add(PosLiteral.make(literalString(1+a,1+b,k)))
-			                           .add(PosLiteral.make(literalString(1+a,2+b,k)))
-  			                           .add(PosLiteral.make(literalString(2+a,1+b,k)))
-			                           .add(PosLiteral.make(literalString(2+a,2+b,k)));
-				newProblem = newProblem.addClause(tempClause);
-			}}}
-			
-			// For each PAIR of cells in each 2x2 block, each digit must appear once.
-			// Add a clause for each pair: (NOT v[i1][j1][k] or NOT v[i2][j2][k])
-			for( int a = 0; a < size; a+= 2){ // Adds 0, 2
-			for( int b = 0; b < size; b+= 2){ // Adds 0, 2
-			for( int k = 1; k<= size; k++){
-				PosLiteral L1 = PosLiteral.make(literalString(1+a,1+b,k));
-				PosLiteral L2 = PosLiteral.make(literalString(1+a,2+b,k));
-				PosLiteral L3 = PosLiteral.make(literalString(2+a,1+b,k));
-				PosLiteral L4 = PosLiteral.make(literalString(2+a,2+b,k));
-				newProblem = newProblem.addClause(new Clause(L1.getNegation()).add(L2.getNegation()))
-				                       .addClause(new Clause(L1.getNegation()).add(L3.getNegation()))
-				                       .addClause(new Clause(L1.getNegation()).add(L4.getNegation()))
-				                       .addClause(new Clause(L2.getNegation()).add(L3.getNegation()))
-				                       .addClause(new Clause(L2.getNegation()).add(L4.getNegation()))
-				                       .addClause(new Clause(L3.getNegation()).add(L4.getNegation()));
-			}}}
-			
-    	}
 
     	return newProblem;
     }